@@ -0,0 +1,63 @@
+package indi.haorui.authorization.server.authentication;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import indi.haorui.authorization.server.cache.NearCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 缓存认证成功的结果，key 是 sha256(用户名 + 密码)，内存中不保存明文密码
+ * <p>
+ * 只缓存成功的结果，失败的认证每次都交给 delegate；修改 client_secret 后旧的 secret 最多在 ttl 内仍然可用
+ * <p>
+ * 本身不是 AuthenticationProvider：如果把 provider 注册为 bean，spring security 会把它当作全局的 provider，表单登录的 UserDetailsService 就不再生效
+ */
+public class AuthenticationCache {
+
+    private final NearCache<Authentication> cache;
+
+    public AuthenticationCache(int maximumSize, Duration ttl) {
+        this.cache = new NearCache<>(maximumSize, ttl);
+    }
+
+    /**
+     * @return 先查缓存，未命中时调用 delegate 的 provider
+     */
+    public AuthenticationProvider cache(AuthenticationProvider delegate) {
+        return new AuthenticationProvider() {
+
+            @Override
+            public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+                if (!(authentication instanceof UsernamePasswordAuthenticationToken) || Objects.isNull(authentication.getCredentials())) {
+                    return delegate.authenticate(authentication);
+                }
+                String key = DigestUtil.sha256Hex(authentication.getName() + ":" + authentication.getCredentials());
+                Authentication cached = cache.get(key);
+                if (Objects.nonNull(cached)) {
+                    return cached;
+                }
+                Authentication result = delegate.authenticate(authentication);
+                if (Objects.nonNull(result) && result.isAuthenticated()) {
+                    cache.put(key, result);
+                }
+                return result;
+            }
+
+            @Override
+            public boolean supports(Class<?> authentication) {
+                return delegate.supports(authentication);
+            }
+        };
+    }
+
+    public NearCache.Stats stats() {
+        return cache.stats();
+    }
+}
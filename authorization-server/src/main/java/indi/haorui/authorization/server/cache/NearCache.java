@@ -0,0 +1,107 @@
+package indi.haorui.authorization.server.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 进程内缓存，按条数和 TTL 限制大小
+ * <p>
+ * 读路径只有一次 ConcurrentHashMap 查找，不加锁；超出容量时先清理过期的，再按遍历顺序淘汰，不是严格的 LRU
+ */
+public class NearCache<V> {
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final int maximumSize;
+
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    public NearCache(int maximumSize, Duration ttl) {
+        this.maximumSize = maximumSize;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (Objects.isNull(entry)) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    public void put(String key, V value) {
+        put(key, value, ttlMillis);
+    }
+
+    /**
+     * @param ttlMillis 本条记录的存活时间，不会超过缓存配置的 TTL
+     */
+    public void put(String key, V value, long ttlMillis) {
+        long ttl = Math.min(ttlMillis, this.ttlMillis);
+        if (ttl <= 0) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttl));
+        if (entries.size() > maximumSize) {
+            evict();
+        }
+    }
+
+    public void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.entrySet().removeIf(e -> {
+            boolean expired = e.getValue().expiresAt() <= now;
+            if (expired) {
+                evictions.increment();
+            }
+            return expired;
+        });
+        // 留出 10% 的余量，避免每次 put 都触发淘汰
+        int target = maximumSize - maximumSize / 10;
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+}
@@ -0,0 +1,123 @@
+package indi.haorui.authorization.server.config;
+
+import indi.haorui.authorization.server.authentication.AuthenticationCache;
+import indi.haorui.authorization.server.properties.AdminProperties;
+import indi.haorui.authorization.server.properties.BatchTokenProperties;
+import indi.haorui.authorization.server.properties.IntrospectionProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.config.Customizer;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.web.SecurityFilterChain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 服务间调用的接口：批量签发、introspection 和运维接口，调用方是服务而不是浏览器，
+ * 用自己的 client_id / client_secret 做 basic 认证，不使用 session 和 csrf
+ * <ul>
+ *     <li>批量签发只有 authorization.batch.trusted-clients 中的 client 可以调用</li>
+ *     <li>按 client / principal 查看和撤销 token、查看和重新加载签名 key、introspection 和本地缓存的统计只有 authorization.admin.clients 中的 client 可以调用</li>
+ *     <li>introspection 任意已注册的 client 都可以调用</li>
+ * </ul>
+ * 表单登录的用户不能访问这些接口
+ */
+@Configuration
+@EnableConfigurationProperties({BatchTokenProperties.class, IntrospectionProperties.class, AdminProperties.class})
+public class ClientSecurityConfig {
+
+    private static final String BATCH_TOKEN_ENDPOINT = "/oauth2/v1/token";
+
+    /*
+     * 包括 /oauth2/v1/introspect 本身和它下面的 stats
+     */
+    private static final String INTROSPECTION_ENDPOINTS = "/oauth2/v1/introspect/**";
+
+    private static final String[] ADMIN_ENDPOINTS = {"/oauth2/v1/clients/**", "/oauth2/v1/principals/**", "/oauth2/v1/keys/**",
+            "/oauth2/v1/introspect/stats", "/oauth2/v1/caches/**"};
+
+    private static final String TRUSTED_CLIENT = "TRUSTED_CLIENT";
+
+    private static final String ADMIN = "ADMIN";
+
+    @Bean
+    @Order(2)
+    public SecurityFilterChain clientSecurityFilterChain(HttpSecurity http,
+                                                         RegisteredClientRepository registeredClientRepository,
+                                                         BatchTokenProperties batchTokenProperties,
+                                                         AdminProperties adminProperties,
+                                                         AuthenticationCache clientAuthenticationCache) throws Exception {
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(registeredClientUserDetailsService(registeredClientRepository,
+                Set.copyOf(batchTokenProperties.getTrustedClients()), Set.copyOf(adminProperties.getClients())));
+        // @formatter:off
+        http
+                .securityMatcher(securityMatchers())
+                .authorizeHttpRequests((authorize) -> authorize
+                        .requestMatchers(BATCH_TOKEN_ENDPOINT).hasAuthority(TRUSTED_CLIENT)
+                        .requestMatchers(ADMIN_ENDPOINTS).hasAuthority(ADMIN)
+                        .anyRequest().authenticated()
+                )
+                .httpBasic(Customizer.withDefaults())
+                .csrf(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authenticationManager(new ProviderManager(clientAuthenticationCache.cache(authenticationProvider)));
+        // @formatter:on
+
+        return http.build();
+    }
+
+    @Bean
+    public AuthenticationCache clientAuthenticationCache(IntrospectionProperties introspectionProperties) {
+        return new AuthenticationCache(1_000, introspectionProperties.getClientAuthenticationTtl());
+    }
+
+    private static String[] securityMatchers() {
+        List<String> matchers = new ArrayList<>(List.of(BATCH_TOKEN_ENDPOINT, INTROSPECTION_ENDPOINTS));
+        matchers.addAll(List.of(ADMIN_ENDPOINTS));
+        return matchers.toArray(String[]::new);
+    }
+
+    /**
+     * 把已注册的 client 当作用户认证，secret 与 /oauth2/token 一样由 DelegatingPasswordEncoder 校验
+     */
+    private static UserDetailsService registeredClientUserDetailsService(RegisteredClientRepository registeredClientRepository,
+                                                                         Set<String> trustedClients,
+                                                                         Set<String> adminClients) {
+        return clientId -> {
+            RegisteredClient registeredClient = registeredClientRepository.findByClientId(clientId);
+            if (Objects.isNull(registeredClient) || Objects.isNull(registeredClient.getClientSecret())) {
+                throw new UsernameNotFoundException("Unknown client " + clientId);
+            }
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            if (trustedClients.contains(clientId)) {
+                authorities.add(new SimpleGrantedAuthority(TRUSTED_CLIENT));
+            }
+            if (adminClients.contains(clientId)) {
+                authorities.add(new SimpleGrantedAuthority(ADMIN));
+            }
+            return User.withUsername(clientId)
+                    .password(registeredClient.getClientSecret())
+                    .authorities(authorities)
+                    .build();
+        };
+    }
+}
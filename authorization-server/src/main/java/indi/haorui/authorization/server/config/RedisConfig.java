@@ -8,11 +8,23 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.AuthorizationNearCache;
+import indi.haorui.authorization.server.repository.RedisRegisteredClientRepository;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -21,13 +33,19 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Configuration
 public class RedisConfig {
 
+    /*
+     * 只给 redis 的序列化器使用，不注册为 bean：带类型信息的 ObjectMapper 注册为 bean 后会替换 spring mvc 的 ObjectMapper，
+     * 接口的请求和响应都会要求/带上 @class
+     */
+    private static final ObjectMapper REDIS_OBJECT_MAPPER = redisObjectMapper();
+
     @Bean
-    public RedisTemplate<?,?> redisTemplate(RedisConnectionFactory redisConnectionFactory, ObjectMapper objectMapper) {
+    public RedisTemplate<?,?> redisTemplate(RedisConnectionFactory redisConnectionFactory) {
         RedisTemplate<?,?> template = new RedisTemplate<>();
         template.setConnectionFactory(redisConnectionFactory);
 
         // Use GenericJackson2JsonRedisSerializer to serialize and deserialize the value of redis (including JDK8 time types)
-        GenericJackson2JsonRedisSerializer jackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer(objectMapper);
+        GenericJackson2JsonRedisSerializer jackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer(REDIS_OBJECT_MAPPER);
 
         // Use StringRedisSerializer to serialize and deserialize the key value of redis
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
@@ -46,9 +64,61 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * authorization 专用的 template，value 的编码由 authorization.store.codec 决定
+     */
+    @Bean
+    public RedisTemplate<String, OAuth2AuthorizationPO> authorizationRedisTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                                                   AuthorizationStoreProperties properties) {
+        RedisTemplate<String, OAuth2AuthorizationPO> template = new RedisTemplate<>();
+        template.setConnectionFactory(redisConnectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new OAuth2AuthorizationRedisSerializer(properties.getCodec(), REDIS_OBJECT_MAPPER));
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 与 authorizationRedisTemplate 使用相同的序列化器
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "authorization.store", name = "reactive", havingValue = "true")
+    public ReactiveRedisTemplate<String, OAuth2AuthorizationPO> reactiveAuthorizationRedisTemplate(ReactiveRedisConnectionFactory reactiveRedisConnectionFactory,
+                                                                                                   AuthorizationStoreProperties properties) {
+        RedisSerializationContext<String, OAuth2AuthorizationPO> serializationContext = RedisSerializationContext
+                .<String, OAuth2AuthorizationPO>newSerializationContext(new StringRedisSerializer())
+                .value(new OAuth2AuthorizationRedisSerializer(properties.getCodec(), REDIS_OBJECT_MAPPER))
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveRedisConnectionFactory, serializationContext);
+    }
 
     @Bean
-    public ObjectMapper objectMapper() {
+    @ConditionalOnProperty(prefix = "authorization.store.near-cache", name = "enabled", havingValue = "true")
+    public AuthorizationNearCache authorizationNearCache(AuthorizationStoreProperties properties) {
+        AuthorizationStoreProperties.NearCache nearCache = properties.getNearCache();
+        return new AuthorizationNearCache(nearCache.getMaximumSize(), nearCache.getTtl());
+    }
+
+    /**
+     * 本地缓存的跨节点失效通过 pub/sub 完成
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       ObjectProvider<AuthorizationNearCache> authorizationNearCache,
+                                                                       ObjectProvider<RedisRegisteredClientRepository> registeredClientRepository) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        registeredClientRepository.ifAvailable(repository ->
+                container.addMessageListener(repository.listener(), new ChannelTopic(RedisRegisteredClientRepository.CHANNEL)));
+        authorizationNearCache.ifAvailable(nearCache ->
+                container.addMessageListener(nearCache.listener(), new ChannelTopic(AuthorizationNearCache.CHANNEL)));
+        return container;
+    }
+
+    /**
+     * redis value 使用的 ObjectMapper，带类型信息，每次调用返回新的实例
+     */
+    public static ObjectMapper redisObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
         mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
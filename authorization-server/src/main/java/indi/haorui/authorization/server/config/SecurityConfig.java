@@ -1,39 +1,70 @@
 package indi.haorui.authorization.server.config;
 
-import com.nimbusds.jose.KeySourceException;
 import com.nimbusds.jose.jwk.*;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.proc.SecurityContext;
-import indi.haorui.authorization.server.properties.RSAKeyProperties;
+import indi.haorui.authorization.server.jwk.RotatingJWKSource;
+import indi.haorui.authorization.server.jwk.SigningKeyHolder;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.properties.BatchTokenProperties;
+import indi.haorui.authorization.server.properties.IntrospectionProperties;
+import indi.haorui.authorization.server.properties.JwtKeyProperties;
+import indi.haorui.authorization.server.repository.AuthorizationNearCache;
+import indi.haorui.authorization.server.repository.ReactiveRedisOAuth2AuthorizationService;
 import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.RedisRegisteredClientRepository;
 import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.authorization.server.repository.po.RegisteredClientPO;
+import indi.haorui.authorization.server.token.BatchTokenIssuer;
+import indi.haorui.authorization.server.token.TokenIntrospector;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.oauth2.server.servlet.OAuth2AuthorizationServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Role;
 import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
 import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationService;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
 import org.springframework.security.oauth2.server.authorization.config.annotation.web.configuration.OAuth2AuthorizationServerConfiguration;
 import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.settings.OAuth2TokenFormat;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+import org.springframework.security.oauth2.server.authorization.token.DelegatingOAuth2TokenGenerator;
 import org.springframework.security.oauth2.server.authorization.token.JwtEncodingContext;
+import org.springframework.security.oauth2.server.authorization.token.JwtGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2AccessTokenGenerator;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2RefreshTokenGenerator;
 import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenCustomizer;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 
@@ -42,6 +73,8 @@ import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -49,6 +82,7 @@ import java.util.UUID;
  */
 @Configuration
 @EnableWebSecurity
+@EnableConfigurationProperties(OAuth2AuthorizationServerProperties.class)
 public class SecurityConfig {
 
     @Bean
@@ -59,7 +93,7 @@ public class SecurityConfig {
     }
 
     @Bean
-    @Order(2)
+    @Order(3)
     public SecurityFilterChain standardSecurityFilterChain(HttpSecurity http) throws Exception {
         // @formatter:off
         http
@@ -100,25 +134,84 @@ public class SecurityConfig {
 //        return new InMemoryRegisteredClientRepository(loginClient, registeredClient);
 //    }
 
+    /**
+     * 替换 spring boot 默认的 InMemoryRegisteredClientRepository
+     * <p>
+     * 启动时把 spring.security.oauth2.authorizationserver.client 中配置的 client 写入 redis，动态注册的 client 不受影响
+     */
+    @Bean
+    public RedisRegisteredClientRepository registeredClientRepository(RedisTemplate<String, RegisteredClientPO> redisTemplate,
+                                                                      AuthorizationStoreProperties storeProperties,
+                                                                      OAuth2AuthorizationServerProperties serverProperties) {
+        AuthorizationStoreProperties.ClientCache clientCache = storeProperties.getClientCache();
+        RedisRegisteredClientRepository repository = new RedisRegisteredClientRepository(redisTemplate,
+                clientCache.getMaximumSize(), clientCache.getTtl());
+        serverProperties.getClient().forEach((registrationId, client) ->
+                repository.save(registeredClient(registrationId, client)));
+        return repository;
+    }
+
+    private static RegisteredClient registeredClient(String registrationId, OAuth2AuthorizationServerProperties.Client client) {
+        OAuth2AuthorizationServerProperties.Registration registration = client.getRegistration();
+        OAuth2AuthorizationServerProperties.Token token = client.getToken();
+        return RegisteredClient.withId(registrationId)
+                .clientId(registration.getClientId())
+                .clientSecret(registration.getClientSecret())
+                .clientName(registration.getClientName())
+                .clientAuthenticationMethods(methods -> registration.getClientAuthenticationMethods()
+                        .forEach(method -> methods.add(new ClientAuthenticationMethod(method))))
+                .authorizationGrantTypes(grantTypes -> registration.getAuthorizationGrantTypes()
+                        .forEach(grantType -> grantTypes.add(new AuthorizationGrantType(grantType))))
+                .redirectUris(uris -> uris.addAll(registration.getRedirectUris()))
+                .postLogoutRedirectUris(uris -> uris.addAll(registration.getPostLogoutRedirectUris()))
+                .scopes(scopes -> scopes.addAll(registration.getScopes()))
+                .clientSettings(ClientSettings.builder()
+                        .requireProofKey(client.isRequireProofKey())
+                        .requireAuthorizationConsent(client.isRequireAuthorizationConsent())
+                        .build())
+                .tokenSettings(TokenSettings.builder()
+                        .authorizationCodeTimeToLive(token.getAuthorizationCodeTimeToLive())
+                        .accessTokenTimeToLive(token.getAccessTokenTimeToLive())
+                        .accessTokenFormat(new OAuth2TokenFormat(token.getAccessTokenFormat()))
+                        .reuseRefreshTokens(token.isReuseRefreshTokens())
+                        .refreshTokenTimeToLive(token.getRefreshTokenTimeToLive())
+                        .build())
+                .build();
+    }
+
+    /**
+     * jwt.keys 中的 key 加上 jwt.rotation.directory 中的 key，目录中的 key 不需要重启即可轮换
+     */
     @Bean
-    public JWKSource<SecurityContext> jwkSource(RSAKeyProperties rsaKeyProperties) {
+    public RotatingJWKSource jwkSource(JwtKeyProperties jwtKeyProperties, SigningKeyHolder signingKeyHolder) {
 //        new InMemoryRegisteredClientRepository(loginClient, registeredClient);
-        List<JWK> list = rsaKeyProperties.getKeys()
+        List<JWK> list = jwtKeyProperties.getKeys()
                 .stream()
-                .map(
-                        k -> {
-                            RSAKey build = new RSAKey.Builder(k.getPub())
-                                    .privateKey(k.getPriv())
-                                    .keyID(k.getId())
-                                    .build();
-                            return (JWK) build;
-                        }
-                )
+                .map(JwtKeyProperties.Key::toJWK)
                 .toList();
         // @formatter:on
 
-        JWKSet jwkSet = new JWKSet(list);
-        return new ImmutableJWKSet<>(jwkSet);
+        RotatingJWKSource jwkSource = new RotatingJWKSource(list, signingKeyHolder, jwtKeyProperties.getRotation());
+        jwkSource.start();
+        return jwkSource;
+    }
+
+    /**
+     * 签名 key 在这里解析一次，由 tokenCustomizer 和 jwtEncoder 共用
+     * <p>
+     * 其他算法（例如 ES256）的签名 key 由 jwkSource 初始化时补充
+     */
+    @Bean
+    public SigningKeyHolder signingKeyHolder(JwtKeyProperties jwtKeyProperties) {
+        return new SigningKeyHolder(jwtKeyProperties.activeKey().toJWK());
+    }
+
+    /**
+     * 替换 authorization server 默认基于 jwkSource 构造的 encoder，签名时只在 active key 中选择
+     */
+    @Bean
+    public JwtEncoder jwtEncoder(SigningKeyHolder signingKeyHolder) {
+        return new NimbusJwtEncoder(signingKeyHolder.jwkSource());
     }
 
 //    @Bean
@@ -145,28 +238,87 @@ public class SecurityConfig {
     }
 
     @Bean
-    public OAuth2AuthorizationService authorizationService(RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate, RegisteredClientRepository registeredClientRepository) {
-        return new RedisOAuth2AuthorizationService(redisTemplate, registeredClientRepository);
+    public RedisOAuth2AuthorizationService authorizationService(RedisTemplate<String, OAuth2AuthorizationPO> authorizationRedisTemplate,
+                                                                StringRedisTemplate stringRedisTemplate,
+                                                                RegisteredClientRepository registeredClientRepository,
+                                                                ObjectProvider<AuthorizationNearCache> authorizationNearCache,
+                                                                AuthorizationStoreProperties storeProperties) {
+        boolean cluster = Objects.nonNull(storeProperties.getCluster())
+                ? storeProperties.getCluster()
+                : authorizationRedisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory connectionFactory
+                && connectionFactory.isClusterAware();
+        RedisOAuth2AuthorizationService authorizationService = new RedisOAuth2AuthorizationService(authorizationRedisTemplate,
+                stringRedisTemplate, registeredClientRepository, authorizationNearCache.getIfAvailable(), cluster);
+        authorizationService.setDefaultTtl(storeProperties.getDefaultTtl());
+        return authorizationService;
     }
 
     /**
      * 会注入到这里
      * {@link org.springframework.security.oauth2.server.authorization.token.JwtGenerator.jwtCustomizer}
-     * context.getJwsHeader().keyId(jwks.get(0).getKeyID());
+     * context.getJwsHeader().algorithm(algorithm).keyId(signingKeyHolder.keyId(algorithm));
      * 这里set的keyid 最后会通过{@linkplain org.springframework.security.oauth2.server.authorization.token.JwtGenerator }到
      * {@link NimbusJwtEncoder#encode(JwtEncoderParameters)}
      */
     @Bean
-    public OAuth2TokenCustomizer<JwtEncodingContext> tokenCustomizer(JWKSource<SecurityContext> jwkSource){
+    public OAuth2TokenCustomizer<JwtEncodingContext> tokenCustomizer(SigningKeyHolder signingKeyHolder,
+                                                                     JwtKeyProperties jwtKeyProperties){
+        Map<String, SignatureAlgorithm> clientAlgorithms = Map.copyOf(jwtKeyProperties.getClientAlgorithms());
         return context -> {
-            JWKSelector jwkSelector = new JWKSelector(new JWKMatcher.Builder().build());
-            try {
-                List<JWK> jwks = jwkSource.get(jwkSelector, null);
-                context.getJwsHeader().keyId(jwks.get(1).getKeyID());
-            } catch (KeySourceException e) {
-                throw new RuntimeException(e);
-            }
+            JwsHeader.Builder header = context.getJwsHeader();
+            // access token 按 client 选择算法，id token 等保留 JwtGenerator 根据 client 配置设置的算法
+            SignatureAlgorithm algorithm = OAuth2TokenType.ACCESS_TOKEN.equals(context.getTokenType())
+                    ? clientAlgorithms.getOrDefault(context.getRegisteredClient().getClientId(), signingKeyHolder.algorithm())
+                    : SignatureAlgorithm.from(header.build().getAlgorithm().getName());
+            header.algorithm(algorithm).keyId(signingKeyHolder.keyId(algorithm));
         };
     }
 
+    /**
+     * 与 authorization server 默认构造的 generator 相同，定义为 bean 后 /oauth2/token 和批量签发共用
+     */
+    @Bean
+    public OAuth2TokenGenerator<OAuth2Token> tokenGenerator(JwtEncoder jwtEncoder,
+                                                            OAuth2TokenCustomizer<JwtEncodingContext> tokenCustomizer) {
+        JwtGenerator jwtGenerator = new JwtGenerator(jwtEncoder);
+        jwtGenerator.setJwtCustomizer(tokenCustomizer);
+        return new DelegatingOAuth2TokenGenerator(jwtGenerator, new OAuth2AccessTokenGenerator(), new OAuth2RefreshTokenGenerator());
+    }
+
+    @Bean
+    public BatchTokenIssuer batchTokenIssuer(RegisteredClientRepository registeredClientRepository,
+                                             OAuth2TokenGenerator<OAuth2Token> tokenGenerator,
+                                             RedisOAuth2AuthorizationService authorizationService,
+                                             AuthorizationServerSettings authorizationServerSettings,
+                                             BatchTokenProperties batchTokenProperties) {
+        return new BatchTokenIssuer(registeredClientRepository, tokenGenerator, authorizationService,
+                authorizationServerSettings, batchTokenProperties);
+    }
+
+    /**
+     * 与 authorizationService 共用 key 布局、编码和本地缓存
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "authorization.store", name = "reactive", havingValue = "true")
+    public ReactiveRedisOAuth2AuthorizationService reactiveAuthorizationService(ReactiveRedisTemplate<String, OAuth2AuthorizationPO> reactiveAuthorizationRedisTemplate,
+                                                                                ReactiveStringRedisTemplate reactiveStringRedisTemplate,
+                                                                                RegisteredClientRepository registeredClientRepository,
+                                                                                ObjectProvider<AuthorizationNearCache> authorizationNearCache,
+                                                                                AuthorizationStoreProperties storeProperties) {
+        ReactiveRedisOAuth2AuthorizationService authorizationService = new ReactiveRedisOAuth2AuthorizationService(
+                reactiveAuthorizationRedisTemplate, reactiveStringRedisTemplate, registeredClientRepository,
+                authorizationNearCache.getIfAvailable());
+        authorizationService.setDefaultTtl(storeProperties.getDefaultTtl());
+        return authorizationService;
+    }
+
+    @Bean
+    public TokenIntrospector tokenIntrospector(RedisOAuth2AuthorizationService authorizationService,
+                                               ObjectProvider<ReactiveRedisOAuth2AuthorizationService> reactiveAuthorizationService,
+                                               RegisteredClientRepository registeredClientRepository,
+                                               IntrospectionProperties introspectionProperties) {
+        return new TokenIntrospector(authorizationService, reactiveAuthorizationService.getIfAvailable(),
+                registeredClientRepository, introspectionProperties);
+    }
+
 }
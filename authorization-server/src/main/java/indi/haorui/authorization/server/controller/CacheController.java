@@ -0,0 +1,51 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.cache.NearCache;
+import indi.haorui.authorization.server.repository.AuthorizationNearCache;
+import indi.haorui.authorization.server.repository.RedisRegisteredClientRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 本地缓存的命中、未命中、淘汰次数和当前大小，只有 authorization.admin.clients 中的 client 可以查看
+ */
+@RestController
+@RequestMapping("/oauth2/v1/caches")
+@RequiredArgsConstructor
+public class CacheController {
+
+    /*
+     * authorization.store.near-cache.enabled 为 false 时不存在
+     */
+    private final ObjectProvider<AuthorizationNearCache> authorizationNearCache;
+
+    private final RedisRegisteredClientRepository registeredClientRepository;
+
+    @GetMapping
+    public ResponseEntity<Stats> stats() {
+        AuthorizationNearCache nearCache = authorizationNearCache.getIfAvailable();
+        return ResponseEntity.ok(new Stats(
+                Objects.isNull(nearCache) ? null : nearCache.authorizationStats(),
+                Objects.isNull(nearCache) ? null : nearCache.indexStats(),
+                registeredClientRepository.clientStats(),
+                registeredClientRepository.clientIdStats()));
+    }
+
+    /**
+     * @param authorizations id -> authorization 的缓存，near-cache 未启用时为 null
+     * @param indexes        token 索引 -> id 的缓存，near-cache 未启用时为 null
+     * @param clients        id -> RegisteredClient 的缓存
+     * @param clientIds      clientId -> id 的缓存
+     */
+    public record Stats(NearCache.Stats authorizations, NearCache.Stats indexes,
+                        NearCache.Stats clients, NearCache.Stats clientIds) {
+    }
+}
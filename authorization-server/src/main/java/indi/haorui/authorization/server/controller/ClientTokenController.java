@@ -0,0 +1,63 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 按 client / principal 查看和撤销 authorization，见 {@link RedisOAuth2AuthorizationService#revokeAllByClient}
+ */
+@RestController
+@RequestMapping("/oauth2/v1")
+@RequiredArgsConstructor
+public class ClientTokenController {
+
+    private final RedisOAuth2AuthorizationService authorizationService;
+
+    private final RegisteredClientRepository registeredClientRepository;
+
+    @GetMapping("clients/{clientId}/tokens")
+    public ResponseEntity<TokenCount> countByClient(@PathVariable String clientId) {
+        RegisteredClient registeredClient = registeredClientRepository.findByClientId(clientId);
+        if (Objects.isNull(registeredClient)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new TokenCount(authorizationService.countByClient(registeredClient.getId())));
+    }
+
+    @DeleteMapping("clients/{clientId}/tokens")
+    public ResponseEntity<TokenCount> revokeAllByClient(@PathVariable String clientId) {
+        RegisteredClient registeredClient = registeredClientRepository.findByClientId(clientId);
+        if (Objects.isNull(registeredClient)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new TokenCount(authorizationService.revokeAllByClient(registeredClient.getId())));
+    }
+
+    @GetMapping("principals/{principalName}/tokens")
+    public ResponseEntity<TokenCount> countByPrincipal(@PathVariable String principalName) {
+        return ResponseEntity.ok(new TokenCount(authorizationService.countByPrincipal(principalName)));
+    }
+
+    @DeleteMapping("principals/{principalName}/tokens")
+    public ResponseEntity<TokenCount> revokeAllByPrincipal(@PathVariable String principalName) {
+        return ResponseEntity.ok(new TokenCount(authorizationService.revokeAllByPrincipal(principalName)));
+    }
+
+    /**
+     * @param count 查询时为未过期的数量，撤销时为删除的数量
+     */
+    public record TokenCount(long count) {
+    }
+}
@@ -0,0 +1,63 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.authentication.AuthenticationCache;
+import indi.haorui.authorization.server.cache.NearCache;
+import indi.haorui.authorization.server.token.TokenIntrospector;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 带缓存的 token introspection，请求和响应格式与 /oauth2/introspect 相同（RFC 7662），调用方需要 basic 认证
+ */
+@RestController
+@RequestMapping("/oauth2/v1/introspect")
+@RequiredArgsConstructor
+public class IntrospectionController {
+
+    private final TokenIntrospector tokenIntrospector;
+
+    private final AuthenticationCache clientAuthenticationCache;
+
+    /**
+     * authorization.store.reactive 启用时，命中缓存直接返回 ResponseEntity，
+     * 未命中时返回 Mono，由 spring mvc 按异步请求处理，等待 redis 期间请求线程被释放
+     *
+     * @return ResponseEntity 或 Mono&lt;ResponseEntity&gt;，spring mvc 按返回值的实际类型选择处理方式
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public Object introspect(@RequestParam(OAuth2ParameterNames.TOKEN) String token,
+                             @RequestParam(value = OAuth2ParameterNames.TOKEN_TYPE_HINT, required = false) String tokenTypeHint) {
+        if (!tokenIntrospector.isReactive()) {
+            return ResponseEntity.ok(tokenIntrospector.introspect(token, tokenTypeHint));
+        }
+        Map<String, Object> cached = tokenIntrospector.cached(token);
+        if (Objects.nonNull(cached)) {
+            return ResponseEntity.ok(cached);
+        }
+        return tokenIntrospector.lookup(token, tokenTypeHint).map(ResponseEntity::ok);
+    }
+
+    /**
+     * 缓存命中和延迟统计，只有 authorization.admin.clients 中的 client 可以查看
+     */
+    @GetMapping("stats")
+    public ResponseEntity<Stats> stats() {
+        return ResponseEntity.ok(new Stats(tokenIntrospector.stats(), clientAuthenticationCache.stats()));
+    }
+
+    public record Stats(TokenIntrospector.Stats introspection,
+                        NearCache.Stats clientAuthentication) {
+    }
+}
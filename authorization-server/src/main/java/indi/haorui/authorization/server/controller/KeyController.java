@@ -0,0 +1,34 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.jwk.RotatingJWKSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 查看 key 的轮换状态，以及在不等待下一次扫描的情况下重新加载 jwt.rotation.directory
+ */
+@RestController
+@RequestMapping("/oauth2/v1/keys")
+@RequiredArgsConstructor
+public class KeyController {
+
+    private final RotatingJWKSource jwkSource;
+
+    @GetMapping
+    public ResponseEntity<List<RotatingJWKSource.KeyState>> keys() {
+        return ResponseEntity.ok(jwkSource.states());
+    }
+
+    @PostMapping("reload")
+    public ResponseEntity<List<RotatingJWKSource.KeyState>> reload() {
+        return ResponseEntity.ok(jwkSource.reload());
+    }
+}
@@ -1,20 +1,57 @@
 package indi.haorui.authorization.server.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import indi.haorui.authorization.server.token.BatchTokenIssuer;
+import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
 /**
  * Created by Yang Hao.rui on 2024/6/6
  */
 @RestController
 @RequestMapping("/oauth2/v1")
+@RequiredArgsConstructor
 public class OAuth2Controller {
 
+    private final BatchTokenIssuer batchTokenIssuer;
+
+    /**
+     * 批量签发 client_credentials access token，只有 authorization.batch.trusted-clients 中的 client 可以调用
+     * <pre>
+     * POST /oauth2/v1/token
+     * {"requests": [{"client_id": "messaging-client", "scope": "pii:read write"}]}
+     * </pre>
+     * 返回的 tokens 与 requests 顺序一致，单个失败的请求返回 error，不影响其他请求
+     */
     @PostMapping("token")
-    public ResponseEntity<Void> token(){
-        return ResponseEntity.ok().build();
+    public ResponseEntity<BatchTokenResponse> token(@RequestBody BatchTokenRequest request){
+        if (Objects.isNull(request.requests()) || request.requests().isEmpty()) {
+            return ResponseEntity.badRequest().body(BatchTokenResponse.error("requests cannot be empty"));
+        }
+        List<BatchTokenIssuer.Request> requests = request.requests().stream()
+                .map(item -> new BatchTokenIssuer.Request(item.clientId(), scopes(item.scope())))
+                .toList();
+        List<TokenResponse> tokens = batchTokenIssuer.issue(requests).stream()
+                .map(TokenResponse::of)
+                .toList();
+        return ResponseEntity.ok(new BatchTokenResponse(tokens, null, null));
     }
 
 
@@ -23,4 +60,62 @@ public class OAuth2Controller {
         return ResponseEntity.ok().build();
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<BatchTokenResponse> invalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(BatchTokenResponse.error(e.getMessage()));
+    }
+
+    private static Set<String> scopes(String scope) {
+        if (!StringUtils.hasText(scope)) {
+            return Set.of();
+        }
+        return new LinkedHashSet<>(List.of(StringUtils.delimitedListToStringArray(scope.trim(), " ")));
+    }
+
+    public record BatchTokenRequest(List<Item> requests) {
+
+        /**
+         * @param scope 空格分隔，与 /oauth2/token 的 scope 参数相同
+         */
+        public record Item(@JsonProperty("client_id") String clientId, String scope) {
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record BatchTokenResponse(List<TokenResponse> tokens,
+                                     String error,
+                                     @JsonProperty("error_description") String errorDescription) {
+
+        static BatchTokenResponse error(String description) {
+            return new BatchTokenResponse(null, OAuth2ErrorCodes.INVALID_REQUEST, description);
+        }
+    }
+
+    /**
+     * 字段与 /oauth2/token 的响应一致，失败时只有 client_id、error 和 error_description
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record TokenResponse(@JsonProperty("client_id") String clientId,
+                                @JsonProperty("access_token") String accessToken,
+                                @JsonProperty("token_type") String tokenType,
+                                @JsonProperty("expires_in") Long expiresIn,
+                                String scope,
+                                String error,
+                                @JsonProperty("error_description") String errorDescription) {
+
+        static TokenResponse of(BatchTokenIssuer.Result result) {
+            OAuth2Error error = result.error();
+            if (Objects.nonNull(error)) {
+                return new TokenResponse(result.clientId(), null, null, null, null,
+                        error.getErrorCode(), error.getDescription());
+            }
+            OAuth2AccessToken accessToken = Objects.requireNonNull(result.accessToken());
+            Long expiresIn = Objects.isNull(accessToken.getExpiresAt()) ? null
+                    : Duration.between(Instant.now(), accessToken.getExpiresAt()).getSeconds();
+            String scope = accessToken.getScopes().isEmpty() ? null : String.join(" ", accessToken.getScopes());
+            return new TokenResponse(result.clientId(), accessToken.getTokenValue(), accessToken.getTokenType().getValue(),
+                    expiresIn, scope, null, null);
+        }
+    }
+
 }
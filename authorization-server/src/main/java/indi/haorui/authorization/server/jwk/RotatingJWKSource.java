@@ -0,0 +1,340 @@
+package indi.haorui.authorization.server.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import indi.haorui.authorization.server.properties.JwtKeyProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 支持不重启轮换 key 的 JWKSource，/oauth2/jwks 发布的就是这里的 key
+ * <p>
+ * 除了 jwt.keys 中配置的 key，还会定时扫描 jwt.rotation.directory 中的 {@code <kid>.key}（PKCS#8）和 {@code <kid>.pub}（X.509），
+ * RSA 和 EC key 各自按下面的规则轮换：
+ * <ul>
+ *     <li>新 key 出现后立即发布到 /oauth2/jwks，在文件修改时间 + publishAhead 之后才用于签名，
+ *     保证资源服务器的 JWK 缓存在此之前已经拿到新 key</li>
+ *     <li>被新 key 取代或从目录中删除的 key，在 grace 之后才从 /oauth2/jwks 中移除，已签发的 token 仍然可以验签</li>
+ *     <li>签名 key 通过 {@link SigningKeyHolder#activate} 原子切换</li>
+ * </ul>
+ * 读取文件和解析 key 都在后台线程中进行，请求只读取预先构造好的 {@link JWKSet}
+ * <p>
+ * 激活时间由文件修改时间决定，重启和多个实例共享同一目录时结果一致
+ */
+@Slf4j
+public class RotatingJWKSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final String PRIVATE_KEY_SUFFIX = ".key";
+
+    private static final String PUBLIC_KEY_SUFFIX = ".pub";
+
+    private final SigningKeyHolder signingKeyHolder;
+
+    private final JwtKeyProperties.Rotation rotation;
+
+    /*
+     * 只在 refresh 中修改，refresh 只在 executor 线程或启动时调用
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private final ScheduledExecutorService executor;
+
+    private String directoryFingerprint;
+
+    private volatile JWKSet published;
+
+    private volatile List<KeyState> states = List.of();
+
+    /**
+     * @param keys jwt.keys 中配置的 key，视为已经发布，其中的签名 key 由 signingKeyHolder 决定
+     */
+    public RotatingJWKSource(List<JWK> keys, SigningKeyHolder signingKeyHolder, JwtKeyProperties.Rotation rotation) {
+        this.signingKeyHolder = signingKeyHolder;
+        this.rotation = rotation;
+        keys.forEach(jwk -> entries.put(jwk.getKeyID(), new Entry(jwk, PemKeys.algorithm(jwk), Instant.EPOCH, null, true)));
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwk-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresh();
+    }
+
+    /**
+     * 配置了 directory 时开始定时扫描
+     */
+    public void start() {
+        if (Objects.nonNull(rotation.getDirectory())) {
+            long interval = rotation.getPollInterval().toMillis();
+            executor.scheduleWithFixedDelay(this::refreshQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即扫描一次目录，供 reload 接口使用
+     */
+    public List<KeyState> reload() {
+        try {
+            executor.submit(this::refresh).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reloading keys", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to reload keys", e.getCause());
+        }
+        return states;
+    }
+
+    public List<KeyState> states() {
+        return states;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        return jwkSelector.select(published);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("Failed to refresh rotating keys", e);
+        }
+    }
+
+    private synchronized void refresh() {
+        Instant now = Instant.now();
+        if (Objects.nonNull(rotation.getDirectory())) {
+            scan(now);
+        }
+
+        Map<SignatureAlgorithm, Entry> active = active(now);
+        List<JWK> keys = new ArrayList<>();
+        List<KeyState> snapshot = new ArrayList<>();
+        List<String> retired = entries.values().stream()
+                .filter(entry -> active.get(entry.algorithm()) != entry && retired(entry, now))
+                .map(entry -> entry.jwk().getKeyID())
+                .toList();
+        retired.forEach(keyId -> log.info("Retire key {}", keyId));
+        entries.keySet().removeAll(retired);
+        for (Entry entry : entries.values()) {
+            keys.add(entry.jwk());
+            snapshot.add(new KeyState(entry.jwk().getKeyID(), entry.algorithm(), entry.activateAt(), entry.removedAt(),
+                    state(entry, active, now)));
+        }
+        this.published = new JWKSet(keys);
+        this.states = List.copyOf(snapshot);
+        active.forEach((algorithm, entry) -> {
+            JWK current = signingKeyHolder.find(algorithm);
+            if (Objects.isNull(current) || !entry.jwk().getKeyID().equals(current.getKeyID())) {
+                signingKeyHolder.activate(entry.jwk());
+            }
+        });
+    }
+
+    /**
+     * 目录内容没有变化时跳过解析
+     */
+    private void scan(Instant now) {
+        Path directory = rotation.getDirectory();
+        Map<String, Path> publicKeys = new HashMap<>();
+        StringBuilder fingerprint = new StringBuilder();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                fingerprint.append(name).append(':').append(Files.getLastModifiedTime(file).toMillis()).append(';');
+                if (name.endsWith(PUBLIC_KEY_SUFFIX)) {
+                    publicKeys.put(name.substring(0, name.length() - PUBLIC_KEY_SUFFIX.length()), file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list key directory {}", directory, e);
+            return;
+        }
+        if (fingerprint.toString().equals(directoryFingerprint)) {
+            return;
+        }
+
+        Map<String, Entry> loaded = new HashMap<>();
+        boolean[] complete = {true};
+        publicKeys.forEach((keyId, publicKey) -> {
+            Path privateKey = publicKey.resolveSibling(keyId + PRIVATE_KEY_SUFFIX);
+            if (!Files.isRegularFile(privateKey)) {
+                log.warn("Skip key {} without private key file", keyId);
+                complete[0] = false;
+                return;
+            }
+            try {
+                loaded.put(keyId, load(keyId, publicKey, privateKey));
+            } catch (Exception e) {
+                // 可能还没有写完，下次扫描再试
+                log.warn("Failed to load key {} from {}", keyId, directory, e);
+                complete[0] = false;
+            }
+        });
+        for (Entry entry : loaded.values()) {
+            Entry current = entries.get(entry.jwk().getKeyID());
+            if (Objects.nonNull(current) && current.configured()) {
+                log.warn("Key {} in {} is already configured in jwt.keys, ignored", entry.jwk().getKeyID(), directory);
+            } else if (Objects.isNull(current) || !current.jwk().equals(entry.jwk())
+                    || !current.activateAt().equals(entry.activateAt()) || Objects.nonNull(current.removedAt())) {
+                log.info("Publish key {}, activate at {}", entry.jwk().getKeyID(), entry.activateAt());
+                entries.put(entry.jwk().getKeyID(), entry);
+            }
+        }
+        entries.replaceAll((keyId, entry) -> {
+            if (!entry.configured() && !publicKeys.containsKey(keyId) && Objects.isNull(entry.removedAt())) {
+                log.info("Key {} is removed from {}, retire at {}", keyId, directory, now.plus(rotation.getGrace()));
+                return new Entry(entry.jwk(), entry.algorithm(), entry.activateAt(), now, false);
+            }
+            return entry;
+        });
+        // 有 key 没有加载成功时，下次扫描即使目录没有变化也重新解析
+        this.directoryFingerprint = complete[0] ? fingerprint.toString() : null;
+    }
+
+    private Entry load(String keyId, Path publicKey, Path privateKey) throws IOException {
+        JWK jwk;
+        try (InputStream pub = Files.newInputStream(publicKey); InputStream priv = Files.newInputStream(privateKey)) {
+            jwk = PemKeys.load(keyId, pub, priv);
+        }
+        Instant modifiedAt = Stream.of(publicKey, privateKey)
+                .map(file -> {
+                    try {
+                        return Files.getLastModifiedTime(file).toInstant();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                })
+                .max(Comparator.naturalOrder())
+                .orElseThrow();
+        return new Entry(jwk, PemKeys.algorithm(jwk), modifiedAt.plus(rotation.getPublishAhead()), null, false);
+    }
+
+    /**
+     * 每种算法中，已到激活时间且没有被删除的 key 里激活时间最晚的一个；激活时间相同时保持当前签名 key，
+     * 当前没有这种算法的签名 key 时取最后一个
+     */
+    private Map<SignatureAlgorithm, Entry> active(Instant now) {
+        Map<SignatureAlgorithm, Entry> active = new EnumMap<>(SignatureAlgorithm.class);
+        for (Entry entry : entries.values()) {
+            if (entry.activateAt().isAfter(now) || Objects.nonNull(entry.removedAt())) {
+                continue;
+            }
+            Entry candidate = active.get(entry.algorithm());
+            if (Objects.isNull(candidate) || entry.activateAt().isAfter(candidate.activateAt())
+                    || (entry.activateAt().equals(candidate.activateAt()) && !signing(candidate))) {
+                active.put(entry.algorithm(), entry);
+            }
+        }
+        // 没有其他可用的 key 时继续使用当前 key，不能没有签名 key
+        for (SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+            JWK current = signingKeyHolder.find(algorithm);
+            if (Objects.nonNull(current) && !active.containsKey(algorithm)) {
+                log.warn("No {} signing key candidate, keep using {}", algorithm, current.getKeyID());
+                Entry entry = entries.get(current.getKeyID());
+                active.put(algorithm, Objects.nonNull(entry) ? entry : new Entry(current, algorithm, Instant.EPOCH, null, true));
+            }
+        }
+        return active;
+    }
+
+    private boolean signing(Entry entry) {
+        JWK current = signingKeyHolder.find(entry.algorithm());
+        return Objects.nonNull(current) && current.getKeyID().equals(entry.jwk().getKeyID());
+    }
+
+    private boolean retired(Entry entry, Instant now) {
+        if (Objects.nonNull(entry.removedAt())) {
+            return !now.isBefore(entry.removedAt().plus(rotation.getGrace()));
+        }
+        Instant supersededAt = supersededAt(entry, now);
+        return Objects.nonNull(supersededAt) && !now.isBefore(supersededAt.plus(rotation.getGrace()));
+    }
+
+    /**
+     * 同一种算法中第一个比它晚激活的 key 的激活时间
+     */
+    private Instant supersededAt(Entry entry, Instant now) {
+        Instant supersededAt = null;
+        for (Entry other : entries.values()) {
+            Instant activateAt = other.activateAt();
+            if (other.algorithm() == entry.algorithm() && Objects.isNull(other.removedAt())
+                    && activateAt.isAfter(entry.activateAt()) && !activateAt.isAfter(now)
+                    && (Objects.isNull(supersededAt) || activateAt.isBefore(supersededAt))) {
+                supersededAt = activateAt;
+            }
+        }
+        return supersededAt;
+    }
+
+    private State state(Entry entry, Map<SignatureAlgorithm, Entry> active, Instant now) {
+        if (active.get(entry.algorithm()) == entry) {
+            return State.ACTIVE;
+        }
+        if (entry.activateAt().isAfter(now)) {
+            return State.PENDING;
+        }
+        if (Objects.nonNull(entry.removedAt()) || Objects.nonNull(supersededAt(entry, now))) {
+            return State.RETIRING;
+        }
+        return State.PUBLISHED;
+    }
+
+    /**
+     * @param configured 是否来自 jwt.keys，这类 key 不会因为目录变化而删除
+     */
+    private record Entry(JWK jwk, SignatureAlgorithm algorithm, Instant activateAt, Instant removedAt, boolean configured) {
+    }
+
+    public enum State {
+        /**
+         * 当前签名 key，每种算法一把
+         */
+        ACTIVE,
+        /**
+         * 已发布，等待激活
+         */
+        PENDING,
+        /**
+         * 已发布，可用于验签
+         */
+        PUBLISHED,
+        /**
+         * 已被取代或删除，grace 之后不再发布
+         */
+        RETIRING
+    }
+
+    public record KeyState(String keyId, SignatureAlgorithm algorithm, Instant activateAt, Instant removedAt, State state) {
+    }
+}
@@ -0,0 +1,109 @@
+package indi.haorui.authorization.server.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 当前用于签发 token 的 key，在启动或轮换时解析一次，之后 customizer 和 encoder 直接读取
+ * <p>
+ * 每种签名算法（RS256、ES256 ...）各有一把 active key，构造时传入的 key 的算法为默认算法
+ * <p>
+ * 对外发布的 /oauth2/jwks 仍然由 SecurityConfig#jwkSource 提供（包含所有 key），
+ * 这里的 {@link #jwkSource()} 只包含签名 key，供 NimbusJwtEncoder 使用，
+ * 不实现 JWKSource 接口，避免容器中出现两个 JWKSource bean
+ */
+@Slf4j
+public class SigningKeyHolder {
+
+    private final SignatureAlgorithm defaultAlgorithm;
+
+    /*
+     * 不可变，activate 时整体替换
+     */
+    private volatile Map<SignatureAlgorithm, Active> active = Map.of();
+
+    private final JWKSource<SecurityContext> jwkSource = this::select;
+
+    public SigningKeyHolder(JWK jwk) {
+        this.defaultAlgorithm = PemKeys.algorithm(jwk);
+        activate(jwk);
+    }
+
+    public SignatureAlgorithm algorithm() {
+        return defaultAlgorithm;
+    }
+
+    public JWK jwk() {
+        return active.get(defaultAlgorithm).jwk();
+    }
+
+    public String keyId() {
+        return active.get(defaultAlgorithm).keyId();
+    }
+
+    /**
+     * @throws IllegalArgumentException 没有这种算法的 key
+     */
+    public String keyId(SignatureAlgorithm algorithm) {
+        Active current = active.get(algorithm);
+        if (Objects.isNull(current)) {
+            throw new IllegalArgumentException("No signing key for algorithm " + algorithm);
+        }
+        return current.keyId();
+    }
+
+    /**
+     * 没有这种算法的 key 时返回 null
+     */
+    public JWK find(SignatureAlgorithm algorithm) {
+        Active current = active.get(algorithm);
+        return Objects.isNull(current) ? null : current.jwk();
+    }
+
+    /**
+     * 原子替换 key 所属算法的签名 key，已经在签发中的 token 继续使用旧 key
+     */
+    public synchronized void activate(JWK jwk) {
+        Assert.notNull(jwk, "jwk cannot be null");
+        Assert.isTrue(jwk.isPrivate(), "jwk must contain a private key");
+        Assert.hasText(jwk.getKeyID(), "jwk must have a key id");
+        SignatureAlgorithm algorithm = PemKeys.algorithm(jwk);
+        Map<SignatureAlgorithm, Active> next = new EnumMap<>(SignatureAlgorithm.class);
+        next.putAll(active);
+        next.put(algorithm, new Active(jwk, jwk.getKeyID(), List.of(jwk)));
+        this.active = Collections.unmodifiableMap(next);
+        log.info("Activated {} signing key {}", algorithm, jwk.getKeyID());
+    }
+
+    public JWKSource<SecurityContext> jwkSource() {
+        return jwkSource;
+    }
+
+    /**
+     * NimbusJwtEncoder 按 header 中的 kid/alg 构造 selector，匹配时直接返回预先构造好的 list
+     */
+    private List<JWK> select(JWKSelector jwkSelector, SecurityContext context) {
+        for (Active current : active.values()) {
+            if (jwkSelector.getMatcher().matches(current.jwk())) {
+                return current.keys();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private record Active(JWK jwk, String keyId, List<JWK> keys) {
+    }
+}
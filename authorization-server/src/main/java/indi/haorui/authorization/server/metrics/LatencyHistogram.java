@@ -0,0 +1,101 @@
+package indi.haorui.authorization.server.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 固定桶的延迟直方图，第 i 个桶记录 [2^(i-1), 2^i) 微秒的请求，最后一个桶记录 1 秒以上的请求
+ * <p>
+ * 记录只有一次 numberOfLeadingZeros 和一次 LongAdder 自增，不加锁，不分配对象；
+ * 百分位取所在桶的上界，误差不超过 2 倍，用于观察数量级和长尾
+ */
+public class LatencyHistogram {
+
+    /*
+     * 2^20 微秒约 1 秒
+     */
+    private static final int BUCKETS = 22;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * 各个计数器分别读取，并发写入时快照不是严格一致的
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0) {
+                histogram.put(i == BUCKETS - 1 ? ">=" + upperBoundMicros(i - 1) + "us" : "<" + upperBoundMicros(i) + "us", counts[i]);
+            }
+        }
+        long requests = count.sum();
+        return new Snapshot(requests,
+                requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / requests),
+                percentile(counts, total, 0.5),
+                percentile(counts, total, 0.9),
+                percentile(counts, total, 0.99),
+                percentile(counts, total, 0.999),
+                TimeUnit.NANOSECONDS.toMicros(maxNanos.get()),
+                histogram);
+    }
+
+    private long percentile(long[] counts, long total, double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) : upperBoundMicros(i);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * 时间单位都是微秒
+     *
+     * @param buckets 桶上界 -> 请求数，只包含有数据的桶
+     */
+    public record Snapshot(long count, long mean, long p50, long p90, long p99, long p999, long max,
+                           Map<String, Long> buckets) {
+    }
+}
@@ -0,0 +1,22 @@
+package indi.haorui.authorization.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 运维接口（按 client / principal 查看和撤销 token、查看和重新加载签名 key、introspection 和本地缓存的统计）的调用方
+ */
+@Data
+@ConfigurationProperties(prefix = "authorization.admin")
+public class AdminProperties {
+
+    /**
+     * 允许调用运维接口的 clientId，调用方用自己的 client_secret 做 basic 认证，为空时所有调用都被拒绝
+     */
+    private Set<String> clients = new HashSet<>();
+}
@@ -0,0 +1,79 @@
+package indi.haorui.authorization.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * authorization 在 redis 中的存储配置
+ */
+@Data
+@ConfigurationProperties(prefix = "authorization.store")
+public class AuthorizationStoreProperties {
+
+    /**
+     * 写入时使用的编码，读取时 json 和 binary 两种格式都能识别，所以可以滚动切换
+     */
+    private Codec codec = Codec.JSON;
+
+    private NearCache nearCache = new NearCache();
+
+    private ClientCache clientCache = new ClientCache();
+
+    /**
+     * 是否按 redis cluster 的方式访问（不使用 MULTI/EXEC 和跨 slot 的多 key 命令），不配置时根据连接配置判断
+     */
+    private Boolean cluster;
+
+    /**
+     * 主记录的过期时间是所有未过期 token 中最晚的过期时间，只有 state 的 authorization（等待用户授权）使用这个时间
+     */
+    private Duration defaultTtl = Duration.ofMinutes(5);
+
+    /**
+     * 是否启用 ReactiveRedisOAuth2AuthorizationService，启用后 /oauth2/v1/introspect 未命中缓存的请求
+     * 在等待 redis 时释放请求线程
+     */
+    private boolean reactive = false;
+
+    public enum Codec {
+        /**
+         * GenericJackson2JsonRedisSerializer，带类型信息的 json
+         */
+        JSON,
+        /**
+         * 带版本号的紧凑二进制格式
+         */
+        BINARY
+    }
+
+    /**
+     * 进程内缓存还原后的 OAuth2Authorization，save/remove 时通过 redis pub/sub 通知所有节点失效
+     */
+    @Data
+    public static class NearCache {
+
+        private boolean enabled = false;
+
+        private int maximumSize = 10_000;
+
+        /**
+         * 失效消息丢失时，缓存最多在这个时间内返回旧数据
+         */
+        private Duration ttl = Duration.ofSeconds(10);
+    }
+
+    /**
+     * RegisteredClient 的本地缓存，save 时通过 redis pub/sub 通知所有节点失效
+     */
+    @Data
+    public static class ClientCache {
+
+        private int maximumSize = 1_000;
+
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,33 @@
+package indi.haorui.authorization.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * /oauth2/v1/token 批量签发配置
+ */
+@Data
+@ConfigurationProperties(prefix = "authorization.batch")
+public class BatchTokenProperties {
+
+    /**
+     * 允许调用批量接口的 clientId，调用方用自己的 client_secret 做 basic 认证，
+     * 可以为任意已注册且支持 client_credentials 的 client 签发 token
+     */
+    private Set<String> trustedClients = new HashSet<>();
+
+    /**
+     * 单次请求最多签发的 token 数量
+     */
+    private int maxBatchSize = 1_000;
+
+    /**
+     * 签名线程数，默认为 CPU 核数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+}
@@ -0,0 +1,38 @@
+package indi.haorui.authorization.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * /oauth2/v1/introspect 配置
+ */
+@Data
+@ConfigurationProperties(prefix = "authorization.introspection")
+public class IntrospectionProperties {
+
+    private int maximumSize = 100_000;
+
+    /**
+     * 超过这个长度的 token 不查询也不缓存，直接返回 inactive；签发的 jwt 远小于这个长度
+     */
+    private int maxTokenLength = 4096;
+
+    /**
+     * active 结果的缓存时间，也是 token 被撤销后最多还会返回 active 的时间，不会超过 token 本身的过期时间
+     */
+    private Duration activeTtl = Duration.ofSeconds(5);
+
+    /**
+     * inactive 结果（包括不存在的 token）的缓存时间，inactive 的 token 不会再变成 active，可以比 activeTtl 长
+     */
+    private Duration inactiveTtl = Duration.ofSeconds(30);
+
+    /**
+     * 调用方 basic 认证成功的结果缓存时间，client_secret 使用 bcrypt 等慢哈希时，避免每次请求都做一次校验
+     */
+    private Duration clientAuthenticationTtl = Duration.ofMinutes(1);
+}
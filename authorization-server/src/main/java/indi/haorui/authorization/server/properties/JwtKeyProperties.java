@@ -0,0 +1,103 @@
+package indi.haorui.authorization.server.properties;
+
+import com.nimbusds.jose.jwk.JWK;
+import indi.haorui.authorization.server.jwk.PemKeys;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2024/6/11
+ * <p>
+ * 签名 key 配置，支持 RSA 和 EC（P-256 等）两种 key，类型根据 PEM 内容识别，见 {@link PemKeys}
+ */
+@Data
+@ConfigurationProperties(prefix = "jwt")
+public class JwtKeyProperties {
+
+    private List<Key> keys;
+
+    /**
+     * 签发 token 使用的 key id，不配置时使用最后一把 key
+     * <p>
+     * 它的算法也是 access token 的默认签名算法
+     */
+    private String activeKeyId;
+
+    /**
+     * clientId -> access token 的签名算法，例如把高频调用的 client 切到 ES256，
+     * 需要 keys 或 rotation.directory 中有对应类型的 key
+     */
+    private Map<String, SignatureAlgorithm> clientAlgorithms = new HashMap<>();
+
+    private Rotation rotation = new Rotation();
+
+    public Key activeKey() {
+        if (Objects.isNull(activeKeyId)) {
+            return keys.get(keys.size() - 1);
+        }
+        return keys.stream()
+                .filter(key -> activeKeyId.equals(key.getId()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown active key id: " + activeKeyId));
+    }
+
+    @Data
+    public static class Key{
+
+        private String id;
+
+        /**
+         * PKCS#8 私钥
+         */
+        private Resource priv;
+
+        /**
+         * X.509 公钥
+         */
+        private Resource pub;
+
+        public JWK toJWK() {
+            try (InputStream publicKey = pub.getInputStream(); InputStream privateKey = priv.getInputStream()) {
+                return PemKeys.load(id, publicKey, privateKey);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load key " + id, e);
+            }
+        }
+    }
+
+    /**
+     * 不重启轮换 key，见 RotatingJWKSource
+     */
+    @Data
+    public static class Rotation {
+
+        /**
+         * 存放 {kid}.key / {kid}.pub 的目录，不配置时只使用 keys
+         */
+        private Path directory;
+
+        private Duration pollInterval = Duration.ofSeconds(30);
+
+        /**
+         * 新 key 发布后多久开始用于签名，需要大于资源服务器 JWK set 的缓存时间
+         */
+        private Duration publishAhead = Duration.ofMinutes(10);
+
+        /**
+         * 被取代的 key 继续发布的时间，需要大于 access token 的有效期
+         */
+        private Duration grace = Duration.ofHours(1);
+    }
+}
@@ -0,0 +1,78 @@
+package indi.haorui.authorization.server.repository;
+
+import indi.haorui.authorization.server.cache.NearCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RedisOAuth2AuthorizationService 的本地缓存
+ * <p>
+ * 缓存两类数据:
+ * <ul>
+ *     <li>id -> 还原后的 OAuth2Authorization，省掉 redis 读取、反序列化和 RegisteredClient 查询</li>
+ *     <li>索引 key -> id，token 查找不用再访问 redis 上的索引</li>
+ * </ul>
+ * 索引缓存不单独失效，取到 authorization 后仍然会校验 token，所以只需要按 id 失效
+ */
+@Slf4j
+public class AuthorizationNearCache {
+
+    /**
+     * save/remove 后发布 authorization id，所有节点收到后失效本地缓存
+     */
+    public static final String CHANNEL = "access:token:invalidate";
+
+    private final NearCache<OAuth2Authorization> authorizations;
+
+    private final NearCache<String> indexes;
+
+    public AuthorizationNearCache(int maximumSize, Duration ttl) {
+        this.authorizations = new NearCache<>(maximumSize, ttl);
+        this.indexes = new NearCache<>(maximumSize, ttl);
+    }
+
+    OAuth2Authorization get(String id) {
+        return authorizations.get(id);
+    }
+
+    void put(OAuth2Authorization authorization) {
+        authorizations.put(authorization.getId(), authorization);
+    }
+
+    String id(String index) {
+        return indexes.get(index);
+    }
+
+    void putIndex(String index, String id) {
+        indexes.put(index, id);
+    }
+
+    public void invalidate(String id) {
+        authorizations.invalidate(id);
+    }
+
+    /**
+     * 订阅 {@link #CHANNEL} 的监听器
+     */
+    public MessageListener listener() {
+        return (message, pattern) -> {
+            String id = new String(message.getBody(), StandardCharsets.UTF_8);
+            log.trace("Invalidate authorization {}", id);
+            invalidate(id);
+        };
+    }
+
+    public NearCache.Stats authorizationStats() {
+        return authorizations.stats();
+    }
+
+    public NearCache.Stats indexStats() {
+        return indexes.stats();
+    }
+}
@@ -0,0 +1,241 @@
+package indi.haorui.authorization.server.repository;
+
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 基于 ReactiveRedisTemplate 的 authorization 存储，key 布局（{@link RedisAuthorizationKeys}）和编码与
+ * {@link RedisOAuth2AuthorizationService} 完全相同，两者可以读写同一份数据
+ * <p>
+ * 等待 redis 响应时不占用线程，并发请求数只受连接上的 in-flight 命令数限制，不受线程池大小限制
+ * <p>
+ * 与阻塞版本的区别：
+ * <ul>
+ *     <li>reactive 连接不支持 MULTI/EXEC，写入按 cluster 模式的语义执行：先写主记录，再同时写索引和集合，
+ *     读取时索引指向不存在的主记录会被当作不存在</li>
+ *     <li>还原 OAuth2Authorization 需要查询 RegisteredClientRepository（阻塞，本地缓存未命中时会访问 redis），
+ *     所以读到主记录后切到 boundedElastic 线程再还原，不在 lettuce 的 event loop 上阻塞</li>
+ * </ul>
+ * 授权服务器的标准端点（/oauth2/token 等）是 servlet 实现，仍然使用阻塞的 OAuth2AuthorizationService
+ */
+@Slf4j
+public class ReactiveRedisOAuth2AuthorizationService {
+
+    private final ReactiveRedisTemplate<String, OAuth2AuthorizationPO> redisTemplate;
+
+    private final ReactiveStringRedisTemplate stringRedisTemplate;
+
+    private final RegisteredClientRepository registeredClientRepository;
+
+    /*
+        为 null 时不启用本地缓存，与阻塞版本共用同一个实例时两边的失效互相可见
+     */
+    @Nullable
+    private final AuthorizationNearCache nearCache;
+
+    private Duration defaultTtl = Duration.ofMinutes(5);
+
+    public ReactiveRedisOAuth2AuthorizationService(ReactiveRedisTemplate<String, OAuth2AuthorizationPO> redisTemplate,
+                                                   ReactiveStringRedisTemplate stringRedisTemplate,
+                                                   RegisteredClientRepository registeredClientRepository,
+                                                   @Nullable AuthorizationNearCache nearCache) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * 见 {@link RedisOAuth2AuthorizationService#setDefaultTtl}
+     */
+    public void setDefaultTtl(Duration defaultTtl) {
+        Assert.isTrue(!defaultTtl.isNegative() && !defaultTtl.isZero(), "defaultTtl must be positive");
+        this.defaultTtl = defaultTtl;
+    }
+
+    /**
+     * 两个 RTT：主记录写成功后，索引、集合和失效消息同时发出
+     * <p>
+     * 所有 token 都已过期时等同于 {@link #remove}
+     */
+    public Mono<Void> save(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            Map<String, Instant> tokenIndexes = RedisAuthorizationKeys.indexes(authorization);
+            Instant expiresAt = RedisOAuth2AuthorizationService.expiresAt(tokenIndexes.values(), now, defaultTtl);
+            if (Objects.isNull(expiresAt)) {
+                return remove(authorization);
+            }
+            Duration ttl = Duration.between(now, expiresAt);
+            String id = authorization.getId();
+            List<Mono<?>> writes = new ArrayList<>();
+            tokenIndexes.forEach((index, indexExpiresAt) -> {
+                Duration indexTtl = Objects.isNull(indexExpiresAt) ? ttl : Duration.between(now, indexExpiresAt);
+                if (!indexTtl.isNegative() && !indexTtl.isZero()) {
+                    writes.add(stringRedisTemplate.opsForValue().set(index, id, indexTtl));
+                }
+            });
+            List<String> args = List.of(String.valueOf(expiresAt.toEpochMilli()), id,
+                    String.valueOf(now.toEpochMilli()), String.valueOf(ttl.toMillis()));
+            for (String set : sets(authorization)) {
+                writes.add(stringRedisTemplate.execute(RedisOAuth2AuthorizationService.ADD_TO_SET, List.of(set), args).then());
+            }
+            if (Objects.nonNull(nearCache)) {
+                writes.add(stringRedisTemplate.convertAndSend(AuthorizationNearCache.CHANNEL, id));
+            }
+            return redisTemplate.opsForValue().set(RedisAuthorizationKeys.authorization(id), new OAuth2AuthorizationPO(authorization), ttl)
+                    .thenMany(Flux.merge(writes))
+                    .then(Mono.fromRunnable(() -> invalidate(id)));
+        });
+    }
+
+    /**
+     * 主记录和索引逐个 key 删除（不在同一个 slot），与集合的 ZREM、失效消息同时发出，一个 RTT
+     */
+    public Mono<Void> remove(OAuth2Authorization authorization) {
+        Assert.notNull(authorization, "authorization cannot be null");
+        return Mono.defer(() -> {
+            String id = authorization.getId();
+            List<Mono<?>> writes = new ArrayList<>();
+            writes.add(redisTemplate.delete(RedisAuthorizationKeys.authorization(id)));
+            RedisAuthorizationKeys.indexes(authorization).keySet()
+                    .forEach(index -> writes.add(stringRedisTemplate.delete(index)));
+            for (String set : sets(authorization)) {
+                writes.add(stringRedisTemplate.opsForZSet().remove(set, id));
+            }
+            if (Objects.nonNull(nearCache)) {
+                writes.add(stringRedisTemplate.convertAndSend(AuthorizationNearCache.CHANNEL, id));
+            }
+            return Flux.merge(writes).then(Mono.fromRunnable(() -> invalidate(id)));
+        });
+    }
+
+    public Mono<OAuth2Authorization> findById(String id) {
+        Assert.hasText(id, "id cannot be empty");
+        if (Objects.nonNull(nearCache)) {
+            OAuth2Authorization authorization = nearCache.get(id);
+            if (Objects.nonNull(authorization)) {
+                return Mono.just(authorization);
+            }
+        }
+        return redisTemplate.opsForValue().get(RedisAuthorizationKeys.authorization(id))
+                .publishOn(Schedulers.boundedElastic())
+                .mapNotNull(this::toAuthorization)
+                .doOnNext(authorization -> {
+                    if (Objects.nonNull(nearCache)) {
+                        nearCache.put(authorization);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("", e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * 与 {@link RedisOAuth2AuthorizationService#findByToken(String, OAuth2TokenType)} 相同，
+     * tokenType 为 null 时同时 GET 所有类型的索引，按索引顺序取第一个匹配的 authorization
+     */
+    public Mono<OAuth2Authorization> findByToken(String token, @Nullable OAuth2TokenType tokenType) {
+        Assert.hasText(token, "token cannot be empty");
+        return find(token, RedisAuthorizationKeys.indexes(token, tokenType), tokenType);
+    }
+
+    /**
+     * 见 {@link RedisOAuth2AuthorizationService#findByTokenTypes(String, Collection)}
+     */
+    public Mono<OAuth2Authorization> findByTokenTypes(String token, Collection<OAuth2TokenType> tokenTypes) {
+        Assert.hasText(token, "token cannot be empty");
+        List<String> indexes = tokenTypes.stream()
+                .flatMap(tokenType -> RedisAuthorizationKeys.indexes(token, tokenType).stream())
+                .toList();
+        return find(token, indexes, null);
+    }
+
+    /**
+     * 见 {@link RedisOAuth2AuthorizationService#countByClient}
+     */
+    public Mono<Long> countByClient(String registeredClientId) {
+        return count(RedisAuthorizationKeys.client(registeredClientId));
+    }
+
+    public Mono<Long> countByPrincipal(String principalName) {
+        return count(RedisAuthorizationKeys.principal(principalName));
+    }
+
+    private Mono<Long> count(String key) {
+        return stringRedisTemplate.opsForZSet()
+                .count(key, Range.rightUnbounded(Range.Bound.inclusive((double) System.currentTimeMillis())));
+    }
+
+    private Mono<OAuth2Authorization> find(String token, List<String> indexes, @Nullable OAuth2TokenType tokenType) {
+        if (indexes.isEmpty()) {
+            return Mono.empty();
+        }
+        if (Objects.nonNull(nearCache)) {
+            for (String index : indexes) {
+                String id = nearCache.id(index);
+                OAuth2Authorization authorization = Objects.isNull(id) ? null : nearCache.get(id);
+                if (Objects.nonNull(authorization) && RedisOAuth2AuthorizationService.hasToken(authorization, token, tokenType)) {
+                    return Mono.just(authorization);
+                }
+            }
+        }
+        // 所有索引的 GET 同时发出，结果按索引顺序处理
+        return Flux.fromIterable(indexes)
+                .flatMapSequential(index -> stringRedisTemplate.opsForValue().get(index).map(id -> Map.entry(index, id)))
+                .concatMap(entry -> findById(entry.getValue())
+                        .filter(authorization -> RedisOAuth2AuthorizationService.hasToken(authorization, token, tokenType))
+                        .doOnNext(authorization -> {
+                            if (Objects.nonNull(nearCache)) {
+                                nearCache.putIndex(entry.getKey(), entry.getValue());
+                            }
+                        }))
+                .next();
+    }
+
+    private void invalidate(String id) {
+        if (Objects.nonNull(nearCache)) {
+            nearCache.invalidate(id);
+        }
+    }
+
+    private static List<String> sets(OAuth2Authorization authorization) {
+        return List.of(RedisAuthorizationKeys.client(authorization.getRegisteredClientId()),
+                RedisAuthorizationKeys.principal(authorization.getPrincipalName()));
+    }
+
+    @Nullable
+    private OAuth2Authorization toAuthorization(OAuth2AuthorizationPO oAuth2AuthorizationPo) {
+        try {
+            RegisteredClient registeredClient = registeredClientRepository.findById(oAuth2AuthorizationPo.getRegisteredClientId());
+            return oAuth2AuthorizationPo.toOauth2Authorization(registeredClient);
+        } catch (Exception e) {
+            log.error("", e);
+        }
+        return null;
+    }
+}
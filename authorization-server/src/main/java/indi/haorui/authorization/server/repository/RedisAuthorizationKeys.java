@@ -0,0 +1,128 @@
+package indi.haorui.authorization.server.repository;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.endpoint.OidcParameterNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * authorization 在 redis 中的 key 布局
+ * <p>
+ * 主记录: access:token:{id} -> OAuth2AuthorizationPO
+ * <p>
+ * 索引: access:index:{tokenType}:{sha256(token)} -> id，用于 findByToken 直接定位，不再 keys 扫描
+ * <p>
+ * client 集合: access:client:{registeredClientId}:tokens，principal 集合: access:principal:{principalName}:tokens，
+ * 都是 sorted set，member 为 id，score 为主记录的过期时间，用于按 client / principal 计数和撤销。
+ * 这两个 key 中的花括号是 redis cluster 的 hash tag，同一个 client（principal）以后增加的 key 会落在同一个 slot
+ */
+final class RedisAuthorizationKeys {
+
+    static final String PREFIX = "access:token:";
+
+    static final String INDEX_PREFIX = "access:index:";
+
+    static final String CLIENT_PREFIX = "access:client:";
+
+    static final String PRINCIPAL_PREFIX = "access:principal:";
+
+    private static final String SET_SUFFIX = ":tokens";
+
+    /*
+     * tokenType 为 null 时按这个顺序查找，与 hasToken 的匹配顺序保持一致
+     */
+    private static final List<String> TOKEN_TYPES = List.of(
+            OAuth2ParameterNames.STATE,
+            OAuth2ParameterNames.CODE,
+            OAuth2TokenType.ACCESS_TOKEN.getValue(),
+            OidcParameterNames.ID_TOKEN,
+            OAuth2TokenType.REFRESH_TOKEN.getValue(),
+            OAuth2ParameterNames.DEVICE_CODE,
+            OAuth2ParameterNames.USER_CODE
+    );
+
+    private RedisAuthorizationKeys() {
+    }
+
+    static String authorization(String id) {
+        return PREFIX + id;
+    }
+
+    static String client(String registeredClientId) {
+        return CLIENT_PREFIX + "{" + registeredClientId + "}" + SET_SUFFIX;
+    }
+
+    static String principal(String principalName) {
+        return PRINCIPAL_PREFIX + "{" + principalName + "}" + SET_SUFFIX;
+    }
+
+    /**
+     * token 原文不落 redis，只保存 hash
+     */
+    static String index(String tokenType, String token) {
+        return INDEX_PREFIX + tokenType + ":" + DigestUtil.sha256Hex(token);
+    }
+
+    /**
+     * @param token     token值
+     * @param tokenType 为 null 时返回所有类型的索引 key
+     * @return 需要查找的索引 key，未知的 tokenType 返回空
+     */
+    static List<String> indexes(String token, @Nullable OAuth2TokenType tokenType) {
+        if (Objects.isNull(tokenType)) {
+            return TOKEN_TYPES.stream().map(type -> index(type, token)).toList();
+        }
+        if (!TOKEN_TYPES.contains(tokenType.getValue())) {
+            return Collections.emptyList();
+        }
+        return List.of(index(tokenType.getValue(), token));
+    }
+
+    /**
+     * 根据 authorization 中存在的 token 计算索引
+     *
+     * @return 索引 key -> token 过期时间（没有过期时间的为 null，例如 state）
+     */
+    static Map<String, Instant> indexes(OAuth2Authorization authorization) {
+        Map<String, Instant> indexes = new LinkedHashMap<>();
+        String state = authorization.getAttribute(OAuth2ParameterNames.STATE);
+        if (StrUtil.isNotBlank(state)) {
+            indexes.put(index(OAuth2ParameterNames.STATE, state), null);
+        }
+        put(indexes, OAuth2ParameterNames.CODE, authorization.getToken(OAuth2AuthorizationCode.class));
+        put(indexes, OAuth2TokenType.ACCESS_TOKEN.getValue(), authorization.getToken(OAuth2AccessToken.class));
+        put(indexes, OidcParameterNames.ID_TOKEN, authorization.getToken(OidcIdToken.class));
+        put(indexes, OAuth2TokenType.REFRESH_TOKEN.getValue(), authorization.getToken(OAuth2RefreshToken.class));
+        put(indexes, OAuth2ParameterNames.DEVICE_CODE, authorization.getToken(OAuth2DeviceCode.class));
+        put(indexes, OAuth2ParameterNames.USER_CODE, authorization.getToken(OAuth2UserCode.class));
+        return indexes;
+    }
+
+    private static void put(Map<String, Instant> indexes, String tokenType,
+                            @Nullable OAuth2Authorization.Token<? extends AbstractOAuth2Token> token) {
+        if (Objects.isNull(token) || Objects.isNull(token.getToken())) {
+            return;
+        }
+        AbstractOAuth2Token value = token.getToken();
+        indexes.put(index(tokenType, value.getTokenValue()), value.getExpiresAt());
+    }
+}
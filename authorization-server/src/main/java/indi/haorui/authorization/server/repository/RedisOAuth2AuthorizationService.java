@@ -1,10 +1,16 @@
 package indi.haorui.authorization.server.repository;
 
-import cn.hutool.core.collection.CollUtil;
 import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.lang.Nullable;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.OAuth2DeviceCode;
@@ -19,61 +25,469 @@ import org.springframework.security.oauth2.server.authorization.OAuth2Authorizat
 import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
 
 /**
  * Created by Yang Hao.rui on 2024/6/12
  */
 @Slf4j
-@RequiredArgsConstructor
 public class RedisOAuth2AuthorizationService implements OAuth2AuthorizationService {
 
     /*
-        OAuth2AccessToken 无法被反序列化，需要自定义序列化器
+     * 按 client / principal 撤销时每个 pipeline 处理的 authorization 数量
      */
+    private static final int REVOKE_BATCH_SIZE = 500;
+
+    /*
+     * 与 authorization code 的默认有效期相同
+     */
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    /**
+     * 维护 client / principal 集合：ZADD、清理过期 member、集合的过期时间只延长不缩短，
+     * 单 key 的脚本按 KEYS[1] 路由到所在的 slot，不依赖 redis 7 的 PEXPIRE NX/GT
+     * <p>
+     * KEYS[1] 集合，ARGV[1] 主记录过期时间（毫秒，score），ARGV[2] id，ARGV[3] 当前时间（毫秒），ARGV[4] 集合的 ttl（毫秒）；
+     * 没有过期时间的集合 PTTL 返回 -1，同样会被设置
+     * <p>
+     * 阻塞和 reactive 两个实现共用
+     */
+    public static final RedisScript<Long> ADD_TO_SET = RedisScript.of("""
+            redis.call('ZADD', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, ARGV[3])
+            local ttl = redis.call('PTTL', KEYS[1])
+            if ttl < tonumber(ARGV[4]) then
+                redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            end
+            return ttl
+            """, Long.class);
+
+    /*
+     * pipeline 和事务中拿不到 EVALSHA 的 NOSCRIPT 结果再重试，直接用 EVAL，脚本只有两百多字节
+     */
+    private static final byte[] ADD_TO_SET_SCRIPT = ADD_TO_SET.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+
     private final RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate;
 
+    /*
+        token -> id 的索引，value 只是 id，用字符串序列化
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+
     private final RegisteredClientRepository registeredClientRepository;
 
-    private final static String PREFIX = "access:token:";
+    /*
+        为 null 时不启用本地缓存
+     */
+    @Nullable
+    private final AuthorizationNearCache nearCache;
+
+    /*
+     * redis cluster 下不使用 MULTI/EXEC 和跨 slot 的多 key 命令（MGET、多 key 的 DEL），改为 pipeline 中逐个 key 执行
+     */
+    private final boolean cluster;
+
+    private Duration defaultTtl = DEFAULT_TTL;
+
+    public RedisOAuth2AuthorizationService(RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate,
+                                           StringRedisTemplate stringRedisTemplate,
+                                           RegisteredClientRepository registeredClientRepository) {
+        this(redisTemplate, stringRedisTemplate, registeredClientRepository, null);
+    }
+
+    public RedisOAuth2AuthorizationService(RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate,
+                                           StringRedisTemplate stringRedisTemplate,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           @Nullable AuthorizationNearCache nearCache) {
+        this(redisTemplate, stringRedisTemplate, registeredClientRepository, nearCache, false);
+    }
+
+    public RedisOAuth2AuthorizationService(RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate,
+                                           StringRedisTemplate stringRedisTemplate,
+                                           RegisteredClientRepository registeredClientRepository,
+                                           @Nullable AuthorizationNearCache nearCache,
+                                           boolean cluster) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.registeredClientRepository = registeredClientRepository;
+        this.nearCache = nearCache;
+        this.cluster = cluster;
+    }
+
+    /**
+     * 只包含 state 的 authorization（还没有签发 code 或 token）在 redis 中保留的时间
+     */
+    public void setDefaultTtl(Duration defaultTtl) {
+        Assert.isTrue(!defaultTtl.isNegative() && !defaultTtl.isZero(), "defaultTtl must be positive");
+        this.defaultTtl = defaultTtl;
+    }
 
+    /**
+     * 主记录、所有索引和所属 client / principal 的集合在一次 pipeline 中以 MULTI/EXEC 写入，一个 RTT 且要么全部成功要么全部失败
+     * <p>
+     * 启用本地缓存时在同一个事务里发布失效消息
+     * <p>
+     * cluster 模式下这些 key 分布在不同的 slot，不使用事务，按主记录、索引、集合的顺序写入，
+     * 读取时索引指向不存在的主记录会被当作不存在
+     */
     @Override
     public void save(OAuth2Authorization authorization) {
-        OAuth2AccessToken token = authorization.getAccessToken().getToken();
-        Duration duration = Duration.ofMillis(Objects.requireNonNull(token.getExpiresAt()).toEpochMilli() - System.currentTimeMillis());
-        redisTemplate.opsForValue().set(PREFIX + authorization.getId(), new OAuth2AuthorizationPO(authorization), duration);
+        saveAll(List.of(authorization));
+    }
+
+    /**
+     * 批量保存，所有 authorization 在同一个 pipeline 中写入，整批只有一个 RTT
+     * <p>
+     * 每个 authorization 仍然是独立的 MULTI/EXEC，单条的原子性与 {@link #save} 相同，
+     * 不把整批放进一个事务，避免大事务长时间阻塞 redis
+     */
+    public void saveAll(Collection<OAuth2Authorization> authorizations) {
+        if (authorizations.isEmpty()) {
+            return;
+        }
+        // 序列化放在 pipeline 之外，连接只用于写
+        Instant now = Instant.now();
+        List<Write> writes = new ArrayList<>(authorizations.size());
+        List<OAuth2Authorization> expired = new ArrayList<>();
+        for (OAuth2Authorization authorization : authorizations) {
+            Write write = write(authorization, now);
+            if (Objects.isNull(write)) {
+                expired.add(authorization);
+            } else {
+                writes.add(write);
+            }
+        }
+        if (!writes.isEmpty()) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                writes.forEach(write -> write.execute(connection, !cluster));
+                return null;
+            }, null);
+        }
+        // 所有 token 都已过期，保存等同于删除
+        if (!expired.isEmpty()) {
+            removeAll(expired);
+        }
+        invalidate(authorizations);
     }
 
     @Override
     public void remove(OAuth2Authorization authorization) {
-        redisTemplate.delete(PREFIX + authorization.getId());
+        removeAll(List.of(authorization));
+    }
+
+    /**
+     * 删除主记录和索引，并从 client / principal 的集合中移除，所有 authorization 在同一个 pipeline 中
+     */
+    public void removeAll(Collection<OAuth2Authorization> authorizations) {
+        if (authorizations.isEmpty()) {
+            return;
+        }
+        byte[] channel = Objects.isNull(nearCache) ? null : rawString(AuthorizationNearCache.CHANNEL);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (OAuth2Authorization authorization : authorizations) {
+                byte[] id = rawString(authorization.getId());
+                byte[][] keys = keys(authorization).stream().map(this::rawString).toArray(byte[][]::new);
+                if (cluster) {
+                    for (byte[] key : keys) {
+                        connection.keyCommands().del(key);
+                    }
+                } else {
+                    connection.multi();
+                    connection.keyCommands().del(keys);
+                }
+                connection.zSetCommands().zRem(rawString(RedisAuthorizationKeys.client(authorization.getRegisteredClientId())), id);
+                connection.zSetCommands().zRem(rawString(RedisAuthorizationKeys.principal(authorization.getPrincipalName())), id);
+                if (Objects.nonNull(channel)) {
+                    connection.publish(channel, id);
+                }
+                if (!cluster) {
+                    connection.exec();
+                }
+            }
+            return null;
+        }, null);
+        invalidate(authorizations);
+    }
+
+    /**
+     * client 当前未过期的 authorization 数量，一次 ZCOUNT，O(log n)
+     *
+     * @param registeredClientId {@link RegisteredClient#getId()}
+     */
+    public long countByClient(String registeredClientId) {
+        return count(RedisAuthorizationKeys.client(registeredClientId));
+    }
+
+    public long countByPrincipal(String principalName) {
+        return count(RedisAuthorizationKeys.principal(principalName));
+    }
+
+    /**
+     * 撤销 client 的所有 authorization，耗时与这个 client 的 authorization 数量成正比，与总量无关
+     * <p>
+     * 只能找到写入过集合的 authorization，引入集合之前保存的 authorization 不受影响，随过期自然淘汰
+     *
+     * @param registeredClientId {@link RegisteredClient#getId()}
+     * @return 删除的 authorization 数量
+     */
+    public long revokeAllByClient(String registeredClientId) {
+        return revokeAll(RedisAuthorizationKeys.client(registeredClientId));
+    }
+
+    public long revokeAllByPrincipal(String principalName) {
+        return revokeAll(RedisAuthorizationKeys.principal(principalName));
+    }
+
+    private long count(String key) {
+        Long count = stringRedisTemplate.opsForZSet().count(key, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        return Objects.isNull(count) ? 0 : count;
+    }
+
+    /**
+     * 每次从集合中取一批 id，读出 authorization 计算索引后删除，再把这批 id 从集合中移除（包括主记录已经过期的），
+     * 直到集合为空；撤销过程中新写入的 authorization 也会被撤销
+     */
+    private long revokeAll(String key) {
+        long revoked = 0;
+        while (true) {
+            Set<String> ids = stringRedisTemplate.opsForZSet().range(key, 0, REVOKE_BATCH_SIZE - 1);
+            if (Objects.isNull(ids) || ids.isEmpty()) {
+                return revoked;
+            }
+            List<OAuth2Authorization> authorizations = findAllById(ids);
+            removeAll(authorizations);
+            stringRedisTemplate.opsForZSet().remove(key, ids.toArray());
+            revoked += authorizations.size();
+            log.debug("Revoked {} authorizations of {}", revoked, key);
+        }
+    }
+
+    /**
+     * 不经过本地缓存，读不到或者还原失败的 id 会被跳过
+     */
+    private List<OAuth2Authorization> findAllById(Collection<String> ids) {
+        List<String> keys = ids.stream().map(RedisAuthorizationKeys::authorization).toList();
+        List<?> values = cluster
+                ? redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    keys.forEach(key -> connection.stringCommands().get(rawString(key)));
+                    return null;
+                })
+                : redisTemplate.opsForValue().multiGet(keys);
+        if (Objects.isNull(values)) {
+            return Collections.emptyList();
+        }
+        List<OAuth2Authorization> authorizations = new ArrayList<>(values.size());
+        for (Object value : values) {
+            if (value instanceof OAuth2AuthorizationPO po) {
+                OAuth2Authorization authorization = toAuthorization(po);
+                if (Objects.nonNull(authorization)) {
+                    authorizations.add(authorization);
+                }
+            }
+        }
+        return authorizations;
+    }
+
+    private void invalidate(Collection<OAuth2Authorization> authorizations) {
+        if (Objects.nonNull(nearCache)) {
+            authorizations.forEach(authorization -> nearCache.invalidate(authorization.getId()));
+        }
+    }
+
+    private static List<String> keys(OAuth2Authorization authorization) {
+        List<String> keys = new ArrayList<>();
+        keys.add(RedisAuthorizationKeys.authorization(authorization.getId()));
+        keys.addAll(RedisAuthorizationKeys.indexes(authorization).keySet());
+        return keys;
     }
 
     @Override
     public OAuth2Authorization findById(String id) {
-        return this.get(PREFIX + id);
+        if (Objects.nonNull(nearCache)) {
+            OAuth2Authorization authorization = nearCache.get(id);
+            if (Objects.nonNull(authorization)) {
+                return authorization;
+            }
+        }
+        OAuth2Authorization authorization = this.get(RedisAuthorizationKeys.authorization(id));
+        if (Objects.nonNull(nearCache) && Objects.nonNull(authorization)) {
+            nearCache.put(authorization);
+        }
+        return authorization;
     }
 
+    /**
+     * 通过索引定位 authorization id，指定 tokenType 时一次 GET，否则一次 MGET 查所有类型（cluster 模式下是 pipeline 中的多个 GET）
+     * <p>
+     * 旧 token 的索引在过期前仍然存在（例如刷新后的 access token），所以取到 authorization 后还要再校验一次 token
+     */
     @Override
     public OAuth2Authorization findByToken(String token, OAuth2TokenType tokenType) {
-        Set<String> keys = redisTemplate.keys(PREFIX + "*");
-        if (CollUtil.isEmpty(keys)){
+        return find(token, RedisAuthorizationKeys.indexes(token, tokenType), tokenType);
+    }
+
+    /**
+     * 只在指定的几种 token 中查找，例如 introspection 只需要 access token 和 refresh token，
+     * 一次 MGET 查这几个索引，而不是 tokenType 为 null 时的全部七种
+     */
+    public OAuth2Authorization findByTokenTypes(String token, Collection<OAuth2TokenType> tokenTypes) {
+        List<String> indexes = tokenTypes.stream()
+                .flatMap(tokenType -> RedisAuthorizationKeys.indexes(token, tokenType).stream())
+                .toList();
+        return find(token, indexes, null);
+    }
+
+    private OAuth2Authorization find(String token, List<String> indexes, @Nullable OAuth2TokenType tokenType) {
+        if (indexes.isEmpty()) {
             return null;
         }
-        Optional<OAuth2Authorization> any = keys.stream()
-                .map(this::get)
-                .filter(authorization -> {
-                    if (Objects.isNull(authorization)) {
-                        return false;
-                    }
-                    OAuth2AccessToken accessToken = authorization.getAccessToken().getToken();
-                    return Objects.nonNull(accessToken) && hasToken(authorization, token, tokenType);
-                }).findAny();
-        return any.orElse(null);
+        if (Objects.nonNull(nearCache)) {
+            for (String index : indexes) {
+                String id = nearCache.id(index);
+                OAuth2Authorization authorization = Objects.isNull(id) ? null : findById(id);
+                if (Objects.nonNull(authorization) && hasToken(authorization, token, tokenType)) {
+                    return authorization;
+                }
+            }
+        }
+        List<?> ids;
+        if (indexes.size() == 1) {
+            ids = Collections.singletonList(stringRedisTemplate.opsForValue().get(indexes.get(0)));
+        } else if (cluster) {
+            // 各个索引的 token hash 不同，不在同一个 slot
+            ids = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                indexes.forEach(index -> connection.stringCommands().get(rawString(index)));
+                return null;
+            });
+        } else {
+            ids = stringRedisTemplate.opsForValue().multiGet(indexes);
+        }
+        if (Objects.isNull(ids)) {
+            return null;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            if (!(ids.get(i) instanceof String id)) {
+                continue;
+            }
+            OAuth2Authorization authorization = findById(id);
+            if (Objects.nonNull(authorization) && hasToken(authorization, token, tokenType)) {
+                if (Objects.nonNull(nearCache)) {
+                    nearCache.putIndex(indexes.get(i), id);
+                }
+                return authorization;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 所有 token 都已过期时返回 null
+     */
+    @Nullable
+    private Write write(OAuth2Authorization authorization, Instant now) {
+        Map<String, Instant> tokenIndexes = RedisAuthorizationKeys.indexes(authorization);
+        Instant expiresAt = expiresAt(tokenIndexes.values(), now, defaultTtl);
+        if (Objects.isNull(expiresAt)) {
+            return null;
+        }
+        Duration duration = Duration.between(now, expiresAt);
+        byte[] value = valueSerializer().serialize(new OAuth2AuthorizationPO(authorization));
+        // 每个 token 一个索引，过期时间跟随 token 本身，没有过期时间的跟随主记录
+        Map<byte[], Duration> indexes = new LinkedHashMap<>();
+        tokenIndexes.forEach((key, indexExpiresAt) -> {
+            Duration ttl = Objects.isNull(indexExpiresAt) ? duration : Duration.between(now, indexExpiresAt);
+            if (!ttl.isNegative() && !ttl.isZero()) {
+                indexes.put(rawString(key), ttl);
+            }
+        });
+        List<byte[]> sets = List.of(
+                rawString(RedisAuthorizationKeys.client(authorization.getRegisteredClientId())),
+                rawString(RedisAuthorizationKeys.principal(authorization.getPrincipalName())));
+        return new Write(rawString(RedisAuthorizationKeys.authorization(authorization.getId())), value, duration,
+                rawString(authorization.getId()), indexes, sets, expiresAt.toEpochMilli(),
+                Objects.nonNull(nearCache) ? rawString(AuthorizationNearCache.CHANNEL) : null);
+    }
+
+    /**
+     * 主记录的过期时间：所有未过期 token 中最晚的过期时间，refresh token 不会因为 access token 过期而被一起删除
+     * <p>
+     * 没有带过期时间的 token 时（例如只有 state，等待用户授权）为 now + defaultTtl
+     *
+     * @param tokenExpirations 各个 token 的过期时间，state 为 null
+     * @param defaultTtl       见 {@link #setDefaultTtl}
+     * @return 所有 token 都已过期时返回 null
+     */
+    @Nullable
+    static Instant expiresAt(Collection<Instant> tokenExpirations, Instant now, Duration defaultTtl) {
+        Instant expiresAt = null;
+        boolean expiring = false;
+        for (Instant tokenExpiresAt : tokenExpirations) {
+            if (Objects.isNull(tokenExpiresAt)) {
+                continue;
+            }
+            expiring = true;
+            if (tokenExpiresAt.isAfter(now) && (Objects.isNull(expiresAt) || tokenExpiresAt.isAfter(expiresAt))) {
+                expiresAt = tokenExpiresAt;
+            }
+        }
+        return expiring ? expiresAt : now.plus(defaultTtl);
+    }
+
+    /**
+     * 一个 authorization 需要执行的写操作
+     *
+     * @param sets     所属 client / principal 的 sorted set，member 是 id，score 是主记录的过期时间（毫秒）
+     * @param channel 不为 null 时在事务中发布失效消息
+     */
+    private record Write(byte[] key, byte[] value, Duration ttl, byte[] id, Map<byte[], Duration> indexes,
+                         List<byte[]> sets, long expiresAt, @Nullable byte[] channel) {
+
+        void execute(RedisConnection connection, boolean transactional) {
+            if (transactional) {
+                connection.multi();
+            }
+            connection.stringCommands().set(key, value, Expiration.from(ttl), RedisStringCommands.SetOption.upsert());
+            indexes.forEach((index, indexTtl) ->
+                    connection.stringCommands().set(index, id, Expiration.from(indexTtl), RedisStringCommands.SetOption.upsert()));
+            // 顺便清理已经过期的 member，集合大小只与未过期的 authorization 数量有关
+            byte[] score = ascii(expiresAt);
+            byte[] now = ascii(System.currentTimeMillis());
+            byte[] setTtl = ascii(ttl.toMillis());
+            for (byte[] set : sets) {
+                connection.scriptingCommands().eval(ADD_TO_SET_SCRIPT, ReturnType.INTEGER, 1, set, score, id, now, setTtl);
+            }
+            if (Objects.nonNull(channel)) {
+                connection.publish(channel, id);
+            }
+            if (transactional) {
+                connection.exec();
+            }
+        }
+
+        private static byte[] ascii(long value) {
+            return String.valueOf(value).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<OAuth2AuthorizationPO> valueSerializer() {
+        return (RedisSerializer<OAuth2AuthorizationPO>) redisTemplate.getValueSerializer();
+    }
+
+    private byte[] rawString(String value) {
+        return RedisSerializer.string().serialize(value);
     }
 
     private OAuth2Authorization get(String key){
@@ -82,7 +496,16 @@ public class RedisOAuth2AuthorizationService implements OAuth2AuthorizationServi
             if (Objects.isNull(oAuth2AuthorizationPo)){
                 return null;
             }
-            RegisteredClient registeredClient = registeredClientRepository.findByClientId(oAuth2AuthorizationPo.getRegisteredClientId());
+            return toAuthorization(oAuth2AuthorizationPo);
+        } catch (Exception e){
+            log.error("",e);
+        }
+        return null;
+    }
+
+    private OAuth2Authorization toAuthorization(OAuth2AuthorizationPO oAuth2AuthorizationPo) {
+        try {
+            RegisteredClient registeredClient = registeredClientRepository.findById(oAuth2AuthorizationPo.getRegisteredClientId());
             return oAuth2AuthorizationPo.toOauth2Authorization(registeredClient);
         } catch (Exception e){
             log.error("",e);
@@ -91,7 +514,7 @@ public class RedisOAuth2AuthorizationService implements OAuth2AuthorizationServi
     }
 
 
-    private static boolean hasToken(OAuth2Authorization authorization, String token, @Nullable OAuth2TokenType tokenType) {
+    static boolean hasToken(OAuth2Authorization authorization, String token, @Nullable OAuth2TokenType tokenType) {
         if (tokenType == null) {
             return matchesState(authorization, token) ||
                     matchesAuthorizationCode(authorization, token) ||
@@ -1,25 +1,151 @@
 package indi.haorui.authorization.server.repository;
 
+import cn.hutool.core.util.StrUtil;
+import indi.haorui.authorization.server.cache.NearCache;
+import indi.haorui.authorization.server.repository.po.RegisteredClientPO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Objects;
 
 /**
  * Created by Yang Hao.rui on 2024/6/12
+ * <p>
+ * redis 中保存两份 key:
+ * <ul>
+ *     <li>client:id:{id} -> RegisteredClientPO</li>
+ *     <li>client:client-id:{clientId} -> id</li>
+ * </ul>
+ * 读取走本地缓存，save 时通过 pub/sub 通知所有节点失效
  */
-
+@Slf4j
 public class RedisRegisteredClientRepository implements RegisteredClientRepository {
+
+    public static final String CHANNEL = "client:invalidate";
+
+    private static final String ID_PREFIX = "client:id:";
+
+    private static final String CLIENT_ID_PREFIX = "client:client-id:";
+
+    private final RedisTemplate<String, RegisteredClientPO> redisTemplate;
+
+    private final NearCache<RegisteredClient> clients;
+
+    /*
+        clientId -> id，不单独失效，取到 client 后会校验 clientId
+     */
+    private final NearCache<String> clientIds;
+
+    public RedisRegisteredClientRepository(RedisTemplate<String, RegisteredClientPO> redisTemplate, int maximumSize, Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.clients = new NearCache<>(maximumSize, ttl);
+        this.clientIds = new NearCache<>(maximumSize, ttl);
+    }
+
+    /**
+     * client 和 clientId 映射在一个事务中写入，并发布失效消息
+     */
     @Override
     public void save(RegisteredClient registeredClient) {
-
+        Assert.notNull(registeredClient, "registeredClient cannot be null");
+        byte[] existing = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(raw(CLIENT_ID_PREFIX + registeredClient.getClientId())));
+        if (Objects.nonNull(existing) && !registeredClient.getId().equals(new String(existing, StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("Registered client must be unique. Found duplicate client identifier: "
+                    + registeredClient.getClientId());
+        }
+        RegisteredClient previous = findById(registeredClient.getId());
+        byte[] value = valueSerializer().serialize(new RegisteredClientPO(registeredClient));
+        byte[] id = raw(registeredClient.getId());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.multi();
+            connection.stringCommands().set(raw(ID_PREFIX + registeredClient.getId()), value);
+            connection.stringCommands().set(raw(CLIENT_ID_PREFIX + registeredClient.getClientId()), id);
+            // clientId 发生变化时删除旧的映射
+            if (Objects.nonNull(previous) && !previous.getClientId().equals(registeredClient.getClientId())) {
+                connection.keyCommands().del(raw(CLIENT_ID_PREFIX + previous.getClientId()));
+            }
+            connection.publish(raw(CHANNEL), id);
+            connection.exec();
+            return null;
+        }, null);
+        clients.invalidate(registeredClient.getId());
     }
 
     @Override
     public RegisteredClient findById(String id) {
-        return null;
+        Assert.hasText(id, "id cannot be empty");
+        RegisteredClient registeredClient = clients.get(id);
+        if (Objects.nonNull(registeredClient)) {
+            return registeredClient;
+        }
+        RegisteredClientPO po = redisTemplate.opsForValue().get(ID_PREFIX + id);
+        if (Objects.isNull(po)) {
+            return null;
+        }
+        registeredClient = po.toRegisteredClient();
+        clients.put(id, registeredClient);
+        return registeredClient;
     }
 
     @Override
     public RegisteredClient findByClientId(String clientId) {
-        return null;
+        Assert.hasText(clientId, "clientId cannot be empty");
+        String id = clientIds.get(clientId);
+        if (Objects.nonNull(id)) {
+            RegisteredClient registeredClient = findById(id);
+            if (Objects.nonNull(registeredClient) && clientId.equals(registeredClient.getClientId())) {
+                return registeredClient;
+            }
+        }
+        byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(raw(CLIENT_ID_PREFIX + clientId)));
+        if (Objects.isNull(raw)) {
+            return null;
+        }
+        id = new String(raw, StandardCharsets.UTF_8);
+        RegisteredClient registeredClient = findById(id);
+        if (Objects.nonNull(registeredClient)) {
+            clientIds.put(clientId, id);
+        }
+        return registeredClient;
+    }
+
+    /**
+     * 订阅 {@link #CHANNEL} 的监听器
+     */
+    public MessageListener listener() {
+        return (message, pattern) -> {
+            String id = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (StrUtil.isNotBlank(id)) {
+                log.debug("Invalidate registered client {}", id);
+                clients.invalidate(id);
+            }
+        };
+    }
+
+    public NearCache.Stats clientStats() {
+        return clients.stats();
+    }
+
+    public NearCache.Stats clientIdStats() {
+        return clientIds.stats();
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<RegisteredClientPO> valueSerializer() {
+        return (RedisSerializer<RegisteredClientPO>) redisTemplate.getValueSerializer();
+    }
+
+    private static byte[] raw(String value) {
+        return RedisSerializer.string().serialize(value);
     }
 }
@@ -0,0 +1,490 @@
+package indi.haorui.authorization.server.repository.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import indi.haorui.authorization.server.repository.po.OAuth2AccessTokenPO;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.authorization.server.repository.po.OAuth2RefreshTokenPO;
+import indi.haorui.authorization.server.repository.po.OAuth2TokenPO;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * OAuth2AuthorizationPO 的二进制编码，字段按固定顺序写入，不带字段名和类名
+ * <p>
+ * 格式: MAGIC(1) VERSION(1) 字段...
+ * <ul>
+ *     <li>长度、数字使用 varint</li>
+ *     <li>Instant 存 epoch millis</li>
+ *     <li>字符串在同一个 value 内去重，重复出现的只写下标（scope、claims 中的 sub/aud 等）</li>
+ *     <li>metadata/attributes 中无法识别的类型退化为带类名的 json</li>
+ * </ul>
+ * 数据损坏（截断、越界的字符串下标、超过剩余字节数的长度等）时 decode 抛出 SerializationException
+ * <p>
+ * 新增字段时提升 VERSION，decode 需要兼容所有旧版本：
+ * <ul>
+ *     <li>VERSION_1: id ... access token、refresh token、attributes</li>
+ *     <li>VERSION_2: 在 VERSION_1 之后追加 authorization code、id token、device code、user code</li>
+ * </ul>
+ */
+public class OAuth2AuthorizationBinaryCodec {
+
+    static final byte MAGIC = (byte) 0xB7;
+
+    static final byte VERSION_1 = 1;
+
+    static final byte VERSION_2 = 2;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int TRUE = 2;
+    private static final int FALSE = 3;
+    private static final int INTEGER = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int INSTANT = 7;
+    private static final int LIST = 8;
+    private static final int SET = 9;
+    private static final int MAP = 10;
+    private static final int JSON = 11;
+
+    private final ObjectMapper objectMapper;
+
+    public OAuth2AuthorizationBinaryCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * json 以 '{' 或 '[' 开头，不会与 MAGIC 冲突
+     */
+    public boolean supports(byte[] bytes) {
+        return Objects.nonNull(bytes) && bytes.length > 1 && bytes[0] == MAGIC;
+    }
+
+    public byte[] encode(OAuth2AuthorizationPO authorization) {
+        Writer writer = new Writer();
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION_2);
+        writer.writeString(authorization.getId());
+        writer.writeString(authorization.getRegisteredClientId());
+        writer.writeString(authorization.getPrincipalName());
+        writer.writeString(authorization.getAuthorizationGrantType());
+        writer.writeStrings(authorization.getAuthorizedScopes());
+        writeAccessToken(writer, authorization.getOAuth2AccessToken());
+        writeRefreshToken(writer, authorization.getOAuth2RefreshToken());
+        writeMap(writer, authorization.getAttributes());
+        writeToken(writer, authorization.getAuthorizationCode());
+        writeToken(writer, authorization.getOidcIdToken());
+        writeToken(writer, authorization.getDeviceCode());
+        writeToken(writer, authorization.getUserCode());
+        return writer.toByteArray();
+    }
+
+    public OAuth2AuthorizationPO decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        if (reader.readByte() != MAGIC) {
+            throw new SerializationException("Not a binary encoded authorization");
+        }
+        int version = reader.readByte();
+        if (version != VERSION_1 && version != VERSION_2) {
+            throw new SerializationException("Unsupported authorization codec version: " + version);
+        }
+        OAuth2AuthorizationPO authorization = new OAuth2AuthorizationPO();
+        authorization.setId(reader.readString());
+        authorization.setRegisteredClientId(reader.readString());
+        authorization.setPrincipalName(reader.readString());
+        authorization.setAuthorizationGrantType(reader.readString());
+        authorization.setAuthorizedScopes(reader.readStrings());
+        authorization.setOAuth2AccessToken(readAccessToken(reader));
+        authorization.setOAuth2RefreshToken(readRefreshToken(reader));
+        authorization.setAttributes(readMap(reader));
+        if (version >= VERSION_2) {
+            authorization.setAuthorizationCode(readToken(reader));
+            authorization.setOidcIdToken(readToken(reader));
+            authorization.setDeviceCode(readToken(reader));
+            authorization.setUserCode(readToken(reader));
+        }
+        return authorization;
+    }
+
+    private void writeAccessToken(Writer writer, OAuth2AccessTokenPO accessToken) {
+        writer.writeBoolean(Objects.nonNull(accessToken));
+        if (Objects.isNull(accessToken)) {
+            return;
+        }
+        writer.writeString(accessToken.getTokenType());
+        writer.writeStrings(accessToken.getScopes());
+        writer.writeString(accessToken.getTokenValue());
+        writer.writeInstant(accessToken.getIssuedAt());
+        writer.writeInstant(accessToken.getExpiresAt());
+        writeMap(writer, accessToken.getMetadata());
+    }
+
+    private OAuth2AccessTokenPO readAccessToken(Reader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        OAuth2AccessTokenPO accessToken = new OAuth2AccessTokenPO();
+        accessToken.setTokenType(reader.readString());
+        accessToken.setScopes(reader.readStrings());
+        accessToken.setTokenValue(reader.readString());
+        accessToken.setIssuedAt(reader.readInstant());
+        accessToken.setExpiresAt(reader.readInstant());
+        accessToken.setMetadata(readMap(reader));
+        return accessToken;
+    }
+
+    private void writeRefreshToken(Writer writer, OAuth2RefreshTokenPO refreshToken) {
+        writer.writeBoolean(Objects.nonNull(refreshToken));
+        if (Objects.isNull(refreshToken)) {
+            return;
+        }
+        writer.writeString(refreshToken.getTokenValue());
+        writer.writeInstant(refreshToken.getIssuedAt());
+        writer.writeInstant(refreshToken.getExpiresAt());
+        writeMap(writer, refreshToken.getMetadata());
+    }
+
+    private OAuth2RefreshTokenPO readRefreshToken(Reader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        OAuth2RefreshTokenPO refreshToken = new OAuth2RefreshTokenPO();
+        refreshToken.setTokenValue(reader.readString());
+        refreshToken.setIssuedAt(reader.readInstant());
+        refreshToken.setExpiresAt(reader.readInstant());
+        refreshToken.setMetadata(readMap(reader));
+        return refreshToken;
+    }
+
+    private void writeToken(Writer writer, OAuth2TokenPO token) {
+        writer.writeBoolean(Objects.nonNull(token));
+        if (Objects.isNull(token)) {
+            return;
+        }
+        writer.writeString(token.getTokenValue());
+        writer.writeInstant(token.getIssuedAt());
+        writer.writeInstant(token.getExpiresAt());
+        writeMap(writer, token.getMetadata());
+    }
+
+    private OAuth2TokenPO readToken(Reader reader) {
+        if (!reader.readBoolean()) {
+            return null;
+        }
+        OAuth2TokenPO token = new OAuth2TokenPO();
+        token.setTokenValue(reader.readString());
+        token.setIssuedAt(reader.readInstant());
+        token.setExpiresAt(reader.readInstant());
+        token.setMetadata(readMap(reader));
+        return token;
+    }
+
+    private void writeMap(Writer writer, Map<?, ?> map) {
+        if (Objects.isNull(map)) {
+            writer.writeVarLong(0);
+            return;
+        }
+        writer.writeVarLong(map.size() + 1L);
+        map.forEach((key, value) -> {
+            writer.writeString(String.valueOf(key));
+            writeValue(writer, value);
+        });
+    }
+
+    private Map<String, Object> readMap(Reader reader) {
+        int size = reader.readNullableSize();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(reader.readString(), readValue(reader));
+        }
+        return map;
+    }
+
+    private void writeValue(Writer writer, Object value) {
+        if (Objects.isNull(value)) {
+            writer.writeVarLong(NULL);
+        } else if (value instanceof String s) {
+            writer.writeVarLong(STRING);
+            writer.writeString(s);
+        } else if (value instanceof Boolean b) {
+            writer.writeVarLong(b ? TRUE : FALSE);
+        } else if (value instanceof Integer i) {
+            writer.writeVarLong(INTEGER);
+            writer.writeSignedVarLong(i);
+        } else if (value instanceof Long l) {
+            writer.writeVarLong(LONG);
+            writer.writeSignedVarLong(l);
+        } else if (value instanceof Double d) {
+            writer.writeVarLong(DOUBLE);
+            writer.writeSignedVarLong(Double.doubleToRawLongBits(d));
+        } else if (value instanceof Instant instant) {
+            writer.writeVarLong(INSTANT);
+            writer.writeInstant(instant);
+        } else if (value instanceof Collection<?> collection) {
+            writer.writeVarLong(value instanceof Set ? SET : LIST);
+            writer.writeVarLong(collection.size());
+            collection.forEach(element -> writeValue(writer, element));
+        } else if (value instanceof Map<?, ?> map && map.keySet().stream().allMatch(String.class::isInstance)) {
+            writer.writeVarLong(MAP);
+            writeMap(writer, map);
+        } else {
+            writer.writeVarLong(JSON);
+            writer.writeString(value.getClass().getName());
+            try {
+                writer.writeBytes(objectMapper.writeValueAsBytes(value));
+            } catch (IOException e) {
+                throw new SerializationException("Could not write " + value.getClass().getName(), e);
+            }
+        }
+    }
+
+    private Object readValue(Reader reader) {
+        int tag = (int) reader.readVarLong();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return reader.readString();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INTEGER:
+                return (int) reader.readSignedVarLong();
+            case LONG:
+                return reader.readSignedVarLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(reader.readSignedVarLong());
+            case INSTANT:
+                return reader.readInstant();
+            case LIST:
+            case SET: {
+                int size = reader.readSize();
+                Collection<Object> collection = tag == SET ? new LinkedHashSet<>(size * 2) : new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    collection.add(readValue(reader));
+                }
+                return collection;
+            }
+            case MAP:
+                return readMap(reader);
+            case JSON: {
+                String className = reader.readString();
+                byte[] json = reader.readBytes();
+                try {
+                    Class<?> type = ClassUtils.forName(className, getClass().getClassLoader());
+                    return objectMapper.readValue(json, type);
+                } catch (ClassNotFoundException | IOException e) {
+                    throw new SerializationException("Could not read " + className, e);
+                }
+            }
+            default:
+                throw new SerializationException("Unknown value tag: " + tag);
+        }
+    }
+
+    /**
+     * 写入缓冲，字符串按出现顺序编号：0 为 null，1 为新字符串，n >= 2 为第 n - 2 个已出现的字符串
+     */
+    private static class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        void writeByte(int b) {
+            out.write(b);
+        }
+
+        void writeBoolean(boolean b) {
+            out.write(b ? 1 : 0);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        void writeString(String s) {
+            if (Objects.isNull(s)) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (Objects.nonNull(index)) {
+                writeVarLong(index + 2L);
+                return;
+            }
+            strings.put(s, strings.size());
+            writeVarLong(1);
+            writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeStrings(Set<String> values) {
+            if (Objects.isNull(values)) {
+                writeVarLong(0);
+                return;
+            }
+            writeVarLong(values.size() + 1L);
+            values.forEach(this::writeString);
+        }
+
+        void writeInstant(Instant instant) {
+            writeBoolean(Objects.nonNull(instant));
+            if (Objects.nonNull(instant)) {
+                writeSignedVarLong(instant.toEpochMilli());
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static class Reader {
+
+        private final byte[] buf;
+
+        private int pos;
+
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readByte() {
+            if (pos >= buf.length) {
+                throw new SerializationException("Unexpected end of authorization data");
+            }
+            return buf[pos++];
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        long readSignedVarLong() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        byte[] readBytes() {
+            long length = readVarLong();
+            if (length < 0 || length > buf.length - pos) {
+                throw new SerializationException("Unexpected end of authorization data");
+            }
+            byte[] bytes = new byte[(int) length];
+            System.arraycopy(buf, pos, bytes, 0, bytes.length);
+            pos += bytes.length;
+            return bytes;
+        }
+
+        /**
+         * 集合的元素个数，每个元素至少占一个字节，超过剩余字节数说明数据已损坏，不按它分配内存
+         */
+        int readSize() {
+            return checkSize(readVarLong());
+        }
+
+        /**
+         * writeStrings / writeMap 写入的元素个数：0 为 null，n 为 n - 1 个元素
+         *
+         * @return null 时返回 -1
+         */
+        int readNullableSize() {
+            long value = readVarLong();
+            return value == 0 ? -1 : checkSize(value - 1);
+        }
+
+        private int checkSize(long size) {
+            if (size < 0 || size > buf.length - pos) {
+                throw new SerializationException("Invalid size in authorization data: " + size);
+            }
+            return (int) size;
+        }
+
+        String readString() {
+            long tag = readVarLong();
+            if (tag == 0) {
+                return null;
+            }
+            if (tag == 1) {
+                String s = new String(readBytes(), StandardCharsets.UTF_8);
+                strings.add(s);
+                return s;
+            }
+            long index = tag - 2;
+            if (index < 0 || index >= strings.size()) {
+                throw new SerializationException("Invalid string reference in authorization data: " + tag);
+            }
+            return strings.get((int) index);
+        }
+
+        /**
+         * scope 的取值是有限的，intern 后所有 authorization 共用同一份字符串
+         */
+        Set<String> readStrings() {
+            int size = readNullableSize();
+            if (size < 0) {
+                return null;
+            }
+            Set<String> values = new LinkedHashSet<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                String value = readString();
+                values.add(Objects.isNull(value) ? null : value.intern());
+            }
+            return values;
+        }
+
+        Instant readInstant() {
+            if (!readBoolean()) {
+                return null;
+            }
+            return Instant.ofEpochMilli(readSignedVarLong());
+        }
+    }
+}
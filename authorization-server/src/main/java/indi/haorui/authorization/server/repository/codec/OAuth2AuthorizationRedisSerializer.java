@@ -0,0 +1,53 @@
+package indi.haorui.authorization.server.repository.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 按配置选择写入格式，读取时根据首字节自动识别 json / binary，
+ * 所以切换 codec 后已经存在的 json 数据仍然可以读取，直到过期自然淘汰
+ */
+public class OAuth2AuthorizationRedisSerializer implements RedisSerializer<OAuth2AuthorizationPO> {
+
+    private final AuthorizationStoreProperties.Codec codec;
+
+    private final GenericJackson2JsonRedisSerializer json;
+
+    private final OAuth2AuthorizationBinaryCodec binary;
+
+    public OAuth2AuthorizationRedisSerializer(AuthorizationStoreProperties.Codec codec, ObjectMapper objectMapper) {
+        this.codec = codec;
+        this.json = new GenericJackson2JsonRedisSerializer(objectMapper);
+        this.binary = new OAuth2AuthorizationBinaryCodec(objectMapper);
+    }
+
+    @Override
+    public byte[] serialize(OAuth2AuthorizationPO authorization) throws SerializationException {
+        if (Objects.isNull(authorization)) {
+            return null;
+        }
+        if (codec == AuthorizationStoreProperties.Codec.BINARY) {
+            return binary.encode(authorization);
+        }
+        return json.serialize(authorization);
+    }
+
+    @Override
+    public OAuth2AuthorizationPO deserialize(byte[] bytes) throws SerializationException {
+        if (Objects.isNull(bytes) || bytes.length == 0) {
+            return null;
+        }
+        if (binary.supports(bytes)) {
+            return binary.decode(bytes);
+        }
+        return (OAuth2AuthorizationPO) json.deserialize(bytes);
+    }
+}
@@ -2,18 +2,28 @@ package indi.haorui.authorization.server.repository.po;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
 import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
 import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
 import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Created by Yang Hao.rui on 2024/6/13
+ * <p>
+ * 构造时丢弃已经过期的 token（例如 refresh token 还有效时过期的 access token），不占用 redis 内存；
+ * 未过期但已失效（invalidated）的 token 仍然保留，用于识别重放
  */
 @Data
 @NoArgsConstructor
@@ -27,8 +37,13 @@ public class OAuth2AuthorizationPO {
     private OAuth2AccessTokenPO oAuth2AccessToken;
     private OAuth2RefreshTokenPO oAuth2RefreshToken;
     private Map<String, Object> attributes;
+    private OAuth2TokenPO authorizationCode;
+    private OAuth2TokenPO oidcIdToken;
+    private OAuth2TokenPO deviceCode;
+    private OAuth2TokenPO userCode;
 
     public OAuth2AuthorizationPO(OAuth2Authorization authorization) {
+        Instant now = Instant.now();
         this.id = authorization.getId();
         this.registeredClientId = authorization.getRegisteredClientId();
         this.principalName = authorization.getPrincipalName();
@@ -40,21 +55,22 @@ public class OAuth2AuthorizationPO {
         this.authorizedScopes = authorization.getAuthorizedScopes();
         this.attributes = authorization.getAttributes();
         OAuth2Authorization.Token<OAuth2AccessToken> accessToken = authorization.getAccessToken();
-        if (Objects.nonNull(accessToken)){
-            OAuth2AccessToken token = accessToken.getToken();
-            Map<String, Object> metadata = accessToken.getMetadata();
-            if (Objects.nonNull(token)){
-                this.oAuth2AccessToken = new OAuth2AccessTokenPO(token, metadata);
-            }
+        if (isLive(accessToken, now)){
+            this.oAuth2AccessToken = new OAuth2AccessTokenPO(accessToken.getToken(), accessToken.getMetadata());
         }
         OAuth2Authorization.Token<OAuth2RefreshToken> refreshToken = authorization.getRefreshToken();
-        if (Objects.nonNull(refreshToken)){
-            OAuth2RefreshToken token = refreshToken.getToken();
-            Map<String, Object> metadata = refreshToken.getMetadata();
-            this.oAuth2RefreshToken = new OAuth2RefreshTokenPO(token, metadata);
+        if (isLive(refreshToken, now)){
+            this.oAuth2RefreshToken = new OAuth2RefreshTokenPO(refreshToken.getToken(), refreshToken.getMetadata());
         }
+        this.authorizationCode = toPO(authorization.getToken(OAuth2AuthorizationCode.class), now);
+        this.oidcIdToken = toPO(authorization.getToken(OidcIdToken.class), now);
+        this.deviceCode = toPO(authorization.getToken(OAuth2DeviceCode.class), now);
+        this.userCode = toPO(authorization.getToken(OAuth2UserCode.class), now);
     }
 
+    /**
+     * token 的 metadata（包括 invalidated 标记和 claims）一起还原
+     */
     public OAuth2Authorization toOauth2Authorization(RegisteredClient registeredClient) {
         OAuth2Authorization.Builder builder = OAuth2Authorization.withRegisteredClient(registeredClient)
                 .id(this.id)
@@ -64,13 +80,56 @@ public class OAuth2AuthorizationPO {
                 .attributes((attrs) -> attrs.putAll(attributes));
         if (Objects.nonNull(this.oAuth2AccessToken)){
             OAuth2AccessToken token = this.oAuth2AccessToken.toOauth2AccessToken();
-            builder.accessToken(token);
+            builder.token(token, metadata(this.oAuth2AccessToken.getMetadata()));
         }
         if (Objects.nonNull(this.oAuth2RefreshToken)){
             OAuth2RefreshToken token = this.oAuth2RefreshToken.toOauth2RefreshToken();
-            builder.refreshToken(token);
+            builder.token(token, metadata(this.oAuth2RefreshToken.getMetadata()));
+        }
+        if (Objects.nonNull(this.authorizationCode)) {
+            builder.token(new OAuth2AuthorizationCode(this.authorizationCode.getTokenValue(),
+                    this.authorizationCode.getIssuedAt(), this.authorizationCode.getExpiresAt()), metadata(this.authorizationCode.getMetadata()));
+        }
+        if (Objects.nonNull(this.oidcIdToken)) {
+            Map<String, Object> metadata = this.oidcIdToken.getMetadata();
+            Object claims = Objects.isNull(metadata) ? null : metadata.get(OAuth2Authorization.Token.CLAIMS_METADATA_NAME);
+            // OidcIdToken 要求 claims 不为空，缺少 claims 的 id token 无法还原
+            if (claims instanceof Map<?, ?> map && !map.isEmpty()) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> idTokenClaims = (Map<String, Object>) map;
+                builder.token(new OidcIdToken(this.oidcIdToken.getTokenValue(), this.oidcIdToken.getIssuedAt(),
+                        this.oidcIdToken.getExpiresAt(), idTokenClaims), metadata(metadata));
+            }
+        }
+        if (Objects.nonNull(this.deviceCode)) {
+            builder.token(new OAuth2DeviceCode(this.deviceCode.getTokenValue(), this.deviceCode.getIssuedAt(),
+                    this.deviceCode.getExpiresAt()), metadata(this.deviceCode.getMetadata()));
+        }
+        if (Objects.nonNull(this.userCode)) {
+            builder.token(new OAuth2UserCode(this.userCode.getTokenValue(), this.userCode.getIssuedAt(),
+                    this.userCode.getExpiresAt()), metadata(this.userCode.getMetadata()));
         }
         return builder.build();
     }
 
+    private static OAuth2TokenPO toPO(OAuth2Authorization.Token<? extends AbstractOAuth2Token> token, Instant now) {
+        return isLive(token, now) ? new OAuth2TokenPO(token.getToken(), token.getMetadata()) : null;
+    }
+
+    private static boolean isLive(OAuth2Authorization.Token<? extends AbstractOAuth2Token> token, Instant now) {
+        if (Objects.isNull(token) || Objects.isNull(token.getToken())) {
+            return false;
+        }
+        Instant expiresAt = token.getToken().getExpiresAt();
+        return Objects.isNull(expiresAt) || expiresAt.isAfter(now);
+    }
+
+    private static Consumer<Map<String, Object>> metadata(Map<String, Object> metadata) {
+        return target -> {
+            if (Objects.nonNull(metadata)) {
+                target.putAll(metadata);
+            }
+        };
+    }
+
 }
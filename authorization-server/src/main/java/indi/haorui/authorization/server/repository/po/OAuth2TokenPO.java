@@ -0,0 +1,34 @@
+package indi.haorui.authorization.server.repository.po;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.security.oauth2.core.AbstractOAuth2Token;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 只有 value 和时间的 token：authorization code、id token、device code、user code，
+ * id token 的 claims 保存在 metadata 中（OAuth2Authorization.Token.CLAIMS_METADATA_NAME）
+ */
+@Data
+@NoArgsConstructor
+public class OAuth2TokenPO {
+
+    private String tokenValue;
+
+    private Instant issuedAt;
+
+    private Instant expiresAt;
+
+    private Map<String, Object> metadata;
+
+    public OAuth2TokenPO(AbstractOAuth2Token token, Map<String, Object> metadata) {
+        this.tokenValue = token.getTokenValue();
+        this.issuedAt = token.getIssuedAt();
+        this.expiresAt = token.getExpiresAt();
+        this.metadata = metadata;
+    }
+}
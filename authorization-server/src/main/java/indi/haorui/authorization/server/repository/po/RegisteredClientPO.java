@@ -0,0 +1,109 @@
+package indi.haorui.authorization.server.repository.po;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.jackson2.OAuth2AuthorizationServerJackson2Module;
+import org.springframework.security.oauth2.server.authorization.settings.ClientSettings;
+import org.springframework.security.oauth2.server.authorization.settings.TokenSettings;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * clientSettings / tokenSettings 中有 Duration、SignatureAlgorithm 等类型，
+ * 和 JdbcRegisteredClientRepository 一样用 spring security 的 jackson module 单独转成 json 字符串保存
+ */
+@Data
+@NoArgsConstructor
+public class RegisteredClientPO {
+
+    private static final ObjectMapper SETTINGS_MAPPER = new ObjectMapper();
+
+    static {
+        ClassLoader classLoader = RegisteredClientPO.class.getClassLoader();
+        SETTINGS_MAPPER.registerModules(SecurityJackson2Modules.getModules(classLoader));
+        SETTINGS_MAPPER.registerModule(new OAuth2AuthorizationServerJackson2Module());
+    }
+
+    private String id;
+    private String clientId;
+    private Instant clientIdIssuedAt;
+    private String clientSecret;
+    private Instant clientSecretExpiresAt;
+    private String clientName;
+    private Set<String> clientAuthenticationMethods;
+    private Set<String> authorizationGrantTypes;
+    private Set<String> redirectUris;
+    private Set<String> postLogoutRedirectUris;
+    private Set<String> scopes;
+    private String clientSettings;
+    private String tokenSettings;
+
+    public RegisteredClientPO(RegisteredClient registeredClient) {
+        this.id = registeredClient.getId();
+        this.clientId = registeredClient.getClientId();
+        this.clientIdIssuedAt = registeredClient.getClientIdIssuedAt();
+        this.clientSecret = registeredClient.getClientSecret();
+        this.clientSecretExpiresAt = registeredClient.getClientSecretExpiresAt();
+        this.clientName = registeredClient.getClientName();
+        this.clientAuthenticationMethods = registeredClient.getClientAuthenticationMethods().stream()
+                .map(ClientAuthenticationMethod::getValue)
+                .collect(Collectors.toSet());
+        this.authorizationGrantTypes = registeredClient.getAuthorizationGrantTypes().stream()
+                .map(AuthorizationGrantType::getValue)
+                .collect(Collectors.toSet());
+        this.redirectUris = new HashSet<>(registeredClient.getRedirectUris());
+        this.postLogoutRedirectUris = new HashSet<>(registeredClient.getPostLogoutRedirectUris());
+        this.scopes = new HashSet<>(registeredClient.getScopes());
+        this.clientSettings = writeMap(registeredClient.getClientSettings().getSettings());
+        this.tokenSettings = writeMap(registeredClient.getTokenSettings().getSettings());
+    }
+
+    public RegisteredClient toRegisteredClient() {
+        RegisteredClient.Builder builder = RegisteredClient.withId(this.id)
+                .clientId(this.clientId)
+                .clientIdIssuedAt(this.clientIdIssuedAt)
+                .clientSecret(this.clientSecret)
+                .clientSecretExpiresAt(this.clientSecretExpiresAt)
+                .clientName(this.clientName)
+                .clientAuthenticationMethods(methods -> this.clientAuthenticationMethods
+                        .forEach(method -> methods.add(new ClientAuthenticationMethod(method))))
+                .authorizationGrantTypes(grantTypes -> this.authorizationGrantTypes
+                        .forEach(grantType -> grantTypes.add(new AuthorizationGrantType(grantType))))
+                .redirectUris(uris -> uris.addAll(this.redirectUris))
+                .postLogoutRedirectUris(uris -> uris.addAll(this.postLogoutRedirectUris))
+                .scopes(scopes -> scopes.addAll(this.scopes))
+                .clientSettings(ClientSettings.withSettings(readMap(this.clientSettings)).build())
+                .tokenSettings(TokenSettings.withSettings(readMap(this.tokenSettings)).build());
+        return builder.build();
+    }
+
+    private static String writeMap(Map<String, Object> data) {
+        try {
+            return SETTINGS_MAPPER.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> readMap(String data) {
+        try {
+            return SETTINGS_MAPPER.readValue(data, new TypeReference<>() {
+            });
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package indi.haorui.authorization.server.token;
+
+import indi.haorui.authorization.server.properties.BatchTokenProperties;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.authentication.OAuth2ClientAuthenticationToken;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.context.AuthorizationServerContext;
+import org.springframework.security.oauth2.server.authorization.settings.AuthorizationServerSettings;
+import org.springframework.security.oauth2.server.authorization.token.DefaultOAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenContext;
+import org.springframework.security.oauth2.server.authorization.token.OAuth2TokenGenerator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 一次请求为多个 client 签发 client_credentials access token
+ * <ul>
+ *     <li>client 在调用线程中查找并校验（RedisRegisteredClientRepository 有本地缓存），同一个 client 只查一次</li>
+ *     <li>签名是 CPU 密集的，分发到固定大小的线程池并行执行</li>
+ *     <li>所有 authorization 通过 {@link RedisOAuth2AuthorizationService#saveAll} 在一个 pipeline 中写入</li>
+ * </ul>
+ * 签发流程与 OAuth2ClientCredentialsAuthenticationProvider 一致，使用同一个 {@link OAuth2TokenGenerator}，
+ * 所以 token 的格式、签名 key 和 claims 与 /oauth2/token 签发的相同
+ * <p>
+ * 单个请求校验失败只影响它自己，返回结果与请求一一对应；写 redis 失败时整批失败
+ */
+@Slf4j
+public class BatchTokenIssuer implements AutoCloseable {
+
+    private final RegisteredClientRepository registeredClientRepository;
+
+    private final OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator;
+
+    private final RedisOAuth2AuthorizationService authorizationService;
+
+    private final AuthorizationServerContext authorizationServerContext;
+
+    private final int maxBatchSize;
+
+    private final ExecutorService executor;
+
+    public BatchTokenIssuer(RegisteredClientRepository registeredClientRepository,
+                            OAuth2TokenGenerator<? extends OAuth2Token> tokenGenerator,
+                            RedisOAuth2AuthorizationService authorizationService,
+                            AuthorizationServerSettings authorizationServerSettings,
+                            BatchTokenProperties properties) {
+        this.registeredClientRepository = registeredClientRepository;
+        this.tokenGenerator = tokenGenerator;
+        this.authorizationService = authorizationService;
+        // 不经过 AuthorizationServerContextFilter，issuer 直接取配置
+        this.authorizationServerContext = new StaticAuthorizationServerContext(authorizationServerSettings);
+        this.maxBatchSize = properties.getMaxBatchSize();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()), runnable -> {
+            Thread thread = new Thread(runnable, "batch-token-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return 与 requests 顺序一致的签发结果
+     * @throws IllegalArgumentException 超过 maxBatchSize
+     */
+    public List<Result> issue(List<Request> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " tokens can be issued in one request");
+        }
+        Map<String, RegisteredClient> registeredClients = new HashMap<>();
+        List<CompletableFuture<Result>> futures = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            RegisteredClient registeredClient = registeredClients.computeIfAbsent(request.clientId(),
+                    registeredClientRepository::findByClientId);
+            OAuth2Error error = validate(registeredClient, request);
+            if (Objects.nonNull(error)) {
+                futures.add(CompletableFuture.completedFuture(Result.failure(request.clientId(), error)));
+            } else if (requests.size() == 1) {
+                futures.add(CompletableFuture.completedFuture(generate(registeredClient, request)));
+            } else {
+                futures.add(CompletableFuture.supplyAsync(() -> generate(registeredClient, request), executor));
+            }
+        }
+        List<Result> results = futures.stream().map(CompletableFuture::join).toList();
+        List<OAuth2Authorization> authorizations = results.stream()
+                .map(Result::authorization)
+                .filter(Objects::nonNull)
+                .toList();
+        authorizationService.saveAll(authorizations);
+        log.debug("Issued {} of {} tokens", authorizations.size(), requests.size());
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    @Nullable
+    private static OAuth2Error validate(@Nullable RegisteredClient registeredClient, Request request) {
+        if (Objects.isNull(registeredClient)) {
+            return new OAuth2Error(OAuth2ErrorCodes.INVALID_CLIENT, "Unknown client " + request.clientId(), null);
+        }
+        if (!registeredClient.getAuthorizationGrantTypes().contains(AuthorizationGrantType.CLIENT_CREDENTIALS)) {
+            return new OAuth2Error(OAuth2ErrorCodes.UNAUTHORIZED_CLIENT,
+                    "Client " + request.clientId() + " is not allowed to use client_credentials", null);
+        }
+        if (!registeredClient.getScopes().containsAll(request.scopes())) {
+            return new OAuth2Error(OAuth2ErrorCodes.INVALID_SCOPE, "Scope not registered for client " + request.clientId(), null);
+        }
+        return null;
+    }
+
+    /**
+     * 与 OAuth2ClientCredentialsAuthenticationProvider 构造 token 和 authorization 的方式相同
+     */
+    private Result generate(RegisteredClient registeredClient, Request request) {
+        OAuth2ClientAuthenticationToken principal = new OAuth2ClientAuthenticationToken(registeredClient,
+                registeredClient.getClientAuthenticationMethods().iterator().next(), null);
+        OAuth2TokenContext tokenContext = DefaultOAuth2TokenContext.builder()
+                .registeredClient(registeredClient)
+                .principal(principal)
+                .authorizationServerContext(authorizationServerContext)
+                .authorizedScopes(request.scopes())
+                .tokenType(OAuth2TokenType.ACCESS_TOKEN)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+        OAuth2Token generatedAccessToken;
+        try {
+            generatedAccessToken = tokenGenerator.generate(tokenContext);
+        } catch (RuntimeException e) {
+            log.error("Failed to generate access token for client {}", request.clientId(), e);
+            generatedAccessToken = null;
+        }
+        if (Objects.isNull(generatedAccessToken)) {
+            return Result.failure(request.clientId(), new OAuth2Error(OAuth2ErrorCodes.SERVER_ERROR,
+                    "The token generator failed to generate the access token.", null));
+        }
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                generatedAccessToken.getTokenValue(), generatedAccessToken.getIssuedAt(),
+                generatedAccessToken.getExpiresAt(), tokenContext.getAuthorizedScopes());
+        OAuth2Authorization.Builder authorizationBuilder = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .principalName(principal.getName())
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizedScopes(request.scopes());
+        if (generatedAccessToken instanceof ClaimAccessor claimAccessor) {
+            authorizationBuilder.token(accessToken, metadata ->
+                    metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claimAccessor.getClaims()));
+        } else {
+            authorizationBuilder.accessToken(accessToken);
+        }
+        return new Result(request.clientId(), accessToken, null, authorizationBuilder.build());
+    }
+
+    /**
+     * @param scopes 为空时签发的 token 不带 scope，与 /oauth2/token 的 client_credentials 一致
+     */
+    public record Request(String clientId, Set<String> scopes) {
+    }
+
+    /**
+     * accessToken 和 error 只有一个不为 null
+     */
+    public record Result(String clientId, @Nullable OAuth2AccessToken accessToken, @Nullable OAuth2Error error,
+                         @Nullable OAuth2Authorization authorization) {
+
+        static Result failure(String clientId, OAuth2Error error) {
+            return new Result(clientId, null, error, null);
+        }
+    }
+
+    private record StaticAuthorizationServerContext(AuthorizationServerSettings settings) implements AuthorizationServerContext {
+
+        @Override
+        public String getIssuer() {
+            return settings.getIssuer();
+        }
+
+        @Override
+        public AuthorizationServerSettings getAuthorizationServerSettings() {
+            return settings;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package indi.haorui.authorization.server.token;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import indi.haorui.authorization.server.cache.NearCache;
+import indi.haorui.authorization.server.metrics.LatencyHistogram;
+import indi.haorui.authorization.server.properties.IntrospectionProperties;
+import indi.haorui.authorization.server.repository.ReactiveRedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2TokenIntrospectionClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RFC 7662 token introspection，给 /oauth2/v1/introspect 使用
+ * <ul>
+ *     <li>只在 access token 和 refresh token 两个索引中查找（一次 MGET + 一次 GET），不查 code、state 等</li>
+ *     <li>结果按 token 的 sha256 缓存在本地：active 的缓存 activeTtl（不超过 token 的过期时间），
+ *     inactive 的（包括不存在的 token）缓存 inactiveTtl，伪造 token 的重复请求不会打到 redis</li>
+ *     <li>超过 maxTokenLength 的 token 直接返回 inactive，不查 redis 也不进缓存，
+ *     缓存中的 key 长度固定，超大的伪造 token 不会占用堆内存</li>
+ *     <li>缓存的是可以直接序列化的响应，命中时不做任何转换</li>
+ *     <li>命中缓存和查询 redis 的延迟分别记录在两个直方图中</li>
+ *     <li>配置了 ReactiveRedisOAuth2AuthorizationService 时，未命中缓存的查询可以通过 {@link #lookup} 异步完成</li>
+ * </ul>
+ * active 的判断和返回的字段与 OAuth2TokenIntrospectionAuthenticationProvider 一致
+ */
+@Slf4j
+public class TokenIntrospector {
+
+    private static final Map<String, Object> INACTIVE = Map.of(OAuth2TokenIntrospectionClaimNames.ACTIVE, false);
+
+    private static final List<OAuth2TokenType> ACCESS_TOKEN_FIRST = List.of(OAuth2TokenType.ACCESS_TOKEN, OAuth2TokenType.REFRESH_TOKEN);
+
+    private static final List<OAuth2TokenType> REFRESH_TOKEN_FIRST = List.of(OAuth2TokenType.REFRESH_TOKEN, OAuth2TokenType.ACCESS_TOKEN);
+
+    private final RedisOAuth2AuthorizationService authorizationService;
+
+    /*
+        为 null 时只能使用阻塞的 introspect
+     */
+    @Nullable
+    private final ReactiveRedisOAuth2AuthorizationService reactiveAuthorizationService;
+
+    private final RegisteredClientRepository registeredClientRepository;
+
+    private final NearCache<Map<String, Object>> cache;
+
+    private final long activeTtlMillis;
+
+    private final long inactiveTtlMillis;
+
+    private final int maxTokenLength;
+
+    private final LatencyHistogram cached = new LatencyHistogram();
+
+    private final LatencyHistogram lookup = new LatencyHistogram();
+
+    public TokenIntrospector(RedisOAuth2AuthorizationService authorizationService,
+                             RegisteredClientRepository registeredClientRepository,
+                             IntrospectionProperties properties) {
+        this(authorizationService, null, registeredClientRepository, properties);
+    }
+
+    public TokenIntrospector(RedisOAuth2AuthorizationService authorizationService,
+                             @Nullable ReactiveRedisOAuth2AuthorizationService reactiveAuthorizationService,
+                             RegisteredClientRepository registeredClientRepository,
+                             IntrospectionProperties properties) {
+        this.authorizationService = authorizationService;
+        this.reactiveAuthorizationService = reactiveAuthorizationService;
+        this.registeredClientRepository = registeredClientRepository;
+        this.activeTtlMillis = properties.getActiveTtl().toMillis();
+        this.inactiveTtlMillis = properties.getInactiveTtl().toMillis();
+        this.maxTokenLength = properties.getMaxTokenLength();
+        this.cache = new NearCache<>(properties.getMaximumSize(),
+                Duration.ofMillis(Math.max(activeTtlMillis, inactiveTtlMillis)));
+    }
+
+    /**
+     * @param tokenTypeHint 只影响查找顺序，未知的值按 access_token 处理
+     * @return introspection 响应，时间字段为 epoch 秒
+     */
+    public Map<String, Object> introspect(String token, String tokenTypeHint) {
+        Map<String, Object> response = cached(token);
+        if (Objects.nonNull(response)) {
+            return response;
+        }
+        long start = System.nanoTime();
+        return complete(token, authorizationService.findByTokenTypes(token, tokenTypes(tokenTypeHint)), start);
+    }
+
+    /**
+     * 是否配置了 ReactiveRedisOAuth2AuthorizationService，没有时 {@link #lookup} 不可用
+     */
+    public boolean isReactive() {
+        return Objects.nonNull(reactiveAuthorizationService);
+    }
+
+    /**
+     * 只查本地缓存，超过 maxTokenLength 的 token 直接返回 inactive
+     *
+     * @return 未命中时返回 null
+     */
+    @Nullable
+    public Map<String, Object> cached(String token) {
+        if (token.length() > maxTokenLength) {
+            return INACTIVE;
+        }
+        long start = System.nanoTime();
+        Map<String, Object> response = cache.get(key(token));
+        if (Objects.nonNull(response)) {
+            cached.record(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    /**
+     * 不经过本地缓存，通过 ReactiveRedisOAuth2AuthorizationService 查询，结果写入本地缓存
+     * <p>
+     * 响应在 boundedElastic 线程上构造（需要查询 RegisteredClientRepository），不在 lettuce 的 event loop 上
+     */
+    public Mono<Map<String, Object>> lookup(String token, String tokenTypeHint) {
+        Assert.state(isReactive(), "reactive authorization service is not configured");
+        if (token.length() > maxTokenLength) {
+            return Mono.just(INACTIVE);
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return reactiveAuthorizationService.findByTokenTypes(token, tokenTypes(tokenTypeHint))
+                    .map(authorization -> complete(token, authorization, start))
+                    .switchIfEmpty(Mono.fromSupplier(() -> complete(token, null, start)));
+        });
+    }
+
+    private static List<OAuth2TokenType> tokenTypes(String tokenTypeHint) {
+        return OAuth2TokenType.REFRESH_TOKEN.getValue().equals(tokenTypeHint) ? REFRESH_TOKEN_FIRST : ACCESS_TOKEN_FIRST;
+    }
+
+    /**
+     * 根据查到的 authorization 构造响应并写入本地缓存
+     */
+    private Map<String, Object> complete(String token, @Nullable OAuth2Authorization authorization, long start) {
+        Map<String, Object> response = INACTIVE;
+        long ttl = inactiveTtlMillis;
+        OAuth2Authorization.Token<OAuth2Token> authorizedToken = Objects.isNull(authorization) ? null : authorization.getToken(token);
+        if (Objects.nonNull(authorizedToken) && authorizedToken.isActive()) {
+            RegisteredClient registeredClient = registeredClientRepository.findById(authorization.getRegisteredClientId());
+            if (Objects.nonNull(registeredClient)) {
+                response = active(authorizedToken, registeredClient);
+                Instant expiresAt = authorizedToken.getToken().getExpiresAt();
+                ttl = Objects.isNull(expiresAt) ? activeTtlMillis
+                        : Math.min(activeTtlMillis, expiresAt.toEpochMilli() - System.currentTimeMillis());
+            } else {
+                log.warn("Registered client {} of authorization {} not found", authorization.getRegisteredClientId(), authorization.getId());
+            }
+        }
+        cache.put(key(token), response, ttl);
+        lookup.record(System.nanoTime() - start);
+        return response;
+    }
+
+    private static String key(String token) {
+        return DigestUtil.sha256Hex(token);
+    }
+
+    public Stats stats() {
+        return new Stats(cache.stats(), cached.snapshot(), lookup.snapshot());
+    }
+
+    private static Map<String, Object> active(OAuth2Authorization.Token<OAuth2Token> authorizedToken, RegisteredClient registeredClient) {
+        OAuth2Token token = authorizedToken.getToken();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put(OAuth2TokenIntrospectionClaimNames.ACTIVE, true);
+        response.put(OAuth2TokenIntrospectionClaimNames.CLIENT_ID, registeredClient.getClientId());
+        putEpochSecond(response, OAuth2TokenIntrospectionClaimNames.IAT, token.getIssuedAt());
+        putEpochSecond(response, OAuth2TokenIntrospectionClaimNames.EXP, token.getExpiresAt());
+        if (token instanceof OAuth2AccessToken accessToken) {
+            if (!accessToken.getScopes().isEmpty()) {
+                response.put(OAuth2TokenIntrospectionClaimNames.SCOPE, StringUtils.collectionToDelimitedString(accessToken.getScopes(), " "));
+            }
+            response.put(OAuth2TokenIntrospectionClaimNames.TOKEN_TYPE, accessToken.getTokenType().getValue());
+        }
+        Map<String, Object> claims = authorizedToken.getClaims();
+        if (Objects.nonNull(claims)) {
+            putEpochSecond(response, OAuth2TokenIntrospectionClaimNames.NBF, claims.get(OAuth2TokenIntrospectionClaimNames.NBF));
+            putString(response, OAuth2TokenIntrospectionClaimNames.SUB, claims.get(OAuth2TokenIntrospectionClaimNames.SUB));
+            putString(response, OAuth2TokenIntrospectionClaimNames.ISS, claims.get(OAuth2TokenIntrospectionClaimNames.ISS));
+            putString(response, OAuth2TokenIntrospectionClaimNames.JTI, claims.get(OAuth2TokenIntrospectionClaimNames.JTI));
+            putAudience(response, claims.get(OAuth2TokenIntrospectionClaimNames.AUD));
+        }
+        return Collections.unmodifiableMap(response);
+    }
+
+    /**
+     * claims 经过 redis 往返后可能是 Instant、Date 或者数字
+     */
+    private static void putEpochSecond(Map<String, Object> response, String name, Object value) {
+        if (value instanceof Instant instant) {
+            response.put(name, instant.getEpochSecond());
+        } else if (value instanceof Date date) {
+            response.put(name, date.toInstant().getEpochSecond());
+        } else if (value instanceof Number number) {
+            response.put(name, number.longValue());
+        }
+    }
+
+    private static void putString(Map<String, Object> response, String name, Object value) {
+        if (Objects.nonNull(value)) {
+            response.put(name, value.toString());
+        }
+    }
+
+    /**
+     * RFC 7662 的 aud 是字符串或字符串数组，集合统一转成 List，不依赖 claims 中集合的具体类型
+     */
+    private static void putAudience(Map<String, Object> response, Object audience) {
+        if (audience instanceof Collection<?> collection) {
+            if (!collection.isEmpty()) {
+                response.put(OAuth2TokenIntrospectionClaimNames.AUD, collection.stream().map(String::valueOf).toList());
+            }
+        } else {
+            putString(response, OAuth2TokenIntrospectionClaimNames.AUD, audience);
+        }
+    }
+
+    /**
+     * @param cached 命中本地缓存的请求延迟
+     * @param lookup 查询 redis 的请求延迟
+     */
+    public record Stats(NearCache.Stats cache, LatencyHistogram.Snapshot cached, LatencyHistogram.Snapshot lookup) {
+    }
+}
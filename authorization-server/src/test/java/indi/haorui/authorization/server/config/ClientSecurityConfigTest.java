@@ -0,0 +1,182 @@
+package indi.haorui.authorization.server.config;
+
+import indi.haorui.authorization.server.cache.NearCache;
+import indi.haorui.authorization.server.controller.CacheController;
+import indi.haorui.authorization.server.controller.ClientTokenController;
+import indi.haorui.authorization.server.controller.IntrospectionController;
+import indi.haorui.authorization.server.controller.KeyController;
+import indi.haorui.authorization.server.jwk.RotatingJWKSource;
+import indi.haorui.authorization.server.repository.AuthorizationNearCache;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.RedisRegisteredClientRepository;
+import indi.haorui.authorization.server.token.TokenIntrospector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+@WebMvcTest(controllers = {ClientTokenController.class, KeyController.class, IntrospectionController.class,
+        CacheController.class})
+@Import(ClientSecurityConfig.class)
+@TestPropertySource(properties = {
+        "authorization.admin.clients=admin-client",
+        "authorization.batch.trusted-clients=trusted-client"
+})
+class ClientSecurityConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private RedisOAuth2AuthorizationService authorizationService;
+
+    @MockBean
+    private RedisRegisteredClientRepository registeredClientRepository;
+
+    @MockBean
+    private RotatingJWKSource jwkSource;
+
+    @MockBean
+    private TokenIntrospector tokenIntrospector;
+
+    @MockBean
+    private AuthorizationNearCache authorizationNearCache;
+
+    private static RegisteredClient registeredClient(String clientId) {
+        return RegisteredClient.withId(clientId + "-id")
+                .clientId(clientId)
+                .clientSecret("{noop}secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .build();
+    }
+
+    @BeforeEach
+    void setUp() {
+        for (String clientId : new String[]{"admin-client", "trusted-client", "messaging-client"}) {
+            Mockito.when(registeredClientRepository.findByClientId(clientId)).thenReturn(registeredClient(clientId));
+        }
+        Mockito.when(authorizationService.revokeAllByClient("messaging-client-id")).thenReturn(3L);
+        Mockito.when(authorizationService.countByPrincipal("user")).thenReturn(2L);
+        Mockito.when(jwkSource.reload()).thenReturn(List.of());
+        Mockito.when(authorizationNearCache.authorizationStats()).thenReturn(new NearCache.Stats(5, 2, 1, 3));
+        Mockito.when(authorizationNearCache.indexStats()).thenReturn(new NearCache.Stats(4, 1, 0, 3));
+        Mockito.when(registeredClientRepository.clientStats()).thenReturn(new NearCache.Stats(7, 3, 0, 3));
+        Mockito.when(registeredClientRepository.clientIdStats()).thenReturn(new NearCache.Stats(6, 3, 0, 3));
+        Mockito.when(tokenIntrospector.introspect(ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(Map.of("active", false));
+    }
+
+    // 表单登录的用户不能撤销或查看任何 client / principal 的 token
+    @Test
+    void plain_user_rejected() throws Exception {
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/oauth2/v1/principals/user/tokens").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/oauth2/v1/principals/user/tokens").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        Mockito.verify(authorizationService, Mockito.never()).revokeAllByClient(ArgumentMatchers.anyString());
+        Mockito.verify(authorizationService, Mockito.never()).revokeAllByPrincipal(ArgumentMatchers.anyString());
+    }
+
+    // 已注册但不在 authorization.admin.clients 中的 client，包括可以批量签发的 client，都不能调用
+    @Test
+    void non_admin_client_rejected() throws Exception {
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens").with(httpBasic("messaging-client", "secret")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens").with(httpBasic("trusted-client", "secret")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens"))
+                .andExpect(status().isUnauthorized());
+        Mockito.verify(authorizationService, Mockito.never()).revokeAllByClient(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    void admin_client_allowed() throws Exception {
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens").with(httpBasic("admin-client", "secret")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(3));
+        mockMvc.perform(get("/oauth2/v1/principals/user/tokens").with(httpBasic("admin-client", "secret")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2));
+        mockMvc.perform(delete("/oauth2/v1/clients/messaging-client/tokens").with(httpBasic("admin-client", "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // 重新加载签名 key 只有 admin client 可以调用
+    @Test
+    void key_reload_requires_admin() throws Exception {
+        mockMvc.perform(post("/oauth2/v1/keys/reload").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/oauth2/v1/keys/reload").with(httpBasic("messaging-client", "secret")))
+                .andExpect(status().isForbidden());
+        Mockito.verify(jwkSource, Mockito.never()).reload();
+        mockMvc.perform(post("/oauth2/v1/keys/reload").with(httpBasic("admin-client", "secret")))
+                .andExpect(status().isOk());
+        Mockito.verify(jwkSource).reload();
+    }
+
+    // introspection 需要 client 认证，stats 只有 admin client 可以查看
+    @Test
+    void introspection_stats_requires_admin() throws Exception {
+        mockMvc.perform(post("/oauth2/v1/introspect").contentType(MediaType.APPLICATION_FORM_URLENCODED).param("token", "token"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/oauth2/v1/introspect").contentType(MediaType.APPLICATION_FORM_URLENCODED).param("token", "token").with(httpBasic("messaging-client", "secret")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.active").value(false));
+
+        mockMvc.perform(get("/oauth2/v1/introspect/stats"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/oauth2/v1/introspect/stats").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/oauth2/v1/introspect/stats").with(httpBasic("messaging-client", "secret")))
+                .andExpect(status().isForbidden());
+        Mockito.verify(tokenIntrospector, Mockito.never()).stats();
+        mockMvc.perform(get("/oauth2/v1/introspect/stats").with(httpBasic("admin-client", "secret")))
+                .andExpect(status().isOk());
+        Mockito.verify(tokenIntrospector).stats();
+    }
+
+    // 本地缓存统计只有 admin client 可以查看
+    @Test
+    void cache_stats_requires_admin() throws Exception {
+        mockMvc.perform(get("/oauth2/v1/caches"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/oauth2/v1/caches").with(user("user").roles("USER")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/oauth2/v1/caches").with(httpBasic("messaging-client", "secret")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/oauth2/v1/caches").with(httpBasic("admin-client", "secret")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.authorizations.hits").value(5))
+                .andExpect(jsonPath("$.authorizations.evictions").value(1))
+                .andExpect(jsonPath("$.indexes.misses").value(1))
+                .andExpect(jsonPath("$.clients.hits").value(7))
+                .andExpect(jsonPath("$.clientIds.size").value(3));
+    }
+}
@@ -0,0 +1,38 @@
+package indi.haorui.authorization.server.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import org.junit.jupiter.api.Assertions;
+import org.mockito.Mockito;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 加载 RedisConfig 和 spring boot 的 JacksonAutoConfiguration 后容器中的 ObjectMapper，即 spring mvc 读写请求和响应使用的 ObjectMapper
+ */
+final class ApplicationObjectMapper {
+
+    private ApplicationObjectMapper() {
+    }
+
+    static ObjectMapper get() {
+        AtomicReference<ObjectMapper> objectMapper = new AtomicReference<>();
+        new ApplicationContextRunner()
+                .withConfiguration(AutoConfigurations.of(JacksonAutoConfiguration.class))
+                .withUserConfiguration(RedisConfig.class)
+                .withBean(RedisConnectionFactory.class, () -> Mockito.mock(RedisConnectionFactory.class))
+                .withBean(AuthorizationStoreProperties.class, AuthorizationStoreProperties::new)
+                .run(context -> {
+                    Assertions.assertNull(context.getStartupFailure());
+                    objectMapper.set(context.getBean(ObjectMapper.class));
+                });
+        return objectMapper.get();
+    }
+}
@@ -0,0 +1,163 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.authentication.AuthenticationCache;
+import indi.haorui.authorization.server.properties.IntrospectionProperties;
+import indi.haorui.authorization.server.repository.ReactiveRedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.token.TokenIntrospector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClientRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class IntrospectionControllerTest {
+
+    private static final String TOKEN = "token-value";
+
+    private final Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    private final Instant expiresAt = issuedAt.plusSeconds(300);
+
+    private RedisOAuth2AuthorizationService authorizationService;
+
+    private ReactiveRedisOAuth2AuthorizationService reactiveAuthorizationService;
+
+    private RegisteredClientRepository registeredClientRepository;
+
+    private OAuth2Authorization authorization;
+
+    @BeforeEach
+    void setUp() {
+        RegisteredClient registeredClient = RegisteredClient.withId("registered-client-id")
+                .clientId("messaging-client")
+                .clientSecret("{noop}secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scope("message.read")
+                .scope("message.write")
+                .build();
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, TOKEN, issuedAt, expiresAt,
+                new LinkedHashSet<>(List.of("message.read", "message.write")));
+        authorization = OAuth2Authorization.withRegisteredClient(registeredClient)
+                .principalName("messaging-client")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .token(accessToken, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, Map.of(
+                        "sub", "messaging-client",
+                        "iss", "http://localhost:9000",
+                        "aud", List.of("messaging-client"),
+                        "nbf", issuedAt)))
+                .build();
+
+        authorizationService = Mockito.mock(RedisOAuth2AuthorizationService.class);
+        reactiveAuthorizationService = Mockito.mock(ReactiveRedisOAuth2AuthorizationService.class);
+        registeredClientRepository = Mockito.mock(RegisteredClientRepository.class);
+        Mockito.when(registeredClientRepository.findById("registered-client-id")).thenReturn(registeredClient);
+    }
+
+    private MockMvc mockMvc(TokenIntrospector tokenIntrospector) {
+        return MockMvcBuilders.standaloneSetup(new IntrospectionController(tokenIntrospector,
+                        new AuthenticationCache(10, Duration.ofMinutes(1))))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(ApplicationObjectMapper.get()))
+                .build();
+    }
+
+    private String active() {
+        return """
+                {"active":true,"client_id":"messaging-client","iat":%d,"exp":%d,"scope":"message.read message.write",
+                 "token_type":"Bearer","nbf":%d,"sub":"messaging-client","iss":"http://localhost:9000","aud":["messaging-client"]}
+                """.formatted(issuedAt.getEpochSecond(), expiresAt.getEpochSecond(), issuedAt.getEpochSecond());
+    }
+
+    // 响应是 RFC 7662 格式，没有 @class 之类的类型信息
+    @Test
+    void introspect() throws Exception {
+        Mockito.when(authorizationService.findByTokenTypes(ArgumentMatchers.eq(TOKEN), ArgumentMatchers.anyCollection()))
+                .thenReturn(authorization);
+        MockMvc mockMvc = mockMvc(new TokenIntrospector(authorizationService, registeredClientRepository, new IntrospectionProperties()));
+
+        // 第一次查询 redis，第二次命中本地缓存，两次的响应相同
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/oauth2/v1/introspect")
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("token", TOKEN))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json(active(), true));
+        }
+        mockMvc.perform(post("/oauth2/v1/introspect")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("token", "unknown"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"active\":false}", true));
+    }
+
+    // 超长的 token 直接返回 inactive，不查询 redis
+    @Test
+    void introspect_oversized() throws Exception {
+        MockMvc mockMvc = mockMvc(new TokenIntrospector(authorizationService, reactiveAuthorizationService,
+                registeredClientRepository, new IntrospectionProperties()));
+        mockMvc.perform(post("/oauth2/v1/introspect")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("token", "a".repeat(new IntrospectionProperties().getMaxTokenLength() + 1)))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"active\":false}", true));
+        Mockito.verifyNoInteractions(authorizationService, reactiveAuthorizationService);
+    }
+
+    @Test
+    void introspect_reactive() throws Exception {
+        Mockito.when(reactiveAuthorizationService.findByTokenTypes(ArgumentMatchers.eq(TOKEN), ArgumentMatchers.anyCollection()))
+                .thenReturn(Mono.just(authorization));
+        MockMvc mockMvc = mockMvc(new TokenIntrospector(authorizationService, reactiveAuthorizationService,
+                registeredClientRepository, new IntrospectionProperties()));
+
+        MvcResult result = mockMvc.perform(post("/oauth2/v1/introspect")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("token", TOKEN))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(active(), true));
+    }
+
+    @Test
+    void stats() throws Exception {
+        MockMvc mockMvc = mockMvc(new TokenIntrospector(authorizationService, registeredClientRepository, new IntrospectionProperties()));
+        mockMvc.perform(get("/oauth2/v1/introspect/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['@class']").doesNotExist())
+                .andExpect(jsonPath("$.introspection.cache.hits").isNumber())
+                .andExpect(jsonPath("$.introspection.lookup.p99").isNumber())
+                .andExpect(jsonPath("$.clientAuthentication.size").isNumber());
+    }
+}
@@ -0,0 +1,89 @@
+package indi.haorui.authorization.server.controller;
+
+import indi.haorui.authorization.server.token.BatchTokenIssuer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class OAuth2ControllerTest {
+
+    private BatchTokenIssuer batchTokenIssuer;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        batchTokenIssuer = Mockito.mock(BatchTokenIssuer.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new OAuth2Controller(batchTokenIssuer))
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(ApplicationObjectMapper.get()))
+                .build();
+    }
+
+    // 文档中的请求格式可以读取，响应中没有类型信息
+    @Test
+    @SuppressWarnings("unchecked")
+    void batch_token() throws Exception {
+        Instant now = Instant.now();
+        Mockito.when(batchTokenIssuer.issue(ArgumentMatchers.anyList())).thenReturn(List.of(
+                new BatchTokenIssuer.Result("messaging-client", new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                        "token-value", now, now.plusSeconds(300), new LinkedHashSet<>(List.of("pii:read", "write"))), null, null),
+                new BatchTokenIssuer.Result("unknown", null, new OAuth2Error("invalid_client", "Client not found", null), null)));
+
+        mockMvc.perform(post("/oauth2/v1/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"requests":[{"client_id":"messaging-client","scope":"pii:read write"},{"client_id":"unknown"}]}
+                                """))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['@class']").doesNotExist())
+                .andExpect(jsonPath("$.tokens.length()").value(2))
+                .andExpect(jsonPath("$.tokens[0]['@class']").doesNotExist())
+                .andExpect(jsonPath("$.tokens[0].client_id").value("messaging-client"))
+                .andExpect(jsonPath("$.tokens[0].access_token").value("token-value"))
+                .andExpect(jsonPath("$.tokens[0].token_type").value("Bearer"))
+                .andExpect(jsonPath("$.tokens[0].scope").value("pii:read write"))
+                .andExpect(jsonPath("$.tokens[0].expires_in").isNumber())
+                .andExpect(jsonPath("$.tokens[0].error").doesNotExist())
+                .andExpect(jsonPath("$.tokens[1].client_id").value("unknown"))
+                .andExpect(jsonPath("$.tokens[1].error").value("invalid_client"))
+                .andExpect(jsonPath("$.tokens[1].error_description").value("Client not found"))
+                .andExpect(jsonPath("$.tokens[1].access_token").doesNotExist());
+
+        ArgumentCaptor<List<BatchTokenIssuer.Request>> requests = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(batchTokenIssuer).issue(requests.capture());
+        Assertions.assertEquals(List.of(new BatchTokenIssuer.Request("messaging-client", Set.of("pii:read", "write")),
+                new BatchTokenIssuer.Request("unknown", Set.of())), requests.getValue());
+    }
+
+    @Test
+    void empty_requests() throws Exception {
+        mockMvc.perform(post("/oauth2/v1/token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"requests\":[]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("invalid_request"))
+                .andExpect(jsonPath("$.tokens").doesNotExist());
+        Mockito.verifyNoInteractions(batchTokenIssuer);
+    }
+}
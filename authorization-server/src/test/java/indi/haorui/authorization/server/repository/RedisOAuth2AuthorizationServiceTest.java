@@ -0,0 +1,55 @@
+package indi.haorui.authorization.server.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 读写 redis 的部分见 benchmarks 模块中使用 InMemoryRedisServer 的测试
+ */
+class RedisOAuth2AuthorizationServiceTest {
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+
+    private final Instant now = Instant.now();
+
+    // 主记录跟随最晚过期的未过期 token，refresh token 不会因为 access token 过期而被删除
+    @Test
+    void expires_at_latest_live_token() {
+        Instant accessToken = now.plusSeconds(300);
+        Instant refreshToken = now.plus(Duration.ofDays(1));
+        Assertions.assertEquals(refreshToken,
+                RedisOAuth2AuthorizationService.expiresAt(List.of(accessToken, refreshToken), now, DEFAULT_TTL));
+        // 已过期的 access token 不影响
+        Assertions.assertEquals(refreshToken,
+                RedisOAuth2AuthorizationService.expiresAt(List.of(now.minusSeconds(1), refreshToken), now, DEFAULT_TTL));
+        // state 没有过期时间，同样不影响
+        Assertions.assertEquals(accessToken,
+                RedisOAuth2AuthorizationService.expiresAt(Arrays.asList(null, accessToken), now, DEFAULT_TTL));
+    }
+
+    // 所有 token 都已过期时返回 null，save 转为 remove
+    @Test
+    void expires_at_all_expired() {
+        Assertions.assertNull(RedisOAuth2AuthorizationService.expiresAt(
+                List.of(now.minusSeconds(300), now.minusSeconds(1)), now, DEFAULT_TTL));
+        Assertions.assertNull(RedisOAuth2AuthorizationService.expiresAt(List.of(now), now, DEFAULT_TTL));
+        Assertions.assertNull(RedisOAuth2AuthorizationService.expiresAt(
+                Arrays.asList(null, now.minusSeconds(1)), now, DEFAULT_TTL));
+    }
+
+    // 只有 state（等待用户授权）时使用 defaultTtl
+    @Test
+    void expires_at_default_ttl() {
+        Assertions.assertEquals(now.plus(DEFAULT_TTL),
+                RedisOAuth2AuthorizationService.expiresAt(Arrays.asList((Instant) null), now, DEFAULT_TTL));
+        Assertions.assertEquals(now.plus(DEFAULT_TTL),
+                RedisOAuth2AuthorizationService.expiresAt(List.of(), now, DEFAULT_TTL));
+    }
+}
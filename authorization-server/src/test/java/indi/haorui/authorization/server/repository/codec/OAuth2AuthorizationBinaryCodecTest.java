@@ -0,0 +1,173 @@
+package indi.haorui.authorization.server.repository.codec;
+
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.po.OAuth2AccessTokenPO;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.authorization.server.repository.po.OAuth2RefreshTokenPO;
+import indi.haorui.authorization.server.repository.po.OAuth2TokenPO;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class OAuth2AuthorizationBinaryCodecTest {
+
+    private final Instant issuedAt = Instant.ofEpochMilli(System.currentTimeMillis());
+
+    private final Instant expiresAt = issuedAt.plusSeconds(300);
+
+    private final OAuth2AuthorizationBinaryCodec codec = new OAuth2AuthorizationBinaryCodec(RedisConfig.redisObjectMapper());
+
+    private OAuth2AuthorizationPO authorization(boolean withVersion2Tokens) {
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put("sub", "user");
+        claims.put("aud", List.of("client", "resource"));
+        claims.put("iat", issuedAt);
+        claims.put("scope", new LinkedHashSet<>(List.of("read", "write")));
+
+        Map<String, Object> accessTokenMetadata = new LinkedHashMap<>();
+        accessTokenMetadata.put("metadata.token.claims", claims);
+        accessTokenMetadata.put("metadata.token.invalidated", false);
+        accessTokenMetadata.put("count", 3);
+        accessTokenMetadata.put("size", 1L << 40);
+        accessTokenMetadata.put("ratio", 0.5);
+        accessTokenMetadata.put("missing", null);
+
+        OAuth2AccessTokenPO accessToken = new OAuth2AccessTokenPO();
+        accessToken.setTokenType("Bearer");
+        accessToken.setScopes(new LinkedHashSet<>(List.of("read", "write")));
+        accessToken.setTokenValue("access-token");
+        accessToken.setIssuedAt(issuedAt);
+        accessToken.setExpiresAt(expiresAt);
+        accessToken.setMetadata(accessTokenMetadata);
+
+        OAuth2RefreshTokenPO refreshToken = new OAuth2RefreshTokenPO();
+        refreshToken.setTokenValue("refresh-token");
+        refreshToken.setIssuedAt(issuedAt);
+        refreshToken.setExpiresAt(expiresAt.plusSeconds(3600));
+        refreshToken.setMetadata(new LinkedHashMap<>(Map.of("metadata.token.invalidated", true)));
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("state", "state-value");
+        // 无法识别的类型退化为 json
+        attributes.put("nonce", UUID.fromString("5b7c3e0a-8f2d-4f5e-9a61-2f3c1d0e4b7a"));
+
+        OAuth2AuthorizationPO authorization = new OAuth2AuthorizationPO();
+        authorization.setId("id");
+        authorization.setRegisteredClientId("client");
+        // 与 registeredClientId 相同，只写下标
+        authorization.setPrincipalName("client");
+        authorization.setAuthorizationGrantType("authorization_code");
+        authorization.setAuthorizedScopes(new LinkedHashSet<>(List.of("read", "write")));
+        authorization.setOAuth2AccessToken(accessToken);
+        authorization.setOAuth2RefreshToken(refreshToken);
+        authorization.setAttributes(attributes);
+        if (withVersion2Tokens) {
+            authorization.setAuthorizationCode(token("code"));
+            authorization.setOidcIdToken(token("id-token"));
+            authorization.setDeviceCode(token("device-code"));
+            authorization.setUserCode(token("user-code"));
+        }
+        return authorization;
+    }
+
+    private OAuth2TokenPO token(String tokenValue) {
+        OAuth2TokenPO token = new OAuth2TokenPO();
+        token.setTokenValue(tokenValue);
+        token.setIssuedAt(issuedAt);
+        token.setExpiresAt(expiresAt);
+        token.setMetadata(new LinkedHashMap<>(Map.of("metadata.token.invalidated", false)));
+        return token;
+    }
+
+    // 所有字段和 metadata 中各种类型的值编码后还原为相同的对象
+    @Test
+    void round_trip() {
+        OAuth2AuthorizationPO authorization = authorization(true);
+        byte[] bytes = codec.encode(authorization);
+        Assertions.assertTrue(codec.supports(bytes));
+        Assertions.assertEquals(OAuth2AuthorizationBinaryCodec.VERSION_2, bytes[1]);
+        Assertions.assertEquals(authorization, codec.decode(bytes));
+    }
+
+    // VERSION_1 没有 authorization code 等 token，仍然可以读取
+    @Test
+    void version_1_compatible() {
+        OAuth2AuthorizationPO authorization = authorization(false);
+        byte[] bytes = codec.encode(authorization);
+        // VERSION_2 追加的四个 token 都不存在时各占一个字节
+        byte[] version1 = Arrays.copyOf(bytes, bytes.length - 4);
+        version1[1] = OAuth2AuthorizationBinaryCodec.VERSION_1;
+        Assertions.assertEquals(authorization, codec.decode(version1));
+    }
+
+    // 切换 codec 前后写入的数据都可以读取
+    @Test
+    void json_fallback() {
+        OAuth2AuthorizationRedisSerializer json = new OAuth2AuthorizationRedisSerializer(
+                AuthorizationStoreProperties.Codec.JSON, RedisConfig.redisObjectMapper());
+        OAuth2AuthorizationRedisSerializer binary = new OAuth2AuthorizationRedisSerializer(
+                AuthorizationStoreProperties.Codec.BINARY, RedisConfig.redisObjectMapper());
+        OAuth2AuthorizationPO authorization = authorization(true);
+
+        byte[] jsonBytes = json.serialize(authorization);
+        Assertions.assertFalse(codec.supports(jsonBytes));
+        OAuth2AuthorizationPO fromJson = binary.deserialize(jsonBytes);
+        Assertions.assertEquals("id", fromJson.getId());
+        Assertions.assertEquals(Set.of("read", "write"), fromJson.getAuthorizedScopes());
+        Assertions.assertEquals("access-token", fromJson.getOAuth2AccessToken().getTokenValue());
+        Assertions.assertEquals(expiresAt, fromJson.getOAuth2AccessToken().getExpiresAt());
+        Assertions.assertEquals("user-code", fromJson.getUserCode().getTokenValue());
+
+        Assertions.assertEquals(authorization, json.deserialize(binary.serialize(authorization)));
+        Assertions.assertNull(binary.deserialize(new byte[0]));
+    }
+
+    // 截断在任何位置都抛出 SerializationException
+    @Test
+    void truncated() {
+        byte[] bytes = codec.encode(authorization(true));
+        for (int length = 1; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            Assertions.assertThrows(SerializationException.class, () -> codec.decode(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void malformed() {
+        byte magic = OAuth2AuthorizationBinaryCodec.MAGIC;
+        byte version = OAuth2AuthorizationBinaryCodec.VERSION_2;
+        // 不支持的版本
+        assertMalformed(magic, (byte) 9);
+        // 引用了还没有出现的字符串
+        assertMalformed(magic, version, (byte) 5);
+        // 字符串下标超出 long 的正数范围
+        assertMalformed(magic, version, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x01);
+        // scope 个数远大于剩余字节数，不按它分配内存
+        assertMalformed(magic, version, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0xC2, (byte) 0x84, (byte) 0x3D);
+        // 字符串长度超过剩余字节数
+        assertMalformed(magic, version, (byte) 1, (byte) 0x7F, (byte) 'a');
+        // 未知的 value 类型
+        byte[] key = "k".getBytes(StandardCharsets.UTF_8);
+        assertMalformed(magic, version, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0,
+                (byte) 2, (byte) 1, (byte) key.length, key[0], (byte) 99);
+    }
+
+    private void assertMalformed(byte... bytes) {
+        Assertions.assertThrows(SerializationException.class, () -> codec.decode(bytes), Arrays.toString(bytes));
+    }
+}
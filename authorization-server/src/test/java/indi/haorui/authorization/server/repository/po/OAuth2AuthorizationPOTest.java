@@ -0,0 +1,110 @@
+package indi.haorui.authorization.server.repository.po;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.OAuth2DeviceCode;
+import org.springframework.security.oauth2.core.OAuth2RefreshToken;
+import org.springframework.security.oauth2.core.OAuth2Token;
+import org.springframework.security.oauth2.core.OAuth2UserCode;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2AuthorizationCode;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class OAuth2AuthorizationPOTest {
+
+    private final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private final RegisteredClient registeredClient = RegisteredClient.withId("registered-client-id")
+            .clientId("messaging-client")
+            .clientSecret("{noop}secret")
+            .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+            .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+            .authorizationGrantType(AuthorizationGrantType.DEVICE_CODE)
+            .redirectUri("http://127.0.0.1:8080/authorized")
+            .scope("openid")
+            .build();
+
+    private OAuth2Authorization.Builder authorization() {
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id("id")
+                .principalName("user")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .authorizedScopes(Set.of("openid"));
+    }
+
+    // 已过期的 access token 被丢弃，未过期的 refresh token 和已失效但未过期的 code 保留
+    @Test
+    void drop_expired_tokens() {
+        OAuth2Authorization authorization = authorization()
+                .token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token",
+                        now.minusSeconds(600), now.minusSeconds(300)))
+                .refreshToken(new OAuth2RefreshToken("refresh-token", now.minusSeconds(600), now.plus(Duration.ofDays(1))))
+                .token(new OAuth2AuthorizationCode("code", now.minusSeconds(10), now.plusSeconds(290)),
+                        metadata -> metadata.put(OAuth2Authorization.Token.INVALIDATED_METADATA_NAME, true))
+                .token(new OAuth2UserCode("expired-user-code", now.minusSeconds(600), now.minusSeconds(1)))
+                .build();
+
+        OAuth2AuthorizationPO po = new OAuth2AuthorizationPO(authorization);
+        Assertions.assertNull(po.getOAuth2AccessToken());
+        Assertions.assertNull(po.getUserCode());
+        Assertions.assertEquals("refresh-token", po.getOAuth2RefreshToken().getTokenValue());
+        Assertions.assertEquals("code", po.getAuthorizationCode().getTokenValue());
+
+        OAuth2Authorization restored = po.toOauth2Authorization(registeredClient);
+        Assertions.assertNull(restored.getAccessToken());
+        Assertions.assertNotNull(restored.getRefreshToken());
+        Assertions.assertTrue(restored.getToken(OAuth2AuthorizationCode.class).isInvalidated());
+    }
+
+    // code、id token、device code、user code 连同 metadata 一起还原
+    @Test
+    void round_trip_all_tokens() {
+        Map<String, Object> idTokenClaims = Map.of("sub", "user", "iss", "http://localhost:9001");
+        OAuth2Authorization authorization = authorization()
+                .attribute("state", "state-value")
+                .token(new OAuth2AuthorizationCode("code", now, now.plusSeconds(300)))
+                .token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", now, now.plusSeconds(300),
+                        Set.of("openid")))
+                .refreshToken(new OAuth2RefreshToken("refresh-token", now, now.plus(Duration.ofDays(1))))
+                .token(new OidcIdToken("id-token", now, now.plusSeconds(300), idTokenClaims),
+                        metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, idTokenClaims))
+                .token(new OAuth2DeviceCode("device-code", now, now.plusSeconds(300)))
+                .token(new OAuth2UserCode("user-code", now, now.plusSeconds(300)))
+                .build();
+
+        OAuth2Authorization restored = new OAuth2AuthorizationPO(authorization).toOauth2Authorization(registeredClient);
+        Assertions.assertEquals("state-value", restored.getAttribute("state"));
+        assertToken(authorization, restored, OAuth2AuthorizationCode.class);
+        assertToken(authorization, restored, OAuth2AccessToken.class);
+        assertToken(authorization, restored, OAuth2RefreshToken.class);
+        assertToken(authorization, restored, OidcIdToken.class);
+        assertToken(authorization, restored, OAuth2DeviceCode.class);
+        assertToken(authorization, restored, OAuth2UserCode.class);
+        Assertions.assertEquals(Set.of("openid"), restored.getAccessToken().getToken().getScopes());
+        Assertions.assertEquals(idTokenClaims, restored.getToken(OidcIdToken.class).getToken().getClaims());
+    }
+
+    private static <T extends OAuth2Token> void assertToken(
+            OAuth2Authorization expected, OAuth2Authorization actual, Class<T> tokenType) {
+        OAuth2Authorization.Token<T> expectedToken = expected.getToken(tokenType);
+        OAuth2Authorization.Token<T> actualToken = actual.getToken(tokenType);
+        Assertions.assertNotNull(actualToken, tokenType.getSimpleName());
+        Assertions.assertEquals(expectedToken.getToken().getTokenValue(), actualToken.getToken().getTokenValue());
+        Assertions.assertEquals(expectedToken.getToken().getIssuedAt(), actualToken.getToken().getIssuedAt());
+        Assertions.assertEquals(expectedToken.getToken().getExpiresAt(), actualToken.getToken().getExpiresAt());
+        Assertions.assertEquals(expectedToken.getMetadata(), actualToken.getMetadata());
+    }
+}
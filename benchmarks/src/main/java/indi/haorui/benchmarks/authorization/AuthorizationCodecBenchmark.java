@@ -0,0 +1,65 @@
+package indi.haorui.benchmarks.authorization;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.benchmarks.support.Fixtures;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RedisConfig 中 ObjectMapper（json）与二进制编码的序列化/反序列化开销，value 大小在 setup 时打印
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public AuthorizationStoreProperties.Codec codec;
+
+    private OAuth2AuthorizationRedisSerializer serializer;
+
+    private OAuth2AuthorizationPO po;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = RedisConfig.redisObjectMapper();
+        serializer = new OAuth2AuthorizationRedisSerializer(codec, objectMapper);
+        po = new OAuth2AuthorizationPO(Fixtures.authorization(Fixtures.registeredClient()));
+        bytes = serializer.serialize(po);
+        log.info("{} value size: {} bytes", codec, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize(po);
+    }
+
+    @Benchmark
+    public OAuth2AuthorizationPO deserialize() {
+        return serializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,134 @@
+package indi.haorui.benchmarks.authorization;
+
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.benchmarks.support.Fixtures;
+import indi.haorui.benchmarks.support.InMemoryRedisServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 按 client 的集合带来的写入开销，以及 countByClient / revokeAllByClient
+ * <p>
+ * cluster=true 时 {@link InMemoryRedisServer} 拒绝跨 slot 的多 key 命令和事务，
+ * 服务以 cluster 模式访问，能跑完说明没有发出跨 slot 的命令
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientTokensBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cluster;
+
+    @Param({"1000"})
+    public int tokens;
+
+    private InMemoryRedisServer server;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisOAuth2AuthorizationService authorizationService;
+
+    private RegisteredClient registeredClient;
+
+    private OAuth2Authorization[] authorizations;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new InMemoryRedisServer(cluster);
+        connectionFactory = Fixtures.connectionFactory(server);
+
+        RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new OAuth2AuthorizationRedisSerializer(AuthorizationStoreProperties.Codec.BINARY,
+                RedisConfig.redisObjectMapper()));
+        redisTemplate.afterPropertiesSet();
+
+        registeredClient = Fixtures.registeredClient();
+        authorizationService = new RedisOAuth2AuthorizationService(redisTemplate, new StringRedisTemplate(connectionFactory),
+                new InMemoryRegisteredClientRepository(registeredClient), null, cluster);
+
+        authorizations = new OAuth2Authorization[tokens];
+        for (int i = 0; i < tokens; i++) {
+            authorizations[i] = Fixtures.authorization(registeredClient);
+        }
+        authorizationService.saveAll(List.of(authorizations));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    /**
+     * 主记录、索引、client 和 principal 集合一起写入
+     */
+    @Benchmark
+    public void save() {
+        authorizationService.save(authorizations[ThreadLocalRandom.current().nextInt(authorizations.length)]);
+    }
+
+    @Benchmark
+    public long count() {
+        return authorizationService.countByClient(registeredClient.getId());
+    }
+
+    /**
+     * 每轮开始前重新写入 tokens 个 authorization，每轮只撤销一次
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public long revokeAll(Populated populated) {
+        return authorizationService.revokeAllByClient(registeredClient.getId());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Populated {
+
+        @Setup(Level.Iteration)
+        public void populate(ClientTokensBenchmark benchmark) {
+            List<OAuth2Authorization> authorizations = new ArrayList<>(benchmark.tokens);
+            for (int i = 0; i < benchmark.tokens; i++) {
+                authorizations.add(Fixtures.authorization(benchmark.registeredClient));
+            }
+            benchmark.authorizationService.saveAll(authorizations);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package indi.haorui.benchmarks.authorization;
+
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.benchmarks.support.Fixtures;
+import indi.haorui.benchmarks.support.InMemoryRedisServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RedisOAuth2AuthorizationService#findByToken，redis 中预先保存 1k/10k/100k 个 authorization
+ * <p>
+ * 使用 {@link InMemoryRedisServer} 代替 redis，结果反映的是客户端编解码 + 本机往返，而不是 redis 本身
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindByTokenBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int authorizations;
+
+    @Param({"BINARY"})
+    public AuthorizationStoreProperties.Codec codec;
+
+    private InMemoryRedisServer server;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisOAuth2AuthorizationService authorizationService;
+
+    private String[] tokens;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new InMemoryRedisServer();
+        connectionFactory = Fixtures.connectionFactory(server);
+
+        RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new OAuth2AuthorizationRedisSerializer(codec, RedisConfig.redisObjectMapper()));
+        redisTemplate.afterPropertiesSet();
+
+        RegisteredClient registeredClient = Fixtures.registeredClient();
+        authorizationService = new RedisOAuth2AuthorizationService(redisTemplate,
+                new StringRedisTemplate(connectionFactory), new InMemoryRegisteredClientRepository(registeredClient));
+
+        tokens = new String[authorizations];
+        for (int i = 0; i < authorizations; i++) {
+            OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+            authorizationService.save(authorization);
+            tokens[i] = authorization.getAccessToken().getToken().getTokenValue();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    @Benchmark
+    public OAuth2Authorization findByAccessToken() {
+        String token = tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+        return authorizationService.findByToken(token, OAuth2TokenType.ACCESS_TOKEN);
+    }
+
+    /**
+     * tokenType 为 null 时需要查所有类型的索引
+     */
+    @Benchmark
+    public OAuth2Authorization findByUnknownTypeToken() {
+        String token = tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+        return authorizationService.findByToken(token, null);
+    }
+}
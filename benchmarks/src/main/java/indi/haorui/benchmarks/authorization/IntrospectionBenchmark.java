@@ -0,0 +1,121 @@
+package indi.haorui.benchmarks.authorization;
+
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.properties.IntrospectionProperties;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.authorization.server.token.TokenIntrospector;
+import indi.haorui.benchmarks.support.Fixtures;
+import indi.haorui.benchmarks.support.InMemoryRedisServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * TokenIntrospector#introspect，redis 中预先保存 10k 个 authorization，cache=false 时关闭响应缓存
+ * <p>
+ * garbage 每次使用不同的伪造 token，cache=true 时从第二轮开始命中负缓存
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntrospectionBenchmark {
+
+    private static final int AUTHORIZATIONS = 10_000;
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private InMemoryRedisServer server;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private TokenIntrospector tokenIntrospector;
+
+    private String[] tokens;
+
+    private String[] garbage;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new InMemoryRedisServer();
+        connectionFactory = Fixtures.connectionFactory(server);
+
+        RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new OAuth2AuthorizationRedisSerializer(AuthorizationStoreProperties.Codec.BINARY,
+                RedisConfig.redisObjectMapper()));
+        redisTemplate.afterPropertiesSet();
+
+        RegisteredClient registeredClient = Fixtures.registeredClient();
+        InMemoryRegisteredClientRepository registeredClientRepository = new InMemoryRegisteredClientRepository(registeredClient);
+        RedisOAuth2AuthorizationService authorizationService = new RedisOAuth2AuthorizationService(redisTemplate,
+                new StringRedisTemplate(connectionFactory), registeredClientRepository);
+
+        IntrospectionProperties properties = new IntrospectionProperties();
+        if (!cache) {
+            properties.setActiveTtl(Duration.ZERO);
+            properties.setInactiveTtl(Duration.ZERO);
+        }
+        tokenIntrospector = new TokenIntrospector(authorizationService, registeredClientRepository, properties);
+
+        tokens = new String[AUTHORIZATIONS];
+        for (int i = 0; i < AUTHORIZATIONS; i++) {
+            OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+            authorizationService.save(authorization);
+            tokens[i] = authorization.getAccessToken().getToken().getTokenValue();
+        }
+        garbage = new String[AUTHORIZATIONS];
+        for (int i = 0; i < AUTHORIZATIONS; i++) {
+            garbage[i] = UUID.randomUUID().toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connectionFactory.destroy();
+        server.close();
+    }
+
+    @Benchmark
+    public Map<String, Object> active() {
+        return tokenIntrospector.introspect(tokens[ThreadLocalRandom.current().nextInt(tokens.length)], null);
+    }
+
+    @Benchmark
+    public Map<String, Object> garbage() {
+        return tokenIntrospector.introspect(garbage[ThreadLocalRandom.current().nextInt(garbage.length)], null);
+    }
+}
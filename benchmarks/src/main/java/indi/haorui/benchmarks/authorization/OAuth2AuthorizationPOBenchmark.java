@@ -0,0 +1,55 @@
+package indi.haorui.benchmarks.authorization;
+
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.benchmarks.support.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * OAuth2Authorization 与 OAuth2AuthorizationPO 之间的转换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OAuth2AuthorizationPOBenchmark {
+
+    private RegisteredClient registeredClient;
+
+    private OAuth2Authorization authorization;
+
+    private OAuth2AuthorizationPO po;
+
+    @Setup
+    public void setup() {
+        registeredClient = Fixtures.registeredClient();
+        authorization = Fixtures.authorization(registeredClient);
+        po = new OAuth2AuthorizationPO(authorization);
+    }
+
+    @Benchmark
+    public OAuth2AuthorizationPO construct() {
+        return new OAuth2AuthorizationPO(authorization);
+    }
+
+    @Benchmark
+    public OAuth2Authorization toOauth2Authorization() {
+        return po.toOauth2Authorization(registeredClient);
+    }
+}
@@ -0,0 +1,83 @@
+package indi.haorui.benchmarks.jwt;
+
+import indi.haorui.authorization.server.jwk.SigningKeyHolder;
+import indi.haorui.benchmarks.support.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * NimbusJwtEncoder 使用与 SecurityConfig#jwkSource 相同结构的 JWKSource 签发 token，claims 与 client_credentials 一致
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtEncodingBenchmark {
+
+    private NimbusJwtEncoder jwtEncoder;
+
+    private NimbusJwtEncoder activeKeyJwtEncoder;
+
+    private SigningKeyHolder signingKeyHolder;
+
+    @Setup
+    public void setup() {
+        jwtEncoder = new NimbusJwtEncoder(Fixtures.jwkSource());
+        signingKeyHolder = new SigningKeyHolder(Fixtures.rsaKey("efgh"));
+        activeKeyJwtEncoder = new NimbusJwtEncoder(signingKeyHolder.jwkSource());
+    }
+
+    /**
+     * 改动前：在两把 key 的 JWKSource 中按 kid 选择
+     */
+    @Benchmark
+    public Jwt encode() {
+        return jwtEncoder.encode(parameters("efgh"));
+    }
+
+    /**
+     * SecurityConfig#jwtEncoder：kid 来自 SigningKeyHolder，只在 active key 中选择
+     */
+    @Benchmark
+    public Jwt encodeActiveKey() {
+        return activeKeyJwtEncoder.encode(parameters(signingKeyHolder.keyId()));
+    }
+
+    private static JwtEncoderParameters parameters(String keyId) {
+        Instant issuedAt = Instant.now();
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.RS256).keyId(keyId).build();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("http://localhost:9001")
+                .subject("messaging-client")
+                .audience(List.of("messaging-client"))
+                .issuedAt(issuedAt)
+                .notBefore(issuedAt)
+                .expiresAt(issuedAt.plus(Duration.ofMinutes(5)))
+                .claim("scope", Fixtures.SCOPES)
+                .build();
+        return JwtEncoderParameters.from(header, claims);
+    }
+}
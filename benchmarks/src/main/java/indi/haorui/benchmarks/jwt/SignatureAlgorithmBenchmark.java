@@ -0,0 +1,103 @@
+package indi.haorui.benchmarks.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import indi.haorui.authorization.server.jwk.PemKeys;
+import indi.haorui.authorization.server.jwk.SigningKeyHolder;
+import indi.haorui.benchmarks.support.Fixtures;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RS256（RSA-2048）与 ES256（P-256）的签名和验签吞吐，setup 日志中输出 token 长度
+ * <p>
+ * 签名走 SecurityConfig#jwtEncoder 的路径（SigningKeyHolder），验签与资源服务器一样使用 NimbusJwtDecoder
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureAlgorithmBenchmark {
+
+    @Param({"RS256", "ES256"})
+    public String algorithm;
+
+    private SigningKeyHolder signingKeyHolder;
+
+    private NimbusJwtEncoder jwtEncoder;
+
+    private NimbusJwtDecoder jwtDecoder;
+
+    private String token;
+
+    @Setup
+    public void setup() {
+        JWK jwk = "ES256".equals(algorithm) ? Fixtures.ecKey("ec-1") : Fixtures.rsaKey("rsa-1");
+        signingKeyHolder = new SigningKeyHolder(jwk);
+        jwtEncoder = new NimbusJwtEncoder(signingKeyHolder.jwkSource());
+        // 与资源服务器 LazyJwtDecoder 的构造方式一致
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                JWSAlgorithm.parse(PemKeys.algorithm(jwk).getName()),
+                new ImmutableJWKSet<>(new JWKSet(jwk.toPublicJWK()))));
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        token = sign().getTokenValue();
+        log.info("{} token length: {} chars", algorithm, token.length());
+    }
+
+    @Benchmark
+    public Jwt sign() {
+        SignatureAlgorithm signatureAlgorithm = signingKeyHolder.algorithm();
+        Instant issuedAt = Instant.now();
+        JwsHeader header = JwsHeader.with(signatureAlgorithm).keyId(signingKeyHolder.keyId(signatureAlgorithm)).build();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("http://localhost:9001")
+                .subject("messaging-client")
+                .audience(List.of("messaging-client"))
+                .issuedAt(issuedAt)
+                .notBefore(issuedAt)
+                .expiresAt(issuedAt.plus(Duration.ofHours(1)))
+                .claim("scope", Fixtures.SCOPES)
+                .build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(header, claims));
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return jwtDecoder.decode(token);
+    }
+}
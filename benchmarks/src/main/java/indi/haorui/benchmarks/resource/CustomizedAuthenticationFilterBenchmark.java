@@ -0,0 +1,162 @@
+package indi.haorui.benchmarks.resource;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import indi.haorui.benchmarks.support.Fixtures;
+import indi.haorui.resource.server.filter.CustomizedAuthenticationFilter;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * CustomizedAuthenticationFilter 每个请求的开销，legacy 复现了改动前的做法：
+ * 再解析一次 token，并为每个请求新建 JwtAuthenticationProvider
+ * <p>
+ * decoder=stub 时 decoder 直接返回解析好的 jwt，只测 filter 本身；decoder=nimbus 时包含 RS256 验签
+ * <p>
+ * 配合 -prof gc 查看每次请求的分配
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomizedAuthenticationFilterBenchmark {
+
+    @Param({"stub", "nimbus"})
+    public String decoder;
+
+    private final BearerTokenResolver bearerTokenResolver = new DefaultBearerTokenResolver();
+
+    private final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
+
+    private final FilterChain filterChain = (request, response) -> {
+    };
+
+    private JwtAuthenticationConverter jwtAuthenticationConverter;
+
+    private JwtDecoder jwtDecoder;
+
+    private CustomizedAuthenticationFilter filter;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() throws Exception {
+        RSAKey rsaKey = Fixtures.rsaKey("efgh");
+        String token = token(rsaKey);
+        NimbusJwtDecoder nimbusJwtDecoder = NimbusJwtDecoder.withPublicKey(rsaKey.toRSAPublicKey()).build();
+        if ("stub".equals(decoder)) {
+            Jwt jwt = nimbusJwtDecoder.decode(token);
+            jwtDecoder = value -> jwt;
+        } else {
+            jwtDecoder = nimbusJwtDecoder;
+        }
+
+        // 与 SecurityConfig 中注释掉的 jwtAuthenticationConverter 一致
+        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
+        grantedAuthoritiesConverter.setAuthoritiesClaimName("roles");
+        grantedAuthoritiesConverter.setAuthorityPrefix("");
+        jwtAuthenticationConverter = new JwtAuthenticationConverter();
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+        jwtAuthenticationConverter.setPrincipalClaimName("appid");
+
+        filter = new CustomizedAuthenticationFilter(jwtAuthenticationConverter, jwtDecoder);
+        filter.afterPropertiesSet();
+
+        request = new MockHttpServletRequest("GET", "/api/v2/users");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Authentication filter() throws Exception {
+        filter.doFilter(request, response, filterChain);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    /**
+     * 改动前 doFilterInternal + getAuthenticationProvider 的路径
+     */
+    @Benchmark
+    public Authentication legacy() {
+        String token = bearerTokenResolver.resolve(request);
+        BearerTokenAuthenticationToken authenticationRequest = new BearerTokenAuthenticationToken(token);
+        authenticationRequest.setDetails(authenticationDetailsSource.buildDetails(request));
+        // getAuthenticationProvider 中第二次解析 token
+        bearerTokenResolver.resolve(request);
+        JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(jwtDecoder);
+        jwtAuthenticationProvider.setJwtAuthenticationConverter(jwtAuthenticationConverter);
+        Authentication authentication = jwtAuthenticationProvider.authenticate(authenticationRequest);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    private static String token(RSAKey rsaKey) {
+        NimbusJwtEncoder jwtEncoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(rsaKey)));
+        Instant issuedAt = Instant.now();
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.RS256).keyId(rsaKey.getKeyID()).build();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("http://localhost:9001")
+                .subject("messaging-client")
+                .audience(List.of("messaging-client"))
+                .issuedAt(issuedAt)
+                .notBefore(issuedAt)
+                // 保证整个测试期间都不会过期
+                .expiresAt(issuedAt.plus(Duration.ofDays(1)))
+                .claim("scope", Fixtures.SCOPES)
+                .claim("appid", "messaging-client")
+                .claim("roles", List.of("pii-read"))
+                .build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+}
@@ -0,0 +1,118 @@
+package indi.haorui.benchmarks.support;
+
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 基准测试共用的测试数据，与 application.yaml 中的 messaging-client 保持一致
+ */
+public final class Fixtures {
+
+    public static final Set<String> SCOPES = Set.of("pii:read", "write", "basic:read");
+
+    private Fixtures() {
+    }
+
+    public static RegisteredClient registeredClient() {
+        return RegisteredClient.withId("messaging-client")
+                .clientId("messaging-client")
+                .clientSecret("{noop}secret")
+                .clientAuthenticationMethod(ClientAuthenticationMethod.CLIENT_SECRET_BASIC)
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .scopes(scopes -> scopes.addAll(SCOPES))
+                .build();
+    }
+
+    /**
+     * client_credentials 签发后保存的 authorization，token 值长度与真实 RS256 jwt 相近
+     */
+    public static OAuth2Authorization authorization(RegisteredClient registeredClient) {
+        Instant issuedAt = Instant.now();
+        Instant expiresAt = issuedAt.plus(Duration.ofHours(1));
+        OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                tokenValue(), issuedAt, expiresAt, SCOPES);
+        Map<String, Object> claims = new LinkedHashMap<>();
+        claims.put(JwtClaimNames.SUB, registeredClient.getClientId());
+        claims.put(JwtClaimNames.AUD, List.of(registeredClient.getClientId()));
+        claims.put(JwtClaimNames.NBF, issuedAt);
+        claims.put(OAuth2ParameterNames.SCOPE, SCOPES);
+        claims.put(JwtClaimNames.ISS, "http://localhost:9001");
+        claims.put(JwtClaimNames.EXP, expiresAt);
+        claims.put(JwtClaimNames.IAT, issuedAt);
+        claims.put(JwtClaimNames.JTI, UUID.randomUUID().toString());
+        return OAuth2Authorization.withRegisteredClient(registeredClient)
+                .id(UUID.randomUUID().toString())
+                .principalName(registeredClient.getClientId())
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .authorizedScopes(SCOPES)
+                .token(accessToken, metadata -> metadata.put(OAuth2Authorization.Token.CLAIMS_METADATA_NAME, claims))
+                .build();
+    }
+
+    public static String tokenValue() {
+        StringBuilder token = new StringBuilder(800);
+        while (token.length() < 780) {
+            token.append(UUID.randomUUID().toString().replace("-", ""));
+        }
+        return token.toString();
+    }
+
+    public static RSAKey rsaKey(String keyId) {
+        try {
+            return new RSAKeyGenerator(2048).keyID(keyId).generate();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static ECKey ecKey(String keyId) {
+        try {
+            return new ECKeyGenerator(Curve.P_256).keyID(keyId).generate();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 与 SecurityConfig#jwkSource 一样的两把 key
+     */
+    public static JWKSource<SecurityContext> jwkSource() {
+        List<JWK> keys = List.of(rsaKey("abcd"), rsaKey("efgh"));
+        return new ImmutableJWKSet<>(new JWKSet(keys));
+    }
+
+    public static LettuceConnectionFactory connectionFactory(InMemoryRedisServer server) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("127.0.0.1", server.getPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        return connectionFactory;
+    }
+}
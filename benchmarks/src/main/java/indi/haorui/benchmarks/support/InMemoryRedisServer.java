@@ -0,0 +1,650 @@
+package indi.haorui.benchmarks.support;
+
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 基准测试用的进程内 redis 替身，实现 RESP2 协议中 RedisTemplate 用到的命令，
+ * 让 Lettuce 连接、pipeline、MULTI/EXEC 都走真实的网络编解码路径
+ * <p>
+ * 不支持的命令返回错误（例如 HELLO，Lettuce 会退回 RESP2）；EVAL 只支持 {@link RedisOAuth2AuthorizationService#ADD_TO_SET}，
+ * 用 Java 实现同样的语义，EVALSHA 总是返回 NOSCRIPT
+ * <p>
+ * cluster 为 true 时模拟 redis cluster 节点对 key 的限制：多 key 命令和事务中的 key 必须在同一个 slot，
+ * 否则返回 CROSSSLOT（事务 EXEC 时返回 EXECABORT），用于验证 cluster 模式下不会发出跨 slot 的命令；
+ * 这个节点持有全部 slot，不会返回 MOVED
+ */
+@Slf4j
+public class InMemoryRedisServer implements AutoCloseable {
+
+    private static final byte[] OK = "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUEUED = "+QUEUED\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL_BULK = "$-1\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String CROSSSLOT = "CROSSSLOT Keys in request don't hash to the same slot";
+
+    private static final String ADD_TO_SET = RedisOAuth2AuthorizationService.ADD_TO_SET.getScriptAsString();
+
+    /*
+     * 多个参数都是 key 的命令
+     */
+    private static final Set<String> MULTI_KEY_COMMANDS = Set.of("MGET", "DEL", "UNLINK", "EXISTS");
+
+    /*
+     * 第一个参数是 key 的命令
+     */
+    private static final Set<String> SINGLE_KEY_COMMANDS = Set.of("GET", "SET", "PEXPIRE", "EXPIRE", "PTTL",
+            "ZADD", "ZREM", "ZCARD", "ZCOUNT", "ZRANGE", "ZRANGEBYSCORE", "ZREMRANGEBYSCORE");
+
+    /*
+     * key 用 ISO_8859_1 解码，与字节一一对应
+     */
+    private final Map<String, Entry> data = new ConcurrentHashMap<>();
+
+    private final ServerSocket serverSocket;
+
+    private final boolean cluster;
+
+    private volatile boolean running = true;
+
+    public InMemoryRedisServer() throws IOException {
+        this(false);
+    }
+
+    public InMemoryRedisServer(boolean cluster) throws IOException {
+        this.cluster = cluster;
+        this.serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "in-memory-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "in-memory-redis-" + socket.getPort());
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Failed to accept connection", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            List<List<byte[]>> transaction = null;
+            // 事务中第一个 key 的 slot，-1 表示还没有 key；有命令被拒绝时 EXEC 整体失败
+            int transactionSlot = -1;
+            boolean transactionAborted = false;
+            while (running) {
+                List<byte[]> command = readCommand(in);
+                String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+                if ("MULTI".equals(name)) {
+                    transaction = new ArrayList<>();
+                    transactionSlot = -1;
+                    transactionAborted = false;
+                    out.write(OK);
+                } else if ("EXEC".equals(name) && Objects.nonNull(transaction)) {
+                    if (transactionAborted) {
+                        writeError(out, "EXECABORT Transaction discarded because of previous errors.");
+                    } else {
+                        writeArrayHeader(out, transaction.size());
+                        for (List<byte[]> queued : transaction) {
+                            execute(queued, out);
+                        }
+                    }
+                    transaction = null;
+                } else if ("DISCARD".equals(name) && Objects.nonNull(transaction)) {
+                    transaction = null;
+                    out.write(OK);
+                } else if (Objects.nonNull(transaction)) {
+                    int slot = slot(name, command);
+                    if (slot == -2 || (slot >= 0 && transactionSlot >= 0 && slot != transactionSlot)) {
+                        transactionAborted = true;
+                        writeError(out, CROSSSLOT);
+                    } else {
+                        if (slot >= 0) {
+                            transactionSlot = slot;
+                        }
+                        transaction.add(command);
+                        out.write(QUEUED);
+                    }
+                } else if (slot(name, command) == -2) {
+                    writeError(out, CROSSSLOT);
+                } else {
+                    execute(command, out);
+                }
+                // pipeline 中还有未读命令时先不 flush
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException ignored) {
+            // 客户端关闭连接
+        } catch (IOException e) {
+            if (running) {
+                log.debug("Connection closed", e);
+            }
+        }
+    }
+
+    private void execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING" -> out.write("+PONG\r\n".getBytes(StandardCharsets.US_ASCII));
+            case "CLIENT", "SELECT", "AUTH", "FLUSHALL", "FLUSHDB" -> {
+                if (name.startsWith("FLUSH")) {
+                    data.clear();
+                }
+                out.write(OK);
+            }
+            case "GET" -> {
+                Object value = get(key(command, 1));
+                if (value instanceof SortedSet) {
+                    writeError(out, "WRONGTYPE Operation against a key holding the wrong kind of value");
+                } else {
+                    writeBulk(out, (byte[]) value);
+                }
+            }
+            case "SET" -> {
+                long expiresAt = Long.MAX_VALUE;
+                for (int i = 3; i + 1 < command.size(); i++) {
+                    String option = new String(command.get(i), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+                    long amount = Long.parseLong(new String(command.get(i + 1), StandardCharsets.US_ASCII));
+                    if ("EX".equals(option)) {
+                        expiresAt = System.currentTimeMillis() + amount * 1000;
+                    } else if ("PX".equals(option)) {
+                        expiresAt = System.currentTimeMillis() + amount;
+                    }
+                }
+                data.put(key(command, 1), new Entry(command.get(2), expiresAt));
+                out.write(OK);
+            }
+            case "MGET" -> {
+                writeArrayHeader(out, command.size() - 1);
+                for (int i = 1; i < command.size(); i++) {
+                    writeBulk(out, get(key(command, i)) instanceof byte[] value ? value : null);
+                }
+            }
+            case "DEL", "UNLINK" -> {
+                long removed = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    if (Objects.nonNull(data.remove(key(command, i)))) {
+                        removed++;
+                    }
+                }
+                writeInteger(out, removed);
+            }
+            case "EXISTS" -> {
+                long exists = 0;
+                for (int i = 1; i < command.size(); i++) {
+                    if (Objects.nonNull(get(key(command, i)))) {
+                        exists++;
+                    }
+                }
+                writeInteger(out, exists);
+            }
+            case "PEXPIRE", "EXPIRE" -> {
+                String key = key(command, 1);
+                Entry entry = Objects.isNull(get(key)) ? null : data.get(key);
+                long amount = Long.parseLong(new String(command.get(2), StandardCharsets.US_ASCII));
+                long expiresAt = System.currentTimeMillis() + ("EXPIRE".equals(name) ? amount * 1000 : amount);
+                String option = command.size() > 3 ? new String(command.get(3), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT) : "";
+                // 没有过期时间的 key 视为无限长，与 redis 7.0 的 NX/XX/GT/LT 语义一致
+                boolean persistent = Objects.nonNull(entry) && entry.expiresAt() == Long.MAX_VALUE;
+                boolean apply = Objects.nonNull(entry) && switch (option) {
+                    case "NX" -> persistent;
+                    case "XX" -> !persistent;
+                    case "GT" -> !persistent && expiresAt > entry.expiresAt();
+                    case "LT" -> persistent || expiresAt < entry.expiresAt();
+                    default -> true;
+                };
+                if (apply) {
+                    data.put(key, new Entry(entry.value(), expiresAt));
+                }
+                writeInteger(out, apply ? 1 : 0);
+            }
+            case "PTTL" -> writeInteger(out, pttl(key(command, 1)));
+            case "ZADD" -> {
+                SortedSet set = sortedSet(key(command, 1), true);
+                long added = 0;
+                for (int i = 2; i + 1 < command.size(); i += 2) {
+                    if (set.add(member(command, i + 1), score(command, i))) {
+                        added++;
+                    }
+                }
+                writeInteger(out, added);
+            }
+            case "ZREM" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                long removed = 0;
+                for (int i = 2; Objects.nonNull(set) && i < command.size(); i++) {
+                    if (set.remove(member(command, i))) {
+                        removed++;
+                    }
+                }
+                removeIfEmpty(key(command, 1), set);
+                writeInteger(out, removed);
+            }
+            case "ZCARD" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                writeInteger(out, Objects.isNull(set) ? 0 : set.size());
+            }
+            case "ZCOUNT" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                writeInteger(out, Objects.isNull(set) ? 0 : set.range(command.get(2), command.get(3)).size());
+            }
+            case "ZRANGE" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                List<String> members = Objects.isNull(set) ? List.of()
+                        : set.rank(Integer.parseInt(key(command, 2)), Integer.parseInt(key(command, 3)));
+                writeMembers(out, members);
+            }
+            case "ZRANGEBYSCORE" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                List<String> members = Objects.isNull(set) ? List.of() : set.range(command.get(2), command.get(3));
+                for (int i = 4; i + 2 < command.size(); i++) {
+                    if ("LIMIT".equalsIgnoreCase(key(command, i))) {
+                        int offset = Integer.parseInt(key(command, i + 1));
+                        int count = Integer.parseInt(key(command, i + 2));
+                        int to = count < 0 ? members.size() : Math.min(members.size(), offset + count);
+                        members = offset >= members.size() ? List.of() : members.subList(offset, to);
+                    }
+                }
+                writeMembers(out, members);
+            }
+            case "ZREMRANGEBYSCORE" -> {
+                SortedSet set = sortedSet(key(command, 1), false);
+                long removed = 0;
+                if (Objects.nonNull(set)) {
+                    for (String member : set.range(command.get(2), command.get(3))) {
+                        if (set.remove(member)) {
+                            removed++;
+                        }
+                    }
+                }
+                removeIfEmpty(key(command, 1), set);
+                writeInteger(out, removed);
+            }
+            case "KEYS" -> {
+                Pattern pattern = glob(key(command, 1));
+                List<String> keys = data.keySet().stream()
+                        .filter(key -> pattern.matcher(key).matches() && Objects.nonNull(get(key)))
+                        .toList();
+                writeArrayHeader(out, keys.size());
+                for (String key : keys) {
+                    writeBulk(out, key.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            case "PUBLISH" -> writeInteger(out, 0);
+            case "EVAL" -> {
+                if (ADD_TO_SET.equals(new String(command.get(1), StandardCharsets.UTF_8))) {
+                    writeInteger(out, addToSet(command));
+                } else {
+                    writeError(out, "ERR unsupported script");
+                }
+            }
+            case "EVALSHA" -> writeError(out, "NOSCRIPT No matching script. Please use EVAL.");
+            default -> writeError(out, "ERR unknown command '" + name + "'");
+        }
+    }
+
+    /**
+     * EVAL ADD_TO_SET 1 set score id now ttl
+     */
+    private long addToSet(List<byte[]> command) throws IOException {
+        byte[] set = command.get(3);
+        OutputStream discard = OutputStream.nullOutputStream();
+        execute(List.of(ascii("ZADD"), set, command.get(4), command.get(5)), discard);
+        execute(List.of(ascii("ZREMRANGEBYSCORE"), set, ascii("0"), command.get(6)), discard);
+        long ttl = pttl(key(command, 3));
+        if (ttl < Long.parseLong(key(command, 7))) {
+            execute(List.of(ascii("PEXPIRE"), set, command.get(7)), discard);
+        }
+        return ttl;
+    }
+
+    private long pttl(String key) {
+        Entry entry = Objects.isNull(get(key)) ? null : data.get(key);
+        if (Objects.isNull(entry)) {
+            return -2;
+        }
+        return entry.expiresAt() == Long.MAX_VALUE ? -1 : entry.expiresAt() - System.currentTimeMillis();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return byte[] 或 {@link SortedSet}，不存在或已过期时返回 null
+     */
+    private Object get(String key) {
+        Entry entry = data.get(key);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            data.remove(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    private SortedSet sortedSet(String key, boolean create) {
+        Object value = get(key);
+        if (value instanceof SortedSet set) {
+            return set;
+        }
+        if (!create) {
+            return null;
+        }
+        SortedSet set = new SortedSet();
+        data.put(key, new Entry(set, Long.MAX_VALUE));
+        return set;
+    }
+
+    /*
+     * 与 redis 一样，空的 sorted set 直接删除
+     */
+    private void removeIfEmpty(String key, SortedSet set) {
+        if (Objects.nonNull(set) && set.size() == 0) {
+            data.computeIfPresent(key, (k, entry) -> entry.value() == set ? null : entry);
+        }
+    }
+
+    /**
+     * cluster 模式下命令涉及的 slot
+     *
+     * @return 没有 key 或不是 cluster 模式时返回 -1，key 不在同一个 slot 时返回 -2
+     */
+    private int slot(String name, List<byte[]> command) {
+        if (!cluster) {
+            return -1;
+        }
+        if (("EVAL".equals(name) || "EVALSHA".equals(name)) && command.size() > 3) {
+            int keys = Integer.parseInt(key(command, 2));
+            int slot = keys > 0 ? slot(command.get(3)) : -1;
+            for (int i = 4; i < 3 + keys; i++) {
+                if (slot(command.get(i)) != slot) {
+                    return -2;
+                }
+            }
+            return slot;
+        }
+        if (SINGLE_KEY_COMMANDS.contains(name) && command.size() > 1) {
+            return slot(command.get(1));
+        }
+        if (MULTI_KEY_COMMANDS.contains(name) && command.size() > 1) {
+            int slot = slot(command.get(1));
+            for (int i = 2; i < command.size(); i++) {
+                if (slot(command.get(i)) != slot) {
+                    return -2;
+                }
+            }
+            return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * CRC16(key) mod 16384，key 中有非空的 {...} 时只计算第一个 hash tag
+     */
+    static int slot(byte[] key) {
+        int start = 0;
+        int end = key.length;
+        for (int i = 0; i < key.length; i++) {
+            if (key[i] == '{') {
+                for (int j = i + 1; j < key.length; j++) {
+                    if (key[j] == '}') {
+                        if (j > i + 1) {
+                            start = i + 1;
+                            end = j;
+                        }
+                        break;
+                    }
+                }
+                break;
+            }
+        }
+        int crc = 0;
+        for (int i = start; i < end; i++) {
+            crc ^= (key[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            crc &= 0xFFFF;
+        }
+        return crc % 16384;
+    }
+
+    private static String member(List<byte[]> command, int index) {
+        return key(command, index);
+    }
+
+    private static double score(List<byte[]> command, int index) {
+        return parseScore(key(command, index));
+    }
+
+    private static double parseScore(String score) {
+        return switch (score.toLowerCase(Locale.ROOT)) {
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            case "+inf", "inf" -> Double.POSITIVE_INFINITY;
+            default -> Double.parseDouble(score);
+        };
+    }
+
+    private static String key(List<byte[]> command, int index) {
+        return new String(command.get(index), StandardCharsets.ISO_8859_1);
+    }
+
+    private static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException();
+        }
+        if (type != '*') {
+            throw new IOException("Inline commands are not supported");
+        }
+        int count = (int) readLong(in);
+        List<byte[]> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected bulk string");
+            }
+            int length = (int) readLong(in);
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length) {
+                throw new EOFException();
+            }
+            // \r\n
+            in.skipNBytes(2);
+            command.add(bytes);
+        }
+        return command;
+    }
+
+    private static long readLong(InputStream in) throws IOException {
+        ByteArrayOutputStream digits = new ByteArrayOutputStream(16);
+        for (int c = in.read(); c != '\r'; c = in.read()) {
+            if (c < 0) {
+                throw new EOFException();
+            }
+            digits.write(c);
+        }
+        in.read();
+        return Long.parseLong(digits.toString(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (Objects.isNull(value)) {
+            out.write(NULL_BULK);
+            return;
+        }
+        out.write(('$' + String.valueOf(value.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(value);
+        out.write('\r');
+        out.write('\n');
+    }
+
+    private static void writeArrayHeader(OutputStream out, int size) throws IOException {
+        out.write(('*' + String.valueOf(size) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((':' + String.valueOf(value) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write(('-' + message + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeMembers(OutputStream out, List<String> members) throws IOException {
+        writeArrayHeader(out, members.size());
+        for (String member : members) {
+            writeBulk(out, member.getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    /**
+     * @param value byte[] 或 {@link SortedSet}
+     */
+    private record Entry(Object value, long expiresAt) {
+    }
+
+    /**
+     * member 按 (score, member) 排序，只实现上面用到的操作，所有方法加锁
+     */
+    private static final class SortedSet {
+
+        private final Map<String, Double> scores = new HashMap<>();
+
+        private final TreeSet<Map.Entry<String, Double>> ordered = new TreeSet<>(
+                Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.<String, Double>comparingByKey()));
+
+        synchronized boolean add(String member, double score) {
+            Double previous = scores.put(member, score);
+            if (Objects.nonNull(previous)) {
+                ordered.remove(Map.entry(member, previous));
+            }
+            ordered.add(Map.entry(member, score));
+            return Objects.isNull(previous);
+        }
+
+        synchronized boolean remove(String member) {
+            Double previous = scores.remove(member);
+            if (Objects.isNull(previous)) {
+                return false;
+            }
+            ordered.remove(Map.entry(member, previous));
+            return true;
+        }
+
+        synchronized int size() {
+            return scores.size();
+        }
+
+        /**
+         * ZRANGE 的下标语义，负数从末尾计算
+         */
+        synchronized List<String> rank(int start, int stop) {
+            int size = ordered.size();
+            int from = start < 0 ? Math.max(0, size + start) : start;
+            int to = stop < 0 ? size + stop : Math.min(stop, size - 1);
+            List<String> members = new ArrayList<>();
+            int index = 0;
+            for (Map.Entry<String, Double> entry : ordered) {
+                if (index > to) {
+                    break;
+                }
+                if (index >= from) {
+                    members.add(entry.getKey());
+                }
+                index++;
+            }
+            return members;
+        }
+
+        /**
+         * ZRANGEBYSCORE 的区间语义，"(" 开头为开区间
+         */
+        synchronized List<String> range(byte[] min, byte[] max) {
+            String minValue = new String(min, StandardCharsets.US_ASCII);
+            String maxValue = new String(max, StandardCharsets.US_ASCII);
+            boolean minExclusive = minValue.startsWith("(");
+            boolean maxExclusive = maxValue.startsWith("(");
+            double from = parseScore(minExclusive ? minValue.substring(1) : minValue);
+            double to = parseScore(maxExclusive ? maxValue.substring(1) : maxValue);
+            List<String> members = new ArrayList<>();
+            for (Map.Entry<String, Double> entry : ordered) {
+                double score = entry.getValue();
+                if (score > to || (maxExclusive && score == to)) {
+                    break;
+                }
+                if (score > from || (!minExclusive && score == from)) {
+                    members.add(entry.getKey());
+                }
+            }
+            return members;
+        }
+    }
+}
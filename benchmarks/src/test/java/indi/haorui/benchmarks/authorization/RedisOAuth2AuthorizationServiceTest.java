@@ -0,0 +1,243 @@
+package indi.haorui.benchmarks.authorization;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import indi.haorui.authorization.server.config.RedisConfig;
+import indi.haorui.authorization.server.properties.AuthorizationStoreProperties;
+import indi.haorui.authorization.server.repository.RedisOAuth2AuthorizationService;
+import indi.haorui.authorization.server.repository.codec.OAuth2AuthorizationRedisSerializer;
+import indi.haorui.authorization.server.repository.po.OAuth2AuthorizationPO;
+import indi.haorui.benchmarks.support.Fixtures;
+import indi.haorui.benchmarks.support.InMemoryRedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.server.authorization.OAuth2Authorization;
+import org.springframework.security.oauth2.server.authorization.OAuth2TokenType;
+import org.springframework.security.oauth2.server.authorization.client.InMemoryRegisteredClientRepository;
+import org.springframework.security.oauth2.server.authorization.client.RegisteredClient;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * RedisOAuth2AuthorizationService 对 redis 的读写，使用 {@link InMemoryRedisServer} 代替 redis，
+ * 不读写 redis 的部分见 authorization-server 中的同名测试
+ */
+class RedisOAuth2AuthorizationServiceTest {
+
+    private final RegisteredClient registeredClient = Fixtures.registeredClient();
+
+    private InMemoryRedisServer server;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    private RedisTemplate<String, OAuth2AuthorizationPO> redisTemplate;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RedisOAuth2AuthorizationService authorizationService;
+
+    private void start(boolean cluster) throws IOException {
+        server = new InMemoryRedisServer(cluster);
+        connectionFactory = Fixtures.connectionFactory(server);
+
+        redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new OAuth2AuthorizationRedisSerializer(AuthorizationStoreProperties.Codec.BINARY,
+                RedisConfig.redisObjectMapper()));
+        redisTemplate.afterPropertiesSet();
+
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        authorizationService = new RedisOAuth2AuthorizationService(redisTemplate, stringRedisTemplate,
+                new InMemoryRegisteredClientRepository(registeredClient), null, cluster);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static String accessTokenIndex(String token) {
+        return "access:index:" + OAuth2TokenType.ACCESS_TOKEN.getValue() + ":" + DigestUtil.sha256Hex(token);
+    }
+
+    private static String clientTokens(String registeredClientId) {
+        return "access:client:{" + registeredClientId + "}:tokens";
+    }
+
+    private static String accessToken(OAuth2Authorization authorization) {
+        return authorization.getAccessToken().getToken().getTokenValue();
+    }
+
+    // 通过 token hash 索引找到 authorization，指定和不指定 tokenType 都可以
+    @Test
+    void find_by_token_index() throws IOException {
+        start(false);
+        OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+        authorizationService.save(authorization);
+        String token = accessToken(authorization);
+
+        Assertions.assertEquals(authorization.getId(), stringRedisTemplate.opsForValue().get(accessTokenIndex(token)));
+        Assertions.assertEquals(authorization.getId(),
+                authorizationService.findByToken(token, OAuth2TokenType.ACCESS_TOKEN).getId());
+        Assertions.assertEquals(authorization.getId(), authorizationService.findByToken(token, (OAuth2TokenType) null).getId());
+        Assertions.assertNull(authorizationService.findByToken(token, OAuth2TokenType.REFRESH_TOKEN));
+        Assertions.assertNull(authorizationService.findByToken(Fixtures.tokenValue(), OAuth2TokenType.ACCESS_TOKEN));
+    }
+
+    // 旧 token 的索引在过期前仍然存在，指向的 authorization 已经替换或删除时不能返回
+    @Test
+    void stale_index_rejected() throws IOException {
+        start(false);
+        OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+        authorizationService.save(authorization);
+        String oldToken = accessToken(authorization);
+
+        // 同一个 id 换了新的 access token，旧索引仍然指向这个 id
+        Instant now = Instant.now();
+        OAuth2Authorization replaced = OAuth2Authorization.from(authorization)
+                .token(new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, Fixtures.tokenValue(), now,
+                        now.plusSeconds(3600), Fixtures.SCOPES))
+                .build();
+        authorizationService.save(replaced);
+        Assertions.assertEquals(authorization.getId(), stringRedisTemplate.opsForValue().get(accessTokenIndex(oldToken)));
+        Assertions.assertNull(authorizationService.findByToken(oldToken, OAuth2TokenType.ACCESS_TOKEN));
+        Assertions.assertNull(authorizationService.findByToken(oldToken, (OAuth2TokenType) null));
+        Assertions.assertEquals(replaced.getId(),
+                authorizationService.findByToken(accessToken(replaced), OAuth2TokenType.ACCESS_TOKEN).getId());
+
+        // 索引指向另一个 authorization
+        OAuth2Authorization other = Fixtures.authorization(registeredClient);
+        authorizationService.save(other);
+        stringRedisTemplate.opsForValue().set(accessTokenIndex(oldToken), other.getId());
+        Assertions.assertNull(authorizationService.findByToken(oldToken, OAuth2TokenType.ACCESS_TOKEN));
+
+        // 主记录已删除，索引还在
+        stringRedisTemplate.opsForValue().set(accessTokenIndex(oldToken), replaced.getId());
+        authorizationService.remove(replaced);
+        Assertions.assertNull(authorizationService.findById(replaced.getId()));
+        Assertions.assertNull(authorizationService.findByToken(oldToken, OAuth2TokenType.ACCESS_TOKEN));
+        Assertions.assertNull(authorizationService.findByToken(accessToken(replaced), OAuth2TokenType.ACCESS_TOKEN));
+    }
+
+    // 只统计 score（主记录过期时间）在当前时间之后的 member，已过期但还没清理的不计入
+    @Test
+    void count_live_window() throws IOException {
+        start(false);
+        for (int i = 0; i < 3; i++) {
+            authorizationService.save(Fixtures.authorization(registeredClient));
+        }
+        String set = clientTokens(registeredClient.getId());
+        stringRedisTemplate.opsForZSet().add(set, "expired", System.currentTimeMillis() - 1000);
+
+        Assertions.assertEquals(4, stringRedisTemplate.opsForZSet().zCard(set));
+        Assertions.assertEquals(3, authorizationService.countByClient(registeredClient.getId()));
+        Assertions.assertEquals(3, authorizationService.countByPrincipal(registeredClient.getClientId()));
+        Assertions.assertEquals(0, authorizationService.countByClient("unknown"));
+    }
+
+    // 超过一批（500）的 authorization 分多批撤销，主记录、索引和集合都被清空
+    @Test
+    void revoke_in_batches() throws IOException {
+        start(false);
+        List<OAuth2Authorization> authorizations = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            authorizations.add(Fixtures.authorization(registeredClient));
+        }
+        authorizationService.saveAll(authorizations);
+        Assertions.assertEquals(1200, authorizationService.countByClient(registeredClient.getId()));
+
+        Assertions.assertEquals(1200, authorizationService.revokeAllByClient(registeredClient.getId()));
+        Assertions.assertEquals(0, authorizationService.countByClient(registeredClient.getId()));
+        Assertions.assertEquals(0, stringRedisTemplate.opsForZSet().zCard(clientTokens(registeredClient.getId())));
+        for (OAuth2Authorization authorization : List.of(authorizations.get(0), authorizations.get(700), authorizations.get(1199))) {
+            Assertions.assertNull(authorizationService.findById(authorization.getId()));
+            Assertions.assertNull(stringRedisTemplate.opsForValue().get(accessTokenIndex(accessToken(authorization))));
+        }
+        Assertions.assertEquals(0, authorizationService.revokeAllByClient(registeredClient.getId()));
+    }
+
+    // ADD_TO_SET：写入 member、清理已过期的 member，集合的过期时间只延长不缩短
+    @Test
+    void add_to_set() throws IOException {
+        start(false);
+        String set = "access:client:{script}:tokens";
+        long now = System.currentTimeMillis();
+        stringRedisTemplate.opsForZSet().add(set, "expired", now - 1000);
+
+        addToSet(set, now + 60_000, "a", now, 60_000);
+        Assertions.assertEquals(Set.of("a"), stringRedisTemplate.opsForZSet().range(set, 0, -1));
+        Assertions.assertEquals(1, stringRedisTemplate.opsForZSet().count(set, now + 60_000, now + 60_000));
+        long ttl = stringRedisTemplate.getExpire(set, TimeUnit.MILLISECONDS);
+        Assertions.assertTrue(ttl > 50_000 && ttl <= 60_000, String.valueOf(ttl));
+
+        // 更短的 ttl 不会缩短集合的过期时间
+        Long previous = addToSet(set, now + 1_000, "b", now, 1_000);
+        Assertions.assertTrue(previous > 50_000, String.valueOf(previous));
+        Assertions.assertTrue(stringRedisTemplate.getExpire(set, TimeUnit.MILLISECONDS) > 50_000);
+        Assertions.assertEquals(2, stringRedisTemplate.opsForZSet().zCard(set));
+
+        // 更长的 ttl 延长集合的过期时间
+        addToSet(set, now + 120_000, "c", now, 120_000);
+        Assertions.assertTrue(stringRedisTemplate.getExpire(set, TimeUnit.MILLISECONDS) > 110_000);
+    }
+
+    private Long addToSet(String set, long score, String id, long now, long ttl) {
+        return stringRedisTemplate.execute(RedisOAuth2AuthorizationService.ADD_TO_SET, List.of(set),
+                String.valueOf(score), id, String.valueOf(now), String.valueOf(ttl));
+    }
+
+    // cluster 下不使用 MULTI 和跨 slot 的多 key 命令，读写、统计、撤销都可用
+    @Test
+    void cluster_without_multi() throws IOException {
+        start(true);
+        List<OAuth2Authorization> authorizations = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            authorizations.add(Fixtures.authorization(registeredClient));
+        }
+        authorizationService.saveAll(authorizations);
+        OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+        authorizationService.save(authorization);
+
+        Assertions.assertEquals(authorization.getId(),
+                authorizationService.findByToken(accessToken(authorization), OAuth2TokenType.ACCESS_TOKEN).getId());
+        Assertions.assertEquals(4, authorizationService.countByClient(registeredClient.getId()));
+
+        authorizationService.remove(authorization);
+        Assertions.assertNull(authorizationService.findById(authorization.getId()));
+        Assertions.assertNull(authorizationService.findByToken(accessToken(authorization), OAuth2TokenType.ACCESS_TOKEN));
+
+        Assertions.assertEquals(3, authorizationService.revokeAllByClient(registeredClient.getId()));
+        Assertions.assertEquals(0, authorizationService.countByClient(registeredClient.getId()));
+    }
+
+    // 同一个 cluster 使用 MULTI 写入时，跨 slot 的事务被拒绝
+    @Test
+    void cluster_rejects_multi() throws IOException {
+        start(true);
+        RedisOAuth2AuthorizationService transactional = new RedisOAuth2AuthorizationService(
+                redisTemplate, stringRedisTemplate,
+                new InMemoryRegisteredClientRepository(registeredClient), null, false);
+        OAuth2Authorization authorization = Fixtures.authorization(registeredClient);
+
+        Assertions.assertThrows(Exception.class, () -> transactional.save(authorization));
+        Assertions.assertNull(authorizationService.findById(authorization.getId()));
+    }
+}
@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class AuthorizationCodecBenchmark_jmhType extends AuthorizationCodecBenchmark_jmhType_B3 {
+}
+
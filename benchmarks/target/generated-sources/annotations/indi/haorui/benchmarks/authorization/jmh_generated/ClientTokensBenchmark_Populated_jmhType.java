@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class ClientTokensBenchmark_Populated_jmhType extends ClientTokensBenchmark_Populated_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class ClientTokensBenchmark_jmhType extends ClientTokensBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class FindByTokenBenchmark_jmhType extends FindByTokenBenchmark_jmhType_B3 {
+}
+
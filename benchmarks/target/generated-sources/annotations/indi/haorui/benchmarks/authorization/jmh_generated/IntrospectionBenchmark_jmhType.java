@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class IntrospectionBenchmark_jmhType extends IntrospectionBenchmark_jmhType_B3 {
+}
+
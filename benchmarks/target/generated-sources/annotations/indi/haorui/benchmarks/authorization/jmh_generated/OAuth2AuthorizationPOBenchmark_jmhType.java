@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.authorization.jmh_generated;
+public class OAuth2AuthorizationPOBenchmark_jmhType extends OAuth2AuthorizationPOBenchmark_jmhType_B3 {
+}
+
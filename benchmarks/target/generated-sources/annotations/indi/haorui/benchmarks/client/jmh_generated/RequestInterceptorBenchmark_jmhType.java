@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.client.jmh_generated;
+public class RequestInterceptorBenchmark_jmhType extends RequestInterceptorBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.jwt.jmh_generated;
+public class JwtEncodingBenchmark_jmhType extends JwtEncodingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.jwt.jmh_generated;
+public class SignatureAlgorithmBenchmark_jmhType extends SignatureAlgorithmBenchmark_jmhType_B3 {
+}
+
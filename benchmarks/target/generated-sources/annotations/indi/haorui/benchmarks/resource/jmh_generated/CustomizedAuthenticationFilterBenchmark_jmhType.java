@@ -0,0 +1,4 @@
+package indi.haorui.benchmarks.resource.jmh_generated;
+public class CustomizedAuthenticationFilterBenchmark_jmhType extends CustomizedAuthenticationFilterBenchmark_jmhType_B3 {
+}
+
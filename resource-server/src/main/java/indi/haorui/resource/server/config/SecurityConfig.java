@@ -1,12 +1,18 @@
 package indi.haorui.resource.server.config;
 
+import indi.haorui.resource.server.jwt.CachingJwtDecoder;
+import indi.haorui.resource.server.jwt.JwkSetMetrics;
+import indi.haorui.resource.server.jwt.LazyJwtDecoder;
+import indi.haorui.resource.server.jwt.MeteredJWKSource;
+import indi.haorui.resource.server.properties.ResourceJwtProperties;
+import org.springframework.boot.autoconfigure.security.oauth2.resource.OAuth2ResourceServerProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.web.SecurityFilterChain;
 
 /**
@@ -22,6 +28,7 @@ import org.springframework.security.web.SecurityFilterChain;
  */
 @Configuration
 @EnableWebSecurity
+@EnableConfigurationProperties(ResourceJwtProperties.class)
 public class SecurityConfig {
 
     @Bean
@@ -37,8 +44,26 @@ public class SecurityConfig {
     }
 
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return JwtDecoders.fromIssuerLocation("http://localhost:9001");
+    public JwkSetMetrics jwkSetMetrics() {
+        return new JwkSetMetrics();
+    }
+
+    /**
+     * discovery 和 JWK set 的拉取都在后台进行，授权服务器不可用时资源服务器仍然可以启动
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(OAuth2ResourceServerProperties resourceServerProperties, ResourceJwtProperties properties,
+                                 JwkSetMetrics jwkSetMetrics) {
+        ResourceJwtProperties.Discovery discovery = properties.getDiscovery();
+        LazyJwtDecoder jwtDecoder = new LazyJwtDecoder(resourceServerProperties.getJwt().getIssuerUri(),
+                discovery.getCacheDirectory(), discovery.getAwaitTimeout(), discovery.getRetryInterval(),
+                jwkSetUrl -> new MeteredJWKSource(jwkSetUrl, properties.getJwkSet()), jwkSetMetrics);
+        jwtDecoder.start();
+        ResourceJwtProperties.Cache cache = properties.getCache();
+        if (cache.isEnabled()) {
+            return new CachingJwtDecoder(jwtDecoder, cache.getMaximumSize());
+        }
+        return jwtDecoder;
     }
 
     /*
@@ -120,8 +145,8 @@ public class SecurityConfig {
 //        }
 //
 //        @Bean
-//        public CustomizedAuthenticationFilter customizedAuthenticationFilter() {
-//            return new CustomizedAuthenticationFilter();
+//        public CustomizedAuthenticationFilter customizedAuthenticationFilter(JwtDecoder jwtDecoder) {
+//            return new CustomizedAuthenticationFilter(jwtAuthenticationConverter(), jwtDecoder);
 //        }
 //
 //        // 对JWT内容进行解析
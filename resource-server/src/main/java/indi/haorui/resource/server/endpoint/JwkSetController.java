@@ -0,0 +1,32 @@
+package indi.haorui.resource.server.endpoint;
+
+import indi.haorui.resource.server.jwt.JwkSetMetrics;
+import indi.haorui.resource.server.jwt.MeteredJWKSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * JWK set 的拉取耗时、缓存命中和 nimbus 事件计数，decoder 尚未就绪时返回 503
+ */
+@RestController
+@RequiredArgsConstructor
+public class JwkSetController {
+
+    private final JwkSetMetrics jwkSetMetrics;
+
+    @GetMapping("/api/v1/jwk-set/stats")
+    public ResponseEntity<MeteredJWKSource.Stats> stats() {
+        MeteredJWKSource.Stats stats = jwkSetMetrics.stats();
+        if (Objects.isNull(stats)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(stats);
+    }
+}
@@ -0,0 +1,98 @@
+package indi.haorui.resource.server.jwt;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 缓存验签通过的 jwt，key 为 token 的 sha256，缓存时间不超过 token 的 exp
+ * <p>
+ * 同一个 token 被反复使用时（例如网关的服务 token），只有第一次需要 RSA 验签，
+ * 之后每次命中仍然会校验 exp/nbf，过期的 token 不会因为缓存而通过
+ */
+public class CachingJwtDecoder implements JwtDecoder, AutoCloseable {
+
+    private final JwtDecoder delegate;
+
+    private final int maximumSize;
+
+    private final Map<String, Jwt> cache = new ConcurrentHashMap<>();
+
+    private final OAuth2TokenValidator<Jwt> timestampValidator = new JwtTimestampValidator();
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maximumSize) {
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = DigestUtil.sha256Hex(token);
+        Jwt jwt = cache.get(key);
+        if (Objects.nonNull(jwt) && jwt.getTokenValue().equals(token)) {
+            OAuth2TokenValidatorResult result = timestampValidator.validate(jwt);
+            if (!result.hasErrors()) {
+                return jwt;
+            }
+            cache.remove(key, jwt);
+            throw new JwtValidationException(description(result.getErrors()), result.getErrors());
+        }
+        jwt = delegate.decode(token);
+        // 没有 exp 的 token 不缓存
+        Instant expiresAt = jwt.getExpiresAt();
+        if (Objects.nonNull(expiresAt) && expiresAt.isAfter(Instant.now())) {
+            cache.put(key, jwt);
+            if (cache.size() > maximumSize) {
+                evict();
+            }
+        }
+        return jwt;
+    }
+
+    /**
+     * 作为 bean 返回时由 spring 调用，释放 delegate 持有的线程等资源
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    /**
+     * 先清理已过期的，仍然超出时按遍历顺序淘汰到 90%
+     */
+    private void evict() {
+        Instant now = Instant.now();
+        cache.values().removeIf(jwt -> !jwt.getExpiresAt().isAfter(now));
+        int target = maximumSize - maximumSize / 10;
+        Iterator<String> iterator = cache.keySet().iterator();
+        while (cache.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String description(Collection<OAuth2Error> errors) {
+        return errors.stream()
+                .map(OAuth2Error::getDescription)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse("Unable to validate Jwt");
+    }
+}
@@ -0,0 +1,27 @@
+package indi.haorui.resource.server.jwt;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 当前生效的 JWK source 的统计，{@link LazyJwtDecoder} 每次 jwks_uri 生效时更新
+ * <p>
+ * 作为单独的 bean 存在：JwtDecoder bean 可能被 {@link CachingJwtDecoder} 包装，从 decoder 上取不到统计
+ */
+public class JwkSetMetrics {
+
+    private volatile MeteredJWKSource jwkSource;
+
+    void bind(MeteredJWKSource jwkSource) {
+        this.jwkSource = jwkSource;
+    }
+
+    /**
+     * 拉取耗时和命中统计，decoder 尚未就绪时为 null
+     */
+    public MeteredJWKSource.Stats stats() {
+        MeteredJWKSource current = jwkSource;
+        return Objects.isNull(current) ? null : current.stats();
+    }
+}
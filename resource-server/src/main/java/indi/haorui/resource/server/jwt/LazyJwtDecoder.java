@@ -0,0 +1,332 @@
+package indi.haorui.resource.server.jwt;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 替代 {@code JwtDecoders.fromIssuerLocation}，后者在创建 bean 时同步做 OIDC discovery，
+ * 授权服务器不可用或很慢时资源服务器无法启动
+ * <p>
+ * 这里在后台线程中完成 discovery 和 JWK set 的首次拉取（JWK set 的缓存与刷新见 {@link MeteredJWKSource}），失败时按 retryInterval 重试；
+ * 在 keys 就绪之前，decode 最多等待 awaitTimeout，超时抛出 {@link JwtException}
+ * <p>
+ * discovery 文档会缓存到本地磁盘，重启时直接使用缓存中的 jwks_uri，跳过一次网络往返，
+ * 随后在后台重新 discovery 并刷新缓存；缓存中的 jwks_uri 与 issuer 不同源（scheme、host、port）时忽略缓存，
+ * 被改写的缓存文件不能让资源服务器信任其他地址上的 key
+ */
+@Slf4j
+public class LazyJwtDecoder implements JwtDecoder, AutoCloseable {
+
+    private static final String OIDC_METADATA_PATH = "/.well-known/openid-configuration";
+
+    private static final String OAUTH2_METADATA_PATH = "/.well-known/oauth-authorization-server";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String issuer;
+
+    private final Path cacheFile;
+
+    private final Duration awaitTimeout;
+
+    private final Duration retryInterval;
+
+    private final RestTemplate restTemplate;
+
+    private final Function<URL, MeteredJWKSource> jwkSourceFactory;
+
+    private final JwkSetMetrics jwkSetMetrics;
+
+    private final ScheduledExecutorService executor;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /*
+     * 第一个可用的 decoder，之后 jwks_uri 变化时替换 delegate
+     */
+    private final CompletableFuture<JwtDecoder> ready = new CompletableFuture<>();
+
+    private volatile JwtDecoder delegate;
+
+    private volatile String jwksUri;
+
+    private volatile MeteredJWKSource jwkSource;
+
+    public LazyJwtDecoder(String issuer, Path cacheDirectory, Duration awaitTimeout, Duration retryInterval,
+                          Function<URL, MeteredJWKSource> jwkSourceFactory, JwkSetMetrics jwkSetMetrics) {
+        this.issuer = issuer;
+        this.cacheFile = cacheDirectory.resolve("openid-configuration-" + DigestUtil.sha256Hex(issuer).substring(0, 16) + ".json");
+        this.awaitTimeout = awaitTimeout;
+        this.retryInterval = retryInterval;
+        this.jwkSourceFactory = jwkSourceFactory;
+        this.jwkSetMetrics = jwkSetMetrics;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) Duration.ofSeconds(2).toMillis());
+        requestFactory.setReadTimeout((int) Duration.ofSeconds(5).toMillis());
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwt-decoder-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 启动后台 discovery，可以重复调用；第一次 decode 时也会触发
+     */
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            executor.execute(() -> initialize(readCache()));
+        }
+    }
+
+    public boolean isReady() {
+        return Objects.nonNull(delegate);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        JwtDecoder jwtDecoder = delegate;
+        if (Objects.isNull(jwtDecoder)) {
+            start();
+            jwtDecoder = await();
+        }
+        return jwtDecoder.decode(token);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        closeQuietly(jwkSource);
+    }
+
+    private JwtDecoder await() {
+        try {
+            return ready.get(awaitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new JwtException("Signing keys of issuer " + issuer + " are not available yet");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JwtException("Interrupted while waiting for signing keys of issuer " + issuer);
+        } catch (ExecutionException e) {
+            throw new JwtException("Failed to initialize decoder for issuer " + issuer, e.getCause());
+        }
+    }
+
+    /**
+     * @param cached 磁盘上缓存的 discovery 文档，没有时为 null
+     */
+    private void initialize(Map<String, Object> cached) {
+        try {
+            Map<String, Object> metadata = Objects.nonNull(cached) ? cached : discover();
+            activate(metadata);
+            if (Objects.nonNull(cached)) {
+                // 用缓存启动后，再确认一次 discovery 文档是否有变化
+                executor.execute(this::refresh);
+            } else {
+                writeCache(metadata);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to initialize jwt decoder for issuer {}, retry in {}", issuer, retryInterval, e);
+            // 缓存的文档可能已经失效，重试时重新 discovery
+            executor.schedule(() -> initialize(null), retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refresh() {
+        try {
+            Map<String, Object> metadata = discover();
+            writeCache(metadata);
+            if (!Objects.equals(jwksUri, metadata.get("jwks_uri"))) {
+                activate(metadata);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh discovery document of issuer {}", issuer, e);
+        }
+    }
+
+    /**
+     * 构造 decoder 并预先拉取一次 JWK set，成功后才对外可用
+     */
+    private void activate(Map<String, Object> metadata) throws Exception {
+        Object metadataIssuer = metadata.get("issuer");
+        if (!issuer.equals(metadataIssuer)) {
+            throw new IllegalStateException("The issuer " + metadataIssuer + " in the discovery document does not match " + issuer);
+        }
+        String uri = (String) metadata.get("jwks_uri");
+        if (Objects.isNull(uri)) {
+            throw new IllegalStateException("The discovery document of issuer " + issuer + " does not contain jwks_uri");
+        }
+        MeteredJWKSource jwkSource = jwkSourceFactory.apply(new URL(uri));
+        try {
+            jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null);
+        } catch (Exception e) {
+            closeQuietly(jwkSource);
+            throw e;
+        }
+
+        DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        // 授权服务器可以按 client 使用 RS256 或 ES256 签名
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
+                Set.of(JWSAlgorithm.RS256, JWSAlgorithm.ES256), jwkSource));
+        // exp/nbf/iss 由 spring 的 validator 校验
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        NimbusJwtDecoder jwtDecoder = new NimbusJwtDecoder(jwtProcessor);
+        jwtDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+
+        MeteredJWKSource previous = this.jwkSource;
+        this.jwksUri = uri;
+        this.jwkSource = jwkSource;
+        this.delegate = jwtDecoder;
+        jwkSetMetrics.bind(jwkSource);
+        // 停掉旧 source 的后台刷新
+        closeQuietly(previous);
+        ready.complete(jwtDecoder);
+        log.info("Jwt decoder for issuer {} is ready, jwks_uri {}", issuer, uri);
+    }
+
+    /**
+     * 与 JwtDecoderProviderConfigurationUtils 一样，先尝试 OIDC，再尝试 RFC 8414
+     */
+    private Map<String, Object> discover() {
+        RestClientException failure = null;
+        for (String path : new String[]{OIDC_METADATA_PATH, OAUTH2_METADATA_PATH}) {
+            URI uri = URI.create(StrUtil.removeSuffix(issuer, "/") + path);
+            try {
+                Map<String, Object> metadata = restTemplate.exchange(uri, HttpMethod.GET, null,
+                        new ParameterizedTypeReference<Map<String, Object>>() {
+                        }).getBody();
+                if (Objects.nonNull(metadata)) {
+                    return metadata;
+                }
+            } catch (RestClientException e) {
+                failure = e;
+            }
+        }
+        throw new IllegalStateException("Unable to resolve the configuration with the provided issuer " + issuer, failure);
+    }
+
+    private Map<String, Object> readCache() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try {
+            Map<String, Object> metadata = MAPPER.readValue(cacheFile.toFile(), new TypeReference<>() {
+            });
+            Object uri = metadata.get("jwks_uri");
+            if (!isIssuerOrigin(uri)) {
+                log.warn("Ignore discovery cache {}, jwks_uri {} is not on the origin of issuer {}", cacheFile, uri, issuer);
+                return null;
+            }
+            return metadata;
+        } catch (IOException e) {
+            log.warn("Ignore unreadable discovery cache {}", cacheFile, e);
+            return null;
+        }
+    }
+
+    private boolean isIssuerOrigin(Object jwksUri) {
+        if (!(jwksUri instanceof String uri)) {
+            return false;
+        }
+        try {
+            URI expected = URI.create(issuer);
+            URI actual = URI.create(uri);
+            return StrUtil.equalsIgnoreCase(expected.getScheme(), actual.getScheme())
+                    && StrUtil.equalsIgnoreCase(expected.getHost(), actual.getHost())
+                    && port(expected) == port(actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static int port(URI uri) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+    }
+
+    /**
+     * 先写临时文件再 move，避免多个实例共用目录时读到写了一半的文件；
+     * 临时文件创建时就只有当前用户可以读写，move 后保持不变
+     */
+    private void writeCache(Map<String, Object> metadata) {
+        try {
+            createCacheDirectory();
+            Path temp = Files.createTempFile(cacheFile.getParent(), "openid-configuration", ".tmp");
+            MAPPER.writeValue(temp.toFile(), metadata);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write discovery cache {}", cacheFile, e);
+        }
+    }
+
+    /**
+     * 目录只允许当前用户访问，不支持 POSIX 权限的文件系统上按默认权限创建
+     */
+    private void createCacheDirectory() throws IOException {
+        Path directory = cacheFile.getParent();
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private static void closeQuietly(MeteredJWKSource jwkSource) {
+        if (Objects.isNull(jwkSource)) {
+            return;
+        }
+        try {
+            jwkSource.close();
+        } catch (IOException e) {
+            log.warn("Failed to close JWK source", e);
+        }
+    }
+}
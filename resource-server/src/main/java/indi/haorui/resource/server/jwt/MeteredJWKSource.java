@@ -0,0 +1,173 @@
+package indi.haorui.resource.server.jwt;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.jwk.source.RateLimitReachedException;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.Resource;
+import com.nimbusds.jose.util.ResourceRetriever;
+import com.nimbusds.jose.util.events.Event;
+import com.nimbusds.jose.util.events.EventListener;
+import indi.haorui.resource.server.properties.ResourceJwtProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 资源服务器使用的 JWK source，由 {@link JWKSourceBuilder} 组装：
+ * <ul>
+ *     <li>refresh-ahead：缓存过期前 refreshAhead 时间在后台刷新，轮换 kid 时请求不会阻塞在拉取上</li>
+ *     <li>未知 kid：CachingJWKSetSource 在锁内比较缓存的 JWK set，并发的未命中只会触发一次拉取</li>
+ *     <li>rate limit：两次拉取之间至少间隔 rateLimit，超出时按未找到 key 处理（401），不会打到授权服务器</li>
+ * </ul>
+ * 同时统计拉取耗时、命中情况和 nimbus 的各类事件，通过 {@link #stats()} 获取，当前生效的 source 的统计见 {@link JwkSetMetrics}
+ */
+@Slf4j
+public class MeteredJWKSource implements JWKSource<SecurityContext>, Closeable {
+
+    /*
+     * 当前线程的 get 过程中是否发生了同步拉取，后台刷新的拉取不计入 miss
+     */
+    private static final ThreadLocal<boolean[]> FETCHED = ThreadLocal.withInitial(() -> new boolean[1]);
+
+    private final URL jwkSetUrl;
+
+    private final JWKSource<SecurityContext> delegate;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder notFound = new LongAdder();
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    private final LongAdder fetches = new LongAdder();
+
+    private final LongAdder fetchFailures = new LongAdder();
+
+    private final LongAdder fetchNanos = new LongAdder();
+
+    private final LongAccumulator fetchMaxNanos = new LongAccumulator(Math::max, 0);
+
+    private final Map<String, LongAdder> events = new ConcurrentHashMap<>();
+
+    public MeteredJWKSource(URL jwkSetUrl, ResourceJwtProperties.JwkSet properties) {
+        this.jwkSetUrl = jwkSetUrl;
+        ResourceRetriever retriever = new MeteredResourceRetriever(new DefaultResourceRetriever(
+                (int) properties.getConnectTimeout().toMillis(),
+                (int) properties.getReadTimeout().toMillis(),
+                properties.getSizeLimit()));
+        this.delegate = JWKSourceBuilder.<SecurityContext>create(jwkSetUrl, retriever)
+                .cache(properties.getTtl().toMillis(), properties.getRefreshTimeout().toMillis(), this::onEvent)
+                .refreshAheadCache(properties.getRefreshAhead().toMillis(), true, this::onEvent)
+                .rateLimited(properties.getRateLimit().toMillis(), this::onEvent)
+                .build();
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        boolean[] fetched = FETCHED.get();
+        fetched[0] = false;
+        try {
+            List<JWK> keys = delegate.get(jwkSelector, context);
+            if (keys.isEmpty()) {
+                notFound.increment();
+            } else if (fetched[0]) {
+                misses.increment();
+            } else {
+                hits.increment();
+            }
+            return keys;
+        } catch (RateLimitReachedException e) {
+            // 大量未知 kid 的 token 被限流时当作找不到 key，由 NimbusJwtDecoder 返回 invalid_token
+            rateLimited.increment();
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    public Stats stats() {
+        long count = fetches.sum();
+        return new Stats(hits.sum(), misses.sum(), notFound.sum(), rateLimited.sum(), count, fetchFailures.sum(),
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(fetchNanos.sum() / count),
+                TimeUnit.NANOSECONDS.toMillis(fetchMaxNanos.get()),
+                events());
+    }
+
+    private Map<String, Long> events() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        events.forEach((name, adder) -> snapshot.put(name, adder.sum()));
+        return snapshot;
+    }
+
+    /**
+     * 按事件类名计数，例如 RefreshInitiatedEvent、RefreshCompletedEvent、RateLimitedEvent
+     */
+    private <S> void onEvent(Event<S, SecurityContext> event) {
+        String name = event.getClass().getSimpleName();
+        events.computeIfAbsent(name, key -> new LongAdder()).increment();
+        log.debug("JWK set {} event {}", jwkSetUrl, name);
+    }
+
+    /**
+     * @param hits          缓存命中
+     * @param misses        当前请求线程同步拉取后才得到 key
+     * @param notFound      拉取后仍然找不到匹配的 key（未知 kid）
+     * @param rateLimited   因限流未拉取
+     * @param fetchAvgMillis 拉取 JWK set 的平均耗时
+     */
+    public record Stats(long hits, long misses, long notFound, long rateLimited,
+                        long fetches, long fetchFailures, long fetchAvgMillis, long fetchMaxMillis,
+                        Map<String, Long> events) {
+    }
+
+    private class MeteredResourceRetriever implements ResourceRetriever {
+
+        private final ResourceRetriever delegate;
+
+        MeteredResourceRetriever(ResourceRetriever delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Resource retrieveResource(URL url) throws IOException {
+            FETCHED.get()[0] = true;
+            long start = System.nanoTime();
+            try {
+                return delegate.retrieveResource(url);
+            } catch (IOException e) {
+                fetchFailures.increment();
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                fetches.increment();
+                fetchNanos.add(elapsed);
+                fetchMaxNanos.accumulate(elapsed);
+                log.debug("Fetched JWK set {} in {} ms", url, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        }
+    }
+}
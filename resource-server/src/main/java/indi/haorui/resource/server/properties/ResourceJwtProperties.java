@@ -0,0 +1,87 @@
+package indi.haorui.resource.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 资源服务器 jwt 解析相关配置
+ */
+@Data
+@ConfigurationProperties(prefix = "resource.jwt")
+public class ResourceJwtProperties {
+
+    private Cache cache = new Cache();
+
+    private Discovery discovery = new Discovery();
+
+    private JwkSet jwkSet = new JwkSet();
+
+    /**
+     * 已验签的 jwt 缓存，命中时只校验 exp/nbf，不再做 RSA 验签
+     */
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        private int maximumSize = 10_000;
+    }
+
+    /**
+     * issuer 的 discovery 在后台完成，不阻塞启动
+     */
+    @Data
+    public static class Discovery {
+
+        /**
+         * discovery 文档的本地缓存目录，重启时跳过一次 discovery；
+         * 默认在工作目录下，不放在多个用户共用的 java.io.tmpdir，目录不存在时按只有当前用户可以访问的权限创建
+         */
+        private Path cacheDirectory = Path.of("data", "resource-server");
+
+        /**
+         * keys 就绪之前，请求最多等待的时间
+         */
+        private Duration awaitTimeout = Duration.ofSeconds(3);
+
+        /**
+         * discovery 或拉取 JWK set 失败后的重试间隔
+         */
+        private Duration retryInterval = Duration.ofSeconds(5);
+    }
+
+    /**
+     * 授权服务器 JWK set 的缓存与刷新，refreshAhead + refreshTimeout 需要小于 ttl
+     */
+    @Data
+    public static class JwkSet {
+
+        private Duration ttl = Duration.ofMinutes(5);
+
+        /**
+         * 缓存过期前多久开始后台刷新
+         */
+        private Duration refreshAhead = Duration.ofSeconds(30);
+
+        /**
+         * 同步刷新时其他线程等待的最长时间
+         */
+        private Duration refreshTimeout = Duration.ofSeconds(15);
+
+        /**
+         * 两次拉取之间的最小间隔，防止未知 kid 的 token 引起频繁拉取
+         */
+        private Duration rateLimit = Duration.ofSeconds(30);
+
+        private Duration connectTimeout = Duration.ofMillis(500);
+
+        private Duration readTimeout = Duration.ofMillis(500);
+
+        private int sizeLimit = 50 * 1024;
+    }
+}
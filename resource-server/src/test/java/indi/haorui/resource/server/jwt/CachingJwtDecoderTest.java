@@ -0,0 +1,107 @@
+package indi.haorui.resource.server.jwt;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class CachingJwtDecoderTest {
+
+    /**
+     * 记录每个 token 的 decode 次数，"bad" 开头的 token 验签失败，"no-exp" 开头的没有 exp
+     */
+    private static class CountingJwtDecoder implements JwtDecoder, AutoCloseable {
+
+        private final Map<String, AtomicInteger> decoded = new ConcurrentHashMap<>();
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public Jwt decode(String token) {
+            decoded.computeIfAbsent(token, key -> new AtomicInteger()).incrementAndGet();
+            if (token.startsWith("bad")) {
+                throw new BadJwtException("invalid signature");
+            }
+            Instant now = Instant.now();
+            Jwt.Builder builder = Jwt.withTokenValue(token)
+                    .header("alg", "RS256")
+                    .subject("client")
+                    .issuedAt(now);
+            if (!token.startsWith("no-exp")) {
+                builder.expiresAt(now.plusSeconds(300));
+            }
+            return builder.build();
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+
+        int count(String token) {
+            AtomicInteger count = decoded.get(token);
+            return count == null ? 0 : count.get();
+        }
+
+        int total() {
+            return decoded.values().stream().mapToInt(AtomicInteger::get).sum();
+        }
+    }
+
+    private final CountingJwtDecoder delegate = new CountingJwtDecoder();
+
+    // 同一个 token 只验签一次
+    @Test
+    void hit() {
+        CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(delegate, 100);
+        Jwt first = jwtDecoder.decode("token");
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertSame(first, jwtDecoder.decode("token"));
+        }
+        Assertions.assertEquals(1, delegate.count("token"));
+        jwtDecoder.decode("other-token");
+        Assertions.assertEquals(1, delegate.count("other-token"));
+    }
+
+    // 没有 exp 或者验签失败的 token 不缓存
+    @Test
+    void not_cached() {
+        CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(delegate, 100);
+        jwtDecoder.decode("no-exp");
+        jwtDecoder.decode("no-exp");
+        Assertions.assertEquals(2, delegate.count("no-exp"));
+
+        Assertions.assertThrows(BadJwtException.class, () -> jwtDecoder.decode("bad"));
+        Assertions.assertThrows(BadJwtException.class, () -> jwtDecoder.decode("bad"));
+        Assertions.assertEquals(2, delegate.count("bad"));
+    }
+
+    // 超出 maximumSize 时淘汰到 90%，被淘汰的 token 重新验签
+    @Test
+    void bounded() {
+        CachingJwtDecoder jwtDecoder = new CachingJwtDecoder(delegate, 10);
+        for (int i = 0; i <= 10; i++) {
+            jwtDecoder.decode("token-" + i);
+        }
+        for (int i = 0; i <= 10; i++) {
+            jwtDecoder.decode("token-" + i);
+        }
+        Assertions.assertTrue(delegate.total() > 11, "decoded " + delegate.total());
+    }
+
+    @Test
+    void close_delegate() throws Exception {
+        new CachingJwtDecoder(delegate, 10).close();
+        Assertions.assertTrue(delegate.closed.get());
+    }
+}
@@ -0,0 +1,189 @@
+package indi.haorui.resource.server.jwt;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import indi.haorui.resource.server.properties.ResourceJwtProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class LazyJwtDecoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AtomicInteger discoveries = new AtomicInteger();
+
+    /*
+     * 为 false 时 discovery 返回 503，模拟授权服务器不可用
+     */
+    private final AtomicBoolean available = new AtomicBoolean(true);
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+
+    private RSAKey key;
+
+    private String issuer;
+
+    @BeforeEach
+    void start() throws Exception {
+        key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        issuer = "http://127.0.0.1:" + server.getAddress().getPort();
+        byte[] jwks = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        byte[] metadata = MAPPER.writeValueAsBytes(metadata(issuer + "/oauth2/jwks"));
+        server.createContext("/.well-known/openid-configuration", exchange -> {
+            discoveries.incrementAndGet();
+            if (!available.get()) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, metadata.length);
+            exchange.getResponseBody().write(metadata);
+            exchange.close();
+        });
+        server.createContext("/oauth2/jwks", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, jwks.length);
+            exchange.getResponseBody().write(jwks);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private Map<String, Object> metadata(String jwksUri) {
+        return Map.of("issuer", issuer, "jwks_uri", jwksUri);
+    }
+
+    private LazyJwtDecoder jwtDecoder(JwkSetMetrics jwkSetMetrics, Duration awaitTimeout) {
+        ResourceJwtProperties.JwkSet properties = new ResourceJwtProperties.JwkSet();
+        properties.setConnectTimeout(Duration.ofSeconds(2));
+        properties.setReadTimeout(Duration.ofSeconds(2));
+        return new LazyJwtDecoder(issuer, directory, awaitTimeout, Duration.ofMillis(200),
+                jwkSetUrl -> new MeteredJWKSource(jwkSetUrl, properties), jwkSetMetrics);
+    }
+
+    private Path cacheFile() {
+        return directory.resolve("openid-configuration-" + DigestUtil.sha256Hex(issuer).substring(0, 16) + ".json");
+    }
+
+    private String token() throws Exception {
+        Instant now = Instant.now();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .issuer(issuer)
+                        .subject("client")
+                        .issueTime(Date.from(now))
+                        .expirationTime(Date.from(now.plusSeconds(300)))
+                        .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assertions.assertTrue(condition.getAsBoolean());
+    }
+
+    // 第一次 decode 等待后台 discovery 完成，之后写入本地缓存并绑定统计
+    @Test
+    void discover_on_first_decode() throws Exception {
+        JwkSetMetrics jwkSetMetrics = new JwkSetMetrics();
+        try (LazyJwtDecoder jwtDecoder = jwtDecoder(jwkSetMetrics, Duration.ofSeconds(5))) {
+            Assertions.assertFalse(jwtDecoder.isReady());
+            Assertions.assertNull(jwkSetMetrics.stats());
+
+            Jwt jwt = jwtDecoder.decode(token());
+            Assertions.assertEquals("client", jwt.getSubject());
+            Assertions.assertTrue(jwtDecoder.isReady());
+            Assertions.assertNotNull(jwkSetMetrics.stats());
+            Assertions.assertEquals(1, discoveries.get());
+            // decoder 就绪后才写缓存
+            await(() -> cachedJwksUri().equals(issuer + "/oauth2/jwks"));
+        }
+    }
+
+    // 授权服务器不可用时 decode 等待 awaitTimeout 后失败，恢复后自动重试成功
+    @Test
+    void unavailable_issuer() throws Exception {
+        available.set(false);
+        try (LazyJwtDecoder jwtDecoder = jwtDecoder(new JwkSetMetrics(), Duration.ofMillis(300))) {
+            String token = token();
+            Assertions.assertThrows(JwtException.class, () -> jwtDecoder.decode(token));
+            Assertions.assertFalse(jwtDecoder.isReady());
+
+            available.set(true);
+            await(jwtDecoder::isReady);
+            Assertions.assertEquals("client", jwtDecoder.decode(token).getSubject());
+        }
+    }
+
+    // 缓存中的 jwks_uri 可用时，discovery 失败也能启动
+    @Test
+    void start_from_cache() throws Exception {
+        MAPPER.writeValue(cacheFile().toFile(), metadata(issuer + "/oauth2/jwks"));
+        available.set(false);
+        try (LazyJwtDecoder jwtDecoder = jwtDecoder(new JwkSetMetrics(), Duration.ofSeconds(5))) {
+            Assertions.assertEquals("client", jwtDecoder.decode(token()).getSubject());
+        }
+    }
+
+    // 缓存中的 jwks_uri 与 issuer 不同源时忽略缓存，重新 discovery 并覆盖
+    @Test
+    void ignore_foreign_jwks_uri() throws Exception {
+        MAPPER.writeValue(cacheFile().toFile(), metadata("http://attacker.example/oauth2/jwks"));
+        try (LazyJwtDecoder jwtDecoder = jwtDecoder(new JwkSetMetrics(), Duration.ofSeconds(5))) {
+            Assertions.assertEquals("client", jwtDecoder.decode(token()).getSubject());
+            Assertions.assertEquals(1, discoveries.get());
+            await(() -> cachedJwksUri().equals(issuer + "/oauth2/jwks"));
+        }
+    }
+
+    private Object cachedJwksUri() {
+        try {
+            return MAPPER.readValue(cacheFile().toFile(), Map.class).get("jwks_uri");
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package indi.haorui.resource.server.jwt;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.sun.net.httpserver.HttpServer;
+import indi.haorui.resource.server.properties.ResourceJwtProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class MeteredJWKSourceTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer server;
+
+    private RSAKey key;
+
+    @BeforeEach
+    void start() throws Exception {
+        key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+        byte[] body = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/oauth2/jwks", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private MeteredJWKSource jwkSource() throws Exception {
+        ResourceJwtProperties.JwkSet properties = new ResourceJwtProperties.JwkSet();
+        properties.setConnectTimeout(Duration.ofSeconds(2));
+        properties.setReadTimeout(Duration.ofSeconds(2));
+        return new MeteredJWKSource(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/oauth2/jwks"), properties);
+    }
+
+    private static JWKSelector kid(String kid) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(kid).build());
+    }
+
+    // 第一次 get 同步拉取，之后命中缓存
+    @Test
+    void miss_then_hit() throws Exception {
+        try (MeteredJWKSource jwkSource = jwkSource()) {
+            List<JWK> keys = jwkSource.get(kid("key-1"), null);
+            Assertions.assertEquals(List.of(key.toPublicJWK()), keys);
+            for (int i = 0; i < 10; i++) {
+                Assertions.assertEquals(1, jwkSource.get(kid("key-1"), null).size());
+            }
+
+            MeteredJWKSource.Stats stats = jwkSource.stats();
+            Assertions.assertEquals(1, stats.misses());
+            Assertions.assertEquals(10, stats.hits());
+            Assertions.assertEquals(1, stats.fetches());
+            Assertions.assertEquals(0, stats.fetchFailures());
+            Assertions.assertEquals(1, requests.get());
+            Assertions.assertFalse(stats.events().isEmpty());
+        }
+    }
+
+    // 大量未知 kid 时受 rateLimit 限制，不会每次都请求授权服务器
+    @Test
+    void unknown_kid_rate_limited() throws Exception {
+        try (MeteredJWKSource jwkSource = jwkSource()) {
+            jwkSource.get(kid("key-1"), null);
+            for (int i = 0; i < 20; i++) {
+                Assertions.assertTrue(jwkSource.get(kid("unknown-" + i), null).isEmpty());
+            }
+
+            MeteredJWKSource.Stats stats = jwkSource.stats();
+            Assertions.assertTrue(requests.get() <= 3, "requests " + requests.get());
+            Assertions.assertEquals(requests.get(), stats.fetches());
+            Assertions.assertEquals(20, stats.notFound() + stats.rateLimited());
+            Assertions.assertTrue(stats.rateLimited() > 0);
+        }
+    }
+
+    // 拉取失败计入 fetchFailures
+    @Test
+    void fetch_failure() throws Exception {
+        server.removeContext("/oauth2/jwks");
+        try (MeteredJWKSource jwkSource = jwkSource()) {
+            Assertions.assertThrows(Exception.class, () -> jwkSource.get(kid("key-1"), null));
+            MeteredJWKSource.Stats stats = jwkSource.stats();
+            Assertions.assertEquals(1, stats.fetchFailures());
+            Assertions.assertEquals(0, stats.hits());
+        }
+    }
+}
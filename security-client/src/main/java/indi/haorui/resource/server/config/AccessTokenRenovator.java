@@ -1,76 +1,109 @@
 package indi.haorui.resource.server.config;
 
+import lombok.AccessLevel;
 import lombok.Getter;
-import lombok.Setter;
+import indi.haorui.resource.server.properties.TokenRefreshProperties;
 import lombok.extern.slf4j.Slf4j;
-import org.quartz.*;
-import org.quartz.impl.StdSchedulerFactory;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 /**
  * Created by Yang Hao.rui on 2024/5/29
  * <p>
- * Token刷新器， 将Token有效时长的3/4作为刷新时间
+ * Token刷新器，刷新时间由 {@link TokenRefreshProperties} 决定：默认在有效时长的 3/4 附近随机提前刷新，
+ * 失败时指数退避重试，重试期间 {@link #get} 继续返回未过期的旧 token；刷新拿到的还是当前的 token（值和过期时间都相同）时同样按失败处理
+ * <p>
+ * 所有 registration 共用一个单线程的 ScheduledExecutorService，每次刷新完成后按新 token 的有效时长安排下一次刷新；
+ * 调度线程在第一次 register 时创建，spring 容器关闭时由 {@link AccessTokenRenovatorLifecycle} 调用 {@link #shutdown()} 停止
+ * <p>
+ * 设置了 {@link AccessTokenStore} 时，创建任务先使用其中仍然有效的 token，不请求授权服务器，每次获取或刷新成功后写入，
+ * 重启后的实例在 token 到期前不会集中请求 token
  */
 @Slf4j
 @Getter
 public class AccessTokenRenovator {
 
-    private static final Scheduler SCHEDULER;
-
+    /*
+     * 锁内会发起获取 token 的 HTTP 请求，用 ReentrantLock 而不是 synchronized，虚拟线程在这里等待时不会占住载体线程
+     */
     private static final Map<String, ReentrantLock> LOCK_MAP = new ConcurrentHashMap<>();
 
+    private static final Map<String, AccessTokenRenovator> RENOVATOR_MAP = new ConcurrentHashMap<>();
+
+    private static final ReentrantLock SCHEDULER_LOCK = new ReentrantLock();
+
+    private static volatile ScheduledExecutorService scheduler;
+
     /*
-     * 通过静态代码块初始化调度器
+     * 没有过期时间的 token 的刷新间隔
      */
-    static {
-        try {
-            SCHEDULER = StdSchedulerFactory.getDefaultScheduler();
-            SCHEDULER.start();
-        } catch (SchedulerException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    private static final long NO_EXPIRY_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(5);
 
-    private static final Map<String, AccessTokenRenovator> RENOVATOR_MAP = new ConcurrentHashMap<>();
+    private static final long MIN_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(1);
 
+    private static volatile TokenRefreshProperties refreshProperties = new TokenRefreshProperties();
+
+    private static volatile AccessTokenStore tokenStore;
 
     private final Function<String, OAuth2AccessToken> execute;
 
-    @Setter
-    private OAuth2AccessToken accessToken;
+    /*
+     * token 与预先拼好的 Authorization header 一起整体替换，读取方只需要一次 volatile 读
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile Current current = Current.EMPTY;
 
-    @Setter
-    private int interval;
+    /*
+     * 连续失败的次数，只在构造和调度线程中修改
+     */
+    private int failures;
 
     private final String registrationId;
 
+    @Getter(AccessLevel.NONE)
+    private volatile ScheduledFuture<?> task;
+
     private OAuth2AccessToken getAccessToken() {
-        if (Objects.nonNull(accessToken) && Objects.nonNull(accessToken.getExpiresAt())
-                && accessToken.getExpiresAt().isAfter(Instant.now())) {
-            return accessToken;
-        }
-        return null;
+        Current current = this.current;
+        return current.isActive(System.currentTimeMillis()) ? current.accessToken() : null;
+    }
+
+    public void setAccessToken(OAuth2AccessToken accessToken) {
+        this.current = Current.of(accessToken);
     }
 
 
     private AccessTokenRenovator(String registrationId, Function<String, OAuth2AccessToken> execute) {
         this.registrationId = registrationId;
         this.execute = execute;
-        this.accessToken = execute.apply(registrationId);
+        OAuth2AccessToken accessToken = restore(registrationId);
         if (Objects.isNull(accessToken)) {
-            log.error("Failed to renovate {} token, retry later", registrationId);
+            accessToken = execute.apply(registrationId);
+            persist(registrationId, accessToken);
         }
-        this.interval = interval();
-        newJob();
+        setAccessToken(accessToken);
+        long delay;
+        if (Objects.isNull(accessToken)) {
+            failures = 1;
+            delay = backoff(failures);
+            log.error("Failed to renovate {} token, retry in {} ms", registrationId, delay);
+        } else {
+            delay = refreshDelay(accessToken);
+        }
+        schedule(scheduler(), delay);
         RENOVATOR_MAP.put(registrationId, this);
     }
     /**
@@ -96,6 +129,10 @@ public class AccessTokenRenovator {
             if (Objects.nonNull(accessTokenRenovator) && Objects.nonNull(accessTokenRenovator.getAccessToken())) {
                 return accessTokenRenovator.getAccessToken();
             }
+            // 已有的任务拿不到有效 token，取消后重新创建
+            if (Objects.nonNull(accessTokenRenovator)) {
+                accessTokenRenovator.cancel();
+            }
             // 创建一个新的任务，并返回token（在创建任务时会去获取token）
             accessTokenRenovator = new AccessTokenRenovator(registrationId, execute);
             return accessTokenRenovator.getAccessToken();
@@ -109,110 +146,239 @@ public class AccessTokenRenovator {
         if (Objects.isNull(accessTokenRenovator)) {
             return null;
         }
-        OAuth2AccessToken accessToken = accessTokenRenovator.getAccessToken();
-        if (Objects.nonNull(accessToken) && Objects.nonNull(accessToken.getExpiresAt())
-                && accessToken.getExpiresAt().isAfter(Instant.now())) {
-            return accessToken;
+        return accessTokenRenovator.getAccessToken();
+    }
+
+    /**
+     * 未过期 token 的 Authorization header（"Bearer xxx"），刷新时与 token 一起替换，
+     * 调用时只有一次 map 查找和一次 volatile 读，不分配对象
+     *
+     * @return 没有注册或者 token 已过期时返回 null
+     */
+    public static String authorizationHeader(String registrationId) {
+        AccessTokenRenovator accessTokenRenovator = RENOVATOR_MAP.get(registrationId);
+        if (Objects.isNull(accessTokenRenovator)) {
+            return null;
         }
-        return null;
+        Current current = accessTokenRenovator.current;
+        return current.isActive(System.currentTimeMillis()) ? current.authorizationHeader() : null;
+    }
+
+    /**
+     * 创建调度线程，已经创建时不做任何操作；register 时也会自动创建
+     */
+    public static void start() {
+        scheduler();
     }
 
     /**
-     * 创建一个新的任务
-     */
-    private void newJob() {
-        SimpleScheduleBuilder rule = SimpleScheduleBuilder.simpleSchedule()
-                .withIntervalInSeconds(interval)
-                .repeatForever();
-        JobKey jobKey = jobKey(registrationId);
-        JobDetail build = JobBuilder.newJob(Looper.class).withIdentity(jobKey).build();
-        SimpleTrigger simpleTrigger = TriggerBuilder.newTrigger()
-                .withIdentity("trigger@" + registrationId)
-                .withSchedule(rule)
-                .startAt(DateBuilder.futureDate(interval, DateBuilder.IntervalUnit.SECOND))
-                .build();
+     * 取消所有刷新任务并停止调度线程，已经获取的 token 在过期前仍然可以通过 {@link #get} 取到，
+     * 之后再 register 会重新创建调度线程
+     */
+    public static void shutdown() {
+        SCHEDULER_LOCK.lock();
         try {
-            /*
-             * 如果任务已经存在，删除任务
-             */
-            deleteJob(registrationId);
-            SCHEDULER.scheduleJob(build, simpleTrigger);
-        } catch (SchedulerException e) {
-            log.error("Failed to create a new token job", e);
+            if (Objects.nonNull(scheduler)) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+            RENOVATOR_MAP.values().forEach(AccessTokenRenovator::cancel);
+        } finally {
+            SCHEDULER_LOCK.unlock();
         }
     }
 
-    private static JobKey jobKey(String identity) {
-        return JobKey.jobKey(identity);
+    /**
+     * 之后安排的刷新使用新的策略
+     */
+    public static void setRefreshProperties(TokenRefreshProperties properties) {
+        properties.validate();
+        refreshProperties = properties;
     }
 
+    /**
+     * 之后创建的任务从 tokenStore 恢复 token，获取或刷新成功后写入；null 表示不持久化
+     */
+    public static void setTokenStore(AccessTokenStore store) {
+        tokenStore = store;
+    }
+
+    public static boolean isRunning() {
+        return Objects.nonNull(scheduler);
+    }
+
+    private static ScheduledExecutorService scheduler() {
+        ScheduledExecutorService current = scheduler;
+        if (Objects.nonNull(current)) {
+            return current;
+        }
+        SCHEDULER_LOCK.lock();
+        try {
+            if (Objects.isNull(scheduler)) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    Thread thread = new Thread(runnable, "token-renovator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                // 取消的任务立即从队列中移除，不等到触发时间
+                executor.setRemoveOnCancelPolicy(true);
+                scheduler = executor;
+            }
+            return scheduler;
+        } finally {
+            SCHEDULER_LOCK.unlock();
+        }
+    }
 
     /**
-     * 根据token的过期时间计算刷新时间  过期时间的四分之三
-     * 默认 5 分钟
-     * <p> 如果token为null, 则返回 10秒钟
-     *
-     * @return token 刷新时间 单位: s
+     * 在 delay 毫秒后刷新一次，刷新完成后再安排下一次
      */
-    private int interval() {
-        if (Objects.isNull(accessToken)) {
-            return 10 * 60;
+    private void schedule(ScheduledExecutorService executor, long delay) {
+        try {
+            this.task = executor.schedule(this::renovate, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 调度线程已经停止
+            log.warn("Token renovator is shut down, {} will not be refreshed", registrationId);
         }
+    }
+
+    private void cancel() {
+        ScheduledFuture<?> current = task;
+        if (Objects.nonNull(current)) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * 距离下一次刷新的时间：issuedAt + 有效时长 * (earlyRefreshRatio - random * jitterRatio)，至少 1 秒
+     * <p>
+     * 没有 issuedAt 或 expiresAt 时为 5 小时
+     *
+     * @return 毫秒
+     */
+    static long refreshDelay(OAuth2AccessToken accessToken) {
         Instant issuedAt = accessToken.getIssuedAt();
         Instant expiresAt = accessToken.getExpiresAt();
-        if (Objects.nonNull(expiresAt) && Objects.nonNull(issuedAt)) {
-            long until = issuedAt.until(expiresAt, ChronoUnit.SECONDS);
-            return (int) (until * 3 / 4);
+        if (Objects.isNull(issuedAt) || Objects.isNull(expiresAt)) {
+            return NO_EXPIRY_INTERVAL_MILLIS;
         }
-        return 5 * 60 * 60;
+        TokenRefreshProperties properties = refreshProperties;
+        long lifetime = Duration.between(issuedAt, expiresAt).toMillis();
+        double ratio = properties.getEarlyRefreshRatio() - ThreadLocalRandom.current().nextDouble() * properties.getJitterRatio();
+        long refreshAt = issuedAt.toEpochMilli() + (long) (lifetime * ratio);
+        return Math.max(MIN_DELAY_MILLIS, refreshAt - System.currentTimeMillis());
+    }
+
+    /**
+     * 第 failures 次失败后的重试间隔：initialBackoff * 2^(failures-1)，不超过 maxBackoff，
+     * 再在 [一半, 全部] 之间随机，避免所有实例同时重试
+     *
+     * @return 毫秒
+     */
+    static long backoff(int failures) {
+        TokenRefreshProperties properties = refreshProperties;
+        long max = properties.getMaxBackoff().toMillis();
+        long backoff = properties.getInitialBackoff().toMillis() << Math.min(failures - 1, 30);
+        backoff = backoff <= 0 ? max : Math.min(max, backoff);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
     }
 
-    private static void deleteJob(String registrationId) {
+    /**
+     * 更新OAuth2AccessToken，成功后按新 token 的有效时长安排下一次刷新
+     * <p>
+     * 刷新失败时保留当前 token（过期前 {@link #get} 仍然返回它），按指数退避重试；
+     * 返回的还是当前 token（例如获取方法自己缓存了 token）也按失败处理，否则下一次刷新时间已过，会每秒重复刷新
+     */
+    private void renovate() {
+        if (RENOVATOR_MAP.get(registrationId) != this) {
+            return;
+        }
+        long delay;
         try {
-            JobKey jobKey = jobKey(registrationId);
-            if (SCHEDULER.checkExists(jobKey)) {
-                SCHEDULER.deleteJob(jobKey);
+            OAuth2AccessToken newAccessToken = execute.apply(registrationId);
+            if (Objects.nonNull(newAccessToken) && isCurrent(newAccessToken)) {
+                delay = backoff(++failures);
+                log.warn("Renovated {} token is unchanged, retry in {} ms", registrationId, delay);
+            } else if (Objects.nonNull(newAccessToken)) {
+                setAccessToken(newAccessToken);
+                persist(registrationId, newAccessToken);
+                failures = 0;
+                delay = refreshDelay(newAccessToken);
+            } else {
+                delay = backoff(++failures);
+                log.error("Failed to renovate {} token, retry in {} ms", registrationId, delay);
             }
-        } catch (SchedulerException e) {
-            log.error("Failed to delete job", e);
+        } catch (Exception e) {
+            delay = backoff(++failures);
+            log.error("Failed to renovate {} token, retry in {} ms", registrationId, delay, e);
+        }
+        // shutdown 之后不再安排，也不重新创建调度线程
+        ScheduledExecutorService current = scheduler;
+        if (Objects.nonNull(current)) {
+            schedule(current, delay);
         }
     }
 
     /**
-     * 更新OAuth2AccessToken, 如果token的过期时长发生变化，根据刷新时间重新创建任务
-     */
-    public static class Looper implements Job {
-
-        /**
-         * @param context 任务执行上下文
-         */
-        @Override
-        public void execute(JobExecutionContext context) {
-            String registrationId = context.getJobDetail().getKey().getName();
-            AccessTokenRenovator accessTokenRenovator = RENOVATOR_MAP.get(registrationId);
-            if(Objects.isNull(accessTokenRenovator)){
-                deleteJob(registrationId);
-            }
-            // 获取当前token的刷新时间
-            int currentInterval = accessTokenRenovator.interval();
-            OAuth2AccessToken accessToken = accessTokenRenovator.getExecute().apply(registrationId);
-            if (Objects.isNull(accessToken)) {
-                log.error("Failed to renovate {} token", registrationId);
-                return;
+     * 值和过期时间都相同，授权服务器延长了同一个 token 的有效期时不算
+     */
+    private boolean isCurrent(OAuth2AccessToken accessToken) {
+        OAuth2AccessToken currentToken = current.accessToken();
+        return Objects.nonNull(currentToken) && currentToken.getTokenValue().equals(accessToken.getTokenValue())
+                && Objects.equals(currentToken.getExpiresAt(), accessToken.getExpiresAt());
+    }
+
+    /**
+     * @return 没有 tokenStore、没有保存或者读取失败时返回 null
+     */
+    private static OAuth2AccessToken restore(String registrationId) {
+        AccessTokenStore store = tokenStore;
+        if (Objects.isNull(store)) {
+            return null;
+        }
+        try {
+            OAuth2AccessToken accessToken = store.load(registrationId);
+            if (Objects.nonNull(accessToken)) {
+                log.info("Restored {} token expiring at {}", registrationId, accessToken.getExpiresAt());
             }
-            accessTokenRenovator.setAccessToken(accessToken);
-            // 获取新的token的刷新时间
-            int newInterval = accessTokenRenovator.interval();
-            /*
-             * 如果token的过期时长发生变化，根据刷新时间重新创建任务
-             * 如果没有发生变化，不做任何操作
-             */
-            if (currentInterval == newInterval) {
-                return;
+            return accessToken;
+        } catch (Exception e) {
+            log.warn("Failed to restore {} token", registrationId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入失败只记录日志，不影响 token 的使用
+     */
+    private static void persist(String registrationId, OAuth2AccessToken accessToken) {
+        AccessTokenStore store = tokenStore;
+        if (Objects.isNull(store) || Objects.isNull(accessToken)) {
+            return;
+        }
+        try {
+            store.save(registrationId, accessToken);
+        } catch (Exception e) {
+            log.warn("Failed to persist {} token", registrationId, e);
+        }
+    }
+
+    /**
+     * @param expiresAt 毫秒，没有过期时间的 token 视为已过期，与原来 get 的判断一致
+     */
+    private record Current(OAuth2AccessToken accessToken, String authorizationHeader, long expiresAt) {
+
+        static final Current EMPTY = new Current(null, null, Long.MIN_VALUE);
+
+        static Current of(OAuth2AccessToken accessToken) {
+            if (Objects.isNull(accessToken) || Objects.isNull(accessToken.getExpiresAt())) {
+                return EMPTY;
             }
-            accessTokenRenovator.setInterval(newInterval);
-            accessTokenRenovator.newJob();
-            log.info("Renovate {} interval from {} to {}", registrationId, currentInterval, newInterval);
+            return new Current(accessToken, "Bearer " + accessToken.getTokenValue(), accessToken.getExpiresAt().toEpochMilli());
+        }
+
+        boolean isActive(long now) {
+            return now < expiresAt;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package indi.haorui.resource.server.config;
+
+import indi.haorui.resource.server.properties.TokenRefreshProperties;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 把 {@link AccessTokenRenovator} 的调度线程与 spring 容器的生命周期绑定：容器启动时应用刷新策略并创建线程，
+ * 关闭时取消所有刷新任务并停止线程
+ * <p>
+ * 启用了 security.client.token-store 时，启动时把 {@link AccessTokenStore} 交给 AccessTokenRenovator
+ */
+public class AccessTokenRenovatorLifecycle implements SmartLifecycle {
+
+    private final TokenRefreshProperties refreshProperties;
+
+    private final AccessTokenStore tokenStore;
+
+    public AccessTokenRenovatorLifecycle(TokenRefreshProperties refreshProperties) {
+        this(refreshProperties, null);
+    }
+
+    public AccessTokenRenovatorLifecycle(TokenRefreshProperties refreshProperties, AccessTokenStore tokenStore) {
+        this.refreshProperties = refreshProperties;
+        this.tokenStore = tokenStore;
+    }
+
+    @Override
+    public void start() {
+        AccessTokenRenovator.setRefreshProperties(refreshProperties);
+        if (Objects.nonNull(tokenStore)) {
+            AccessTokenRenovator.setTokenStore(tokenStore);
+        }
+        AccessTokenRenovator.start();
+    }
+
+    @Override
+    public void stop() {
+        AccessTokenRenovator.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return AccessTokenRenovator.isRunning();
+    }
+}
@@ -0,0 +1,21 @@
+package indi.haorui.resource.server.config;
+
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * {@link AccessTokenRenovator} 的持久化 token 存储：创建刷新任务时先从这里取仍然有效的 token，
+ * 取不到才请求授权服务器；每次获取或刷新成功后写入
+ * <p>
+ * key 是 {@link TokenKey#cacheKey()}
+ */
+public interface AccessTokenStore {
+
+    /**
+     * @return 没有保存或者剩余有效时间不足时返回 null
+     */
+    OAuth2AccessToken load(String key);
+
+    void save(String key, OAuth2AccessToken accessToken);
+}
@@ -0,0 +1,230 @@
+package indi.haorui.resource.server.config;
+
+import indi.haorui.resource.server.properties.TokenStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 保存在本地文件中的 token，文件格式：magic(4) + version(1) + iv(12) + AES-GCM 密文，magic 和 version 作为 AAD
+ * <p>
+ * 创建时读取文件，文件不存在、key 不匹配或者内容损坏时从空开始，下一次写入时覆盖；
+ * 每次 save 把所有未过期的 token 写到临时文件再原子替换，进程中途退出不会留下写了一半的文件
+ * <p>
+ * token 只有几个，整个文件重写的开销很小，不需要内存映射文件或者嵌入式 KV
+ */
+@Slf4j
+public class EncryptedFileAccessTokenStore implements AccessTokenStore {
+
+    private static final byte[] MAGIC = "SCTS".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte VERSION = 1;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int IV_LENGTH = 12;
+
+    private static final int TAG_BITS = 128;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final Path path;
+
+    private final SecretKeySpec secretKey;
+
+    private final Duration minTimeToLive;
+
+    private final Map<String, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+
+    /*
+     * 写文件时持有，save 可能在虚拟线程上调用，不用 synchronized
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public EncryptedFileAccessTokenStore(TokenStoreProperties properties) {
+        properties.validate();
+        this.path = Path.of(properties.getPath()).toAbsolutePath();
+        this.secretKey = new SecretKeySpec(Base64.getDecoder().decode(properties.getKey()), "AES");
+        this.minTimeToLive = properties.getMinTimeToLive();
+        read();
+    }
+
+    @Override
+    public OAuth2AccessToken load(String key) {
+        OAuth2AccessToken accessToken = tokens.get(key);
+        if (Objects.isNull(accessToken) || !usable(accessToken, Instant.now())) {
+            return null;
+        }
+        return accessToken;
+    }
+
+    @Override
+    public void save(String key, OAuth2AccessToken accessToken) {
+        if (Objects.isNull(accessToken) || Objects.isNull(accessToken.getExpiresAt())) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            tokens.put(key, accessToken);
+            Instant now = Instant.now();
+            tokens.values().removeIf(token -> !token.getExpiresAt().isAfter(now));
+            write();
+        } catch (IOException | GeneralSecurityException e) {
+            log.error("Failed to write access tokens to {}", path, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean usable(OAuth2AccessToken accessToken, Instant now) {
+        return Objects.nonNull(accessToken.getExpiresAt()) && accessToken.getExpiresAt().isAfter(now.plus(minTimeToLive));
+    }
+
+    private void read() {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            byte[] content = Files.readAllBytes(path);
+            int headerLength = MAGIC.length + 1;
+            if (content.length < headerLength + IV_LENGTH
+                    || !Arrays.equals(MAGIC, Arrays.copyOf(content, MAGIC.length)) || content[MAGIC.length] != VERSION) {
+                log.warn("Ignore access token store {}, unknown format", path);
+                return;
+            }
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, content, headerLength, IV_LENGTH));
+            cipher.updateAAD(content, 0, headerLength);
+            byte[] plain = cipher.doFinal(content, headerLength + IV_LENGTH, content.length - headerLength - IV_LENGTH);
+            Instant now = Instant.now();
+            decode(plain).forEach((key, accessToken) -> {
+                if (usable(accessToken, now)) {
+                    tokens.put(key, accessToken);
+                }
+            });
+            log.info("Loaded {} access tokens from {}", tokens.size(), path);
+        } catch (IOException | GeneralSecurityException e) {
+            // key 更换或者文件损坏，下一次写入时覆盖
+            log.warn("Ignore access token store {}, failed to read", path, e);
+        }
+    }
+
+    private void write() throws IOException, GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_BITS, iv));
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(MAGIC);
+        content.write(VERSION);
+        cipher.updateAAD(content.toByteArray());
+        content.write(iv);
+        content.write(cipher.doFinal(encode(tokens)));
+
+        Path directory = path.getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            restrictPermissions(temp);
+            Files.write(temp, content.toByteArray());
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 文件只允许当前用户读写，不支持 POSIX 权限的文件系统上跳过
+     */
+    private static void restrictPermissions(Path file) throws IOException {
+        try {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            log.debug("POSIX permissions not supported for {}", file);
+        }
+    }
+
+    private static byte[] encode(Map<String, OAuth2AccessToken> tokens) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Map<String, OAuth2AccessToken> snapshot = Map.copyOf(tokens);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<String, OAuth2AccessToken> entry : snapshot.entrySet()) {
+            OAuth2AccessToken accessToken = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeUTF(accessToken.getTokenType().getValue());
+            byte[] tokenValue = accessToken.getTokenValue().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(tokenValue.length);
+            out.write(tokenValue);
+            out.writeLong(Objects.isNull(accessToken.getIssuedAt()) ? NONE : accessToken.getIssuedAt().toEpochMilli());
+            out.writeLong(accessToken.getExpiresAt().toEpochMilli());
+            out.writeInt(accessToken.getScopes().size());
+            for (String scope : accessToken.getScopes()) {
+                out.writeUTF(scope);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, OAuth2AccessToken> decode(byte[] plain) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(plain));
+        int size = in.readInt();
+        Map<String, OAuth2AccessToken> tokens = new ConcurrentHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            String tokenType = in.readUTF();
+            byte[] tokenValue = new byte[in.readInt()];
+            in.readFully(tokenValue);
+            long issuedAt = in.readLong();
+            long expiresAt = in.readLong();
+            int scopeCount = in.readInt();
+            Set<String> scopes = new HashSet<>();
+            for (int j = 0; j < scopeCount; j++) {
+                scopes.add(in.readUTF());
+            }
+            if (!OAuth2AccessToken.TokenType.BEARER.getValue().equalsIgnoreCase(tokenType)) {
+                continue;
+            }
+            tokens.put(key, new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER,
+                    new String(tokenValue, StandardCharsets.UTF_8),
+                    issuedAt == NONE ? null : Instant.ofEpochMilli(issuedAt),
+                    Instant.ofEpochMilli(expiresAt), scopes));
+        }
+        return tokens;
+    }
+}
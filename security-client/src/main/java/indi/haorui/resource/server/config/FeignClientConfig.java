@@ -1,45 +1,55 @@
 package indi.haorui.resource.server.config;
 
-import cn.hutool.core.util.StrUtil;
 import feign.RequestInterceptor;
+import indi.haorui.resource.server.properties.FeignTokenProperties;
+import indi.haorui.resource.server.properties.TokenRefreshProperties;
+import indi.haorui.resource.server.properties.TokenStoreProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
 import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientPropertiesMapper;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.security.oauth2.client.*;
+import org.springframework.security.oauth2.client.endpoint.DefaultClientCredentialsTokenResponseClient;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
 
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Yang Hao.rui on 2024/5/21
  */
 //@Component // 加载到spring容器中会导致所有的feign client都会加载这个配置，所以不要加，我们在@FeignClient中指定了配置类
 @Slf4j
+@EnableConfigurationProperties({TokenRefreshProperties.class, FeignTokenProperties.class, TokenStoreProperties.class})
 public class FeignClientConfig {
 
+    /**
+     * 从 OAuth2AccessTokenManager 中取 Authorization header，添加到请求中
+     * <p>
+     * 每个 feign client 的子容器中 spring.cloud.openfeign.client.name 是它的 contextId
+     */
     @Bean
-    RequestInterceptor requestInterceptor(OAuth2AccessTokenManager oAuth2AccessTokenManager) {
-
-        // 从 authorizedClient 中获取 access token，添加到请求的 header 中。
-        return requestTemplate -> {
-            try {
-                if (Objects.isNull(requestTemplate.feignTarget()) || StrUtil.isBlank(requestTemplate.feignTarget().name())) {
-                    return;
-                }
-                String name = requestTemplate.feignTarget().name();
-                String accessToken = oAuth2AccessTokenManager.authorize(name);
-                requestTemplate.header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken);
-                log.debug("core accessToken: {}", accessToken);
-            } catch (Exception e) {
-                log.error("core accessToken error: {}", e.getMessage());
-            }
-        };
+    RequestInterceptor requestInterceptor(OAuth2AccessTokenManager oAuth2AccessTokenManager,
+                                          FeignTokenMapping feignTokenMapping,
+                                          @Value("${spring.cloud.openfeign.client.name:}") String contextId) {
+        return new OAuth2RequestInterceptor(oAuth2AccessTokenManager, feignTokenMapping, contextId);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public FeignTokenMapping feignTokenMapping(FeignTokenProperties feignTokenProperties,
+                                               ClientRegistrationRepository clientRegistrationRepository) {
+        return new FeignTokenMapping(feignTokenProperties, clientRegistrationRepository);
     }
 
 
@@ -59,11 +69,37 @@ public class FeignClientConfig {
         return authorizedClientManager;
     }
 
+    /**
+     * 容器关闭时调用 close 关闭获取 token 的线程池；启用 spring.threads.virtual.enabled 时每次获取使用一个虚拟线程
+     */
     @Bean
     @ConditionalOnMissingBean
     public OAuth2AccessTokenManager oAuth2AccessTokenManager(ClientRegistrationRepository clientRegistrationRepository,
-                                                             OAuth2AuthorizedClientManager authorizedClientManager) {
-        return new OAuth2AccessTokenManager(clientRegistrationRepository, authorizedClientManager);
+                                                             OAuth2AuthorizedClientManager authorizedClientManager,
+                                                             TokenRefreshProperties tokenRefreshProperties,
+                                                             Environment environment) {
+        Executor executor = Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("token-acquire-")
+                : OAuth2AccessTokenManager.defaultExecutor();
+        return new OAuth2AccessTokenManager(clientRegistrationRepository, authorizedClientManager,
+                new DefaultClientCredentialsTokenResponseClient(), tokenRefreshProperties.getAcquireTimeout(), executor);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AccessTokenRenovatorLifecycle accessTokenRenovatorLifecycle(TokenRefreshProperties tokenRefreshProperties,
+                                                                       ObjectProvider<AccessTokenStore> accessTokenStore) {
+        return new AccessTokenRenovatorLifecycle(tokenRefreshProperties, accessTokenStore.getIfAvailable());
+    }
+
+    /**
+     * 重启后继续使用本地文件中仍然有效的 token，默认关闭
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "security.client.token-store", name = "enabled", havingValue = "true")
+    public AccessTokenStore accessTokenStore(TokenStoreProperties tokenStoreProperties) {
+        return new EncryptedFileAccessTokenStore(tokenStoreProperties);
     }
 
     @Bean
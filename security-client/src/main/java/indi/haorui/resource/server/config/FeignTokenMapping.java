@@ -0,0 +1,87 @@
+package indi.haorui.resource.server.config;
+
+import cn.hutool.core.util.StrUtil;
+import feign.MethodMetadata;
+import indi.haorui.resource.server.properties.FeignTokenProperties;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 按 {@link FeignTokenProperties} 找到 feign 请求使用的 registration 和 scope：
+ * 先按 contextId 找 client，找不到再按 name 找；client 下先按方法的 configKey、再按方法名找方法的配置
+ * <p>
+ * 没有配置的 feign client 用 name 作为 registrationId、不指定 scope，与原来的行为一致
+ * <p>
+ * 创建时校验配置：registration 必须存在，指定了 scope 时 registration 必须是 client_credentials，
+ * 且 scope 在 registration 配置的 scope 之内（registration 没有配置 scope 时不限制）
+ */
+public class FeignTokenMapping {
+
+    private final Map<String, FeignTokenProperties.Client> clients;
+
+    public FeignTokenMapping(FeignTokenProperties properties, ClientRegistrationRepository clientRegistrationRepository) {
+        this.clients = Map.copyOf(properties.getClients());
+        clients.forEach((name, client) -> {
+            Assert.hasText(client.getRegistration(), "security.client.feign.clients." + name + ".registration is required");
+            validate(clientRegistrationRepository, name, client.getRegistration(), client.getScopes());
+            client.getMethods().forEach((method, target) -> validate(clientRegistrationRepository, name + "." + method,
+                    StrUtil.isBlank(target.getRegistration()) ? client.getRegistration() : target.getRegistration(), target.getScopes()));
+        });
+    }
+
+    /**
+     * 没有任何映射，所有 feign client 都用 name 作为 registrationId
+     */
+    public static FeignTokenMapping none() {
+        return new FeignTokenMapping(new FeignTokenProperties(), registrationId -> null);
+    }
+
+    /**
+     * @param contextId 可以为空
+     * @param metadata  可以为空，为空时只按 client 匹配
+     */
+    public TokenKey resolve(String contextId, String name, MethodMetadata metadata) {
+        FeignTokenProperties.Client client = StrUtil.isBlank(contextId) ? null : clients.get(contextId);
+        if (Objects.isNull(client)) {
+            client = clients.get(name);
+        }
+        if (Objects.isNull(client)) {
+            return TokenKey.of(name);
+        }
+        FeignTokenProperties.Method method = null;
+        if (Objects.nonNull(metadata)) {
+            method = client.getMethods().get(metadata.configKey());
+            if (Objects.isNull(method) && Objects.nonNull(metadata.method())) {
+                method = client.getMethods().get(metadata.method().getName());
+            }
+        }
+        if (Objects.isNull(method)) {
+            return TokenKey.of(client.getRegistration(), client.getScopes());
+        }
+        String registrationId = StrUtil.isBlank(method.getRegistration()) ? client.getRegistration() : method.getRegistration();
+        return TokenKey.of(registrationId, method.getScopes());
+    }
+
+    private static void validate(ClientRegistrationRepository clientRegistrationRepository, String name,
+                                 String registrationId, Collection<String> scopes) {
+        ClientRegistration clientRegistration = clientRegistrationRepository.findByRegistrationId(registrationId);
+        Assert.notNull(clientRegistration, "Client registration " + registrationId + " of feign client " + name + " not found");
+        if (scopes.isEmpty()) {
+            return;
+        }
+        Assert.isTrue(AuthorizationGrantType.CLIENT_CREDENTIALS.equals(clientRegistration.getAuthorizationGrantType()),
+                "Scopes of feign client " + name + " require a client_credentials registration, " + registrationId + " is "
+                        + clientRegistration.getAuthorizationGrantType().getValue());
+        Assert.isTrue(clientRegistration.getScopes().isEmpty() || clientRegistration.getScopes().containsAll(scopes),
+                "Scopes " + scopes + " of feign client " + name + " exceed registration " + registrationId + " scopes "
+                        + clientRegistration.getScopes());
+    }
+}
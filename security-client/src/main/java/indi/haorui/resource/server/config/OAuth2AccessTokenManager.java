@@ -5,46 +5,251 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.endpoint.DefaultClientCredentialsTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
 
+import java.time.Duration;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Yang Hao.rui on 2023/11/10
+ * <p>
+ * 有未过期的 token 时直接返回；没有时同一个 {@link TokenKey} 的并发调用共享一次获取（single-flight）：
+ * 第一个调用者在 token-acquire 线程上发起请求，其他调用者等待同一个 CompletableFuture，
+ * 冷启动时无论多少并发请求，对授权服务器只有一次 token 请求
+ * <p>
+ * token 按 registration + scope 集合缓存，指定了 scope 时以 client_credentials 只申请这些 scope，
+ * 调用多个下游的服务为每组 scope 复用一个窄权限的 token；只传 registrationId 的方法与原来一样按 registration 的 scope 申请
+ * <p>
+ * client_credentials 的 token 每次都直接请求 token 端点：token 已经由 {@link AccessTokenRenovator} 缓存，
+ * 而 authorizedClientManager 在 token 过期前 60 秒之内一直返回缓存的同一个 token，提前刷新会拿不到新 token；
+ * 其他 grant type 的 registration 仍然经过 authorizedClientManager
+ * <p>
+ * 获取 token 的线程池有上限，{@link #close()} 时关闭，作为 spring bean 时随容器关闭；
+ * 虚拟线程模式下由 {@link FeignClientConfig} 传入每个任务一个虚拟线程的 executor
  */
 @Slf4j
-public class OAuth2AccessTokenManager {
+public class OAuth2AccessTokenManager implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    /*
+     * 同一个 TokenKey 同时只有一次获取，线程数只需要覆盖同时冷启动的 TokenKey，多出的获取排队
+     */
+    private static final int ACQUIRE_THREADS = 4;
 
     private final ClientRegistrationRepository clientRegistrationRepository;
     private final OAuth2AuthorizedClientManager authorizedClientManager;
 
+    /*
+     * client_credentials 的 token 直接请求 token 端点，不经过 authorizedClientManager 的缓存
+     */
+    private final OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> clientCredentialsTokenResponseClient;
+
+    /*
+     * TokenKey#cacheKey -> 正在进行的获取，完成后移除
+     */
+    private final Map<String, CompletableFuture<OAuth2AccessToken>> inFlight = new ConcurrentHashMap<>();
+
+    /*
+     * 执行获取 token 的远程调用，调用者只等待 future
+     */
+    private final Executor executor;
+
+    private final Duration acquireTimeout;
+
     public OAuth2AccessTokenManager(ClientRegistrationRepository clientRegistrationRepository,
                                     OAuth2AuthorizedClientManager authorizedClientManager) {
+        this(clientRegistrationRepository, authorizedClientManager, Duration.ofSeconds(5));
+    }
+
+    public OAuth2AccessTokenManager(ClientRegistrationRepository clientRegistrationRepository,
+                                    OAuth2AuthorizedClientManager authorizedClientManager,
+                                    Duration acquireTimeout) {
+        this(clientRegistrationRepository, authorizedClientManager, new DefaultClientCredentialsTokenResponseClient(), acquireTimeout);
+    }
+
+    public OAuth2AccessTokenManager(ClientRegistrationRepository clientRegistrationRepository,
+                                    OAuth2AuthorizedClientManager authorizedClientManager,
+                                    OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> clientCredentialsTokenResponseClient,
+                                    Duration acquireTimeout) {
+        this(clientRegistrationRepository, authorizedClientManager, clientCredentialsTokenResponseClient, acquireTimeout,
+                defaultExecutor());
+    }
+
+    /**
+     * @param executor 执行获取 token 的远程调用，是 {@link ExecutorService} 时在 {@link #close()} 中关闭
+     */
+    public OAuth2AccessTokenManager(ClientRegistrationRepository clientRegistrationRepository,
+                                    OAuth2AuthorizedClientManager authorizedClientManager,
+                                    OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> clientCredentialsTokenResponseClient,
+                                    Duration acquireTimeout,
+                                    Executor executor) {
+        this.executor = executor;
         this.clientRegistrationRepository = clientRegistrationRepository;
         this.authorizedClientManager = authorizedClientManager;
+        this.clientCredentialsTokenResponseClient = clientCredentialsTokenResponseClient;
+        this.acquireTimeout = acquireTimeout;
     }
 
-    public String authorize(String registrationId) {
-        OAuth2AccessToken accessToken = AccessTokenRenovator.get(registrationId);
-        if (Objects.isNull(accessToken)){
-            return null;
+    /**
+     * 最多 {@value #ACQUIRE_THREADS} 个平台线程，空闲 60 秒的线程会被回收
+     */
+    static ExecutorService defaultExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(ACQUIRE_THREADS, ACQUIRE_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "token-acquire-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * 关闭获取 token 的线程池，正在进行的获取继续完成，之后的获取直接失败
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
         }
-        if (StrUtil.isNotBlank(accessToken.getTokenValue())) {
+    }
+
+    public String authorize(String registrationId) {
+        return authorize(TokenKey.of(registrationId));
+    }
+
+    /**
+     * 没有可用 token 时最多等待 acquireTimeout
+     *
+     * @return 获取失败或者超时返回 null
+     */
+    public String authorize(TokenKey tokenKey) {
+        OAuth2AccessToken accessToken = AccessTokenRenovator.get(tokenKey.cacheKey());
+        if (Objects.nonNull(accessToken) && StrUtil.isNotBlank(accessToken.getTokenValue())) {
             return accessToken.getTokenValue();
         }
-        OAuth2AccessToken oAuth2AccessToken = AccessTokenRenovator.register(registrationId,
-                this::authorizeToken);
-        return oAuth2AccessToken.getTokenValue();
+        try {
+            return tokenValue(acquire(tokenKey).get(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            log.warn("Timed out after {} waiting for {} token", acquireTimeout, tokenKey.cacheKey());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Failed to authorize for client: {}.", tokenKey.cacheKey(), e.getCause());
+        }
+        return null;
+    }
+
+    public String authorizationHeader(String registrationId) {
+        return authorizationHeader(TokenKey.of(registrationId));
+    }
+
+    /**
+     * 给 feign 请求使用的 Authorization header，有可用 token 时直接返回刷新时拼好的值，不分配对象；
+     * 没有时与 {@link #authorize} 一样最多等待 acquireTimeout
+     *
+     * @return 获取失败或者超时返回 null
+     */
+    public String authorizationHeader(TokenKey tokenKey) {
+        String authorizationHeader = AccessTokenRenovator.authorizationHeader(tokenKey.cacheKey());
+        if (Objects.nonNull(authorizationHeader)) {
+            return authorizationHeader;
+        }
+        return Objects.isNull(authorize(tokenKey)) ? null : AccessTokenRenovator.authorizationHeader(tokenKey.cacheKey());
+    }
+
+    public CompletableFuture<String> authorizeAsync(String registrationId) {
+        return authorizeAsync(TokenKey.of(registrationId));
+    }
+
+    /**
+     * 不阻塞调用线程，有可用 token 时返回已完成的 future
+     *
+     * @return 获取失败时 future 的值为 null
+     */
+    public CompletableFuture<String> authorizeAsync(TokenKey tokenKey) {
+        OAuth2AccessToken accessToken = AccessTokenRenovator.get(tokenKey.cacheKey());
+        if (Objects.nonNull(accessToken) && StrUtil.isNotBlank(accessToken.getTokenValue())) {
+            return CompletableFuture.completedFuture(accessToken.getTokenValue());
+        }
+        return acquire(tokenKey).thenApply(OAuth2AccessTokenManager::tokenValue);
     }
 
+    /**
+     * 还没有注册，或者刷新一直失败直到 token 过期时，发起一次获取，已经有正在进行的获取时返回同一个 future
+     * <p>
+     * 返回的是副本，调用者取消或者超时不影响其他等待者
+     */
+    private CompletableFuture<OAuth2AccessToken> acquire(TokenKey tokenKey) {
+        String cacheKey = tokenKey.cacheKey();
+        CompletableFuture<OAuth2AccessToken> acquisition = new CompletableFuture<>();
+        CompletableFuture<OAuth2AccessToken> existing = inFlight.putIfAbsent(cacheKey, acquisition);
+        if (Objects.nonNull(existing)) {
+            return existing.copy();
+        }
+        try {
+            executor.execute(() -> {
+                OAuth2AccessToken accessToken = null;
+                Throwable failure = null;
+                try {
+                    accessToken = AccessTokenRenovator.register(cacheKey, key -> authorizeToken(tokenKey));
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                // 先移除再完成，完成之后的调用者直接从 AccessTokenRenovator 取到 token
+                inFlight.remove(cacheKey, acquisition);
+                if (Objects.isNull(failure)) {
+                    acquisition.complete(accessToken);
+                } else {
+                    acquisition.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已经 close
+            inFlight.remove(cacheKey, acquisition);
+            acquisition.completeExceptionally(e);
+        }
+        return acquisition.copy();
+    }
 
-    private OAuth2AccessToken authorizeToken(String registrationId) {
+    private static String tokenValue(OAuth2AccessToken accessToken) {
+        return Objects.isNull(accessToken) ? null : accessToken.getTokenValue();
+    }
+
+
+    private OAuth2AccessToken authorizeToken(TokenKey tokenKey) {
+        String registrationId = tokenKey.registrationId();
         // 启动时， clientRegistrationRepository 会从 application.yml 读取 clientRegistration。
         // 所以这里可以根据 CLIENT_REGISTRATION_ID 获取 clientRegistration，
         // 里面包含了 local-client 对应的 client_id， client_secret，provider 等。
         ClientRegistration clientRegistration = clientRegistrationRepository.findByRegistrationId(registrationId);
+        if (Objects.isNull(clientRegistration)) {
+            log.error("Client registration {} not found.", registrationId);
+            return null;
+        }
+        if (AuthorizationGrantType.CLIENT_CREDENTIALS.equals(clientRegistration.getAuthorizationGrantType())) {
+            return authorizeClientCredentialsToken(clientRegistration, tokenKey);
+        }
 
         // 构造 OAuth2 认证请求，用于为 local-client 获取 access token。
         OAuth2AuthorizeRequest authorizeRequest = OAuth2AuthorizeRequest
@@ -64,4 +269,23 @@ public class OAuth2AccessTokenManager {
         return null;
     }
 
+    /**
+     * 每次调用都向授权服务器申请新的 token；指定了 scope 时只申请 tokenKey 中的 scope，授权服务器签发的 token 只包含这些 scope
+     */
+    private OAuth2AccessToken authorizeClientCredentialsToken(ClientRegistration clientRegistration, TokenKey tokenKey) {
+        ClientRegistration requestRegistration = tokenKey.isScoped()
+                ? ClientRegistration.withClientRegistration(clientRegistration).scope(tokenKey.scopes()).build()
+                : clientRegistration;
+        try {
+            OAuth2AccessTokenResponse tokenResponse = clientCredentialsTokenResponseClient
+                    .getTokenResponse(new OAuth2ClientCredentialsGrantRequest(requestRegistration));
+            if (Objects.nonNull(tokenResponse)) {
+                return tokenResponse.getAccessToken();
+            }
+        } catch (Exception e) {
+            log.error("Failed to authorize for client: {}.", tokenKey.cacheKey(), e);
+        }
+        return null;
+    }
+
 }
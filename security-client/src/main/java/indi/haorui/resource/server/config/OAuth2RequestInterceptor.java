@@ -0,0 +1,71 @@
+package indi.haorui.resource.server.config;
+
+import cn.hutool.core.util.StrUtil;
+import feign.MethodMetadata;
+import feign.RequestInterceptor;
+import feign.RequestTemplate;
+import feign.Target;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 按 {@link FeignTokenMapping} 找到 feign 请求使用的 registration 和 scope，在请求上加 Authorization header
+ * <p>
+ * 每个方法第一次调用时解析映射并缓存（有方法信息时按 configKey，否则按 name），
+ * header 的值在 token 刷新时已经拼好，有可用 token 时这里只有两次 map 查找和一次 volatile 读，
+ * 不访问授权服务器，也不输出 token
+ * <p>
+ * spring cloud openfeign 为每个 contextId 创建一个子容器，每个 feign client 有自己的拦截器实例
+ */
+@Slf4j
+public class OAuth2RequestInterceptor implements RequestInterceptor {
+
+    private final OAuth2AccessTokenManager oAuth2AccessTokenManager;
+
+    private final FeignTokenMapping feignTokenMapping;
+
+    private final String contextId;
+
+    private final Map<String, TokenKey> tokenKeys = new ConcurrentHashMap<>();
+
+    public OAuth2RequestInterceptor(OAuth2AccessTokenManager oAuth2AccessTokenManager) {
+        this(oAuth2AccessTokenManager, FeignTokenMapping.none(), null);
+    }
+
+    public OAuth2RequestInterceptor(OAuth2AccessTokenManager oAuth2AccessTokenManager,
+                                    FeignTokenMapping feignTokenMapping, String contextId) {
+        this.oAuth2AccessTokenManager = oAuth2AccessTokenManager;
+        this.feignTokenMapping = feignTokenMapping;
+        this.contextId = contextId;
+    }
+
+    @Override
+    public void apply(RequestTemplate requestTemplate) {
+        Target<?> target = requestTemplate.feignTarget();
+        if (Objects.isNull(target) || StrUtil.isBlank(target.name())) {
+            return;
+        }
+        TokenKey tokenKey = tokenKey(target, requestTemplate.methodMetadata());
+        String authorizationHeader = oAuth2AccessTokenManager.authorizationHeader(tokenKey);
+        if (Objects.isNull(authorizationHeader)) {
+            log.error("No access token available for {}", tokenKey.cacheKey());
+            return;
+        }
+        requestTemplate.header(HttpHeaders.AUTHORIZATION, authorizationHeader);
+    }
+
+    private TokenKey tokenKey(Target<?> target, MethodMetadata metadata) {
+        String key = Objects.isNull(metadata) ? target.name() : metadata.configKey();
+        TokenKey tokenKey = tokenKeys.get(key);
+        if (Objects.nonNull(tokenKey)) {
+            return tokenKey;
+        }
+        return tokenKeys.computeIfAbsent(key, k -> feignTokenMapping.resolve(contextId, target.name(), metadata));
+    }
+}
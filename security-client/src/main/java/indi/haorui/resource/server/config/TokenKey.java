@@ -0,0 +1,37 @@
+package indi.haorui.resource.server.config;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * token 缓存的 key：registration + scope 集合，scope 排序后参与 cacheKey，顺序不同的同一组 scope 共用一个 token
+ * <p>
+ * scopes 为空时不指定 scope，按 registration 配置的 scope 申请，cacheKey 就是 registrationId，与原来按 registrationId 缓存一致
+ *
+ * @param cacheKey AccessTokenRenovator 中的 key
+ */
+public record TokenKey(String registrationId, Set<String> scopes, String cacheKey) {
+
+    private static final String SCOPE_SEPARATOR = "#";
+
+    public static TokenKey of(String registrationId) {
+        return new TokenKey(registrationId, Collections.emptySet(), registrationId);
+    }
+
+    public static TokenKey of(String registrationId, Collection<String> scopes) {
+        if (Objects.isNull(scopes) || scopes.isEmpty()) {
+            return of(registrationId);
+        }
+        Set<String> sorted = Collections.unmodifiableSet(new TreeSet<>(scopes));
+        return new TokenKey(registrationId, sorted, registrationId + SCOPE_SEPARATOR + String.join(" ", sorted));
+    }
+
+    public boolean isScoped() {
+        return !scopes.isEmpty();
+    }
+}
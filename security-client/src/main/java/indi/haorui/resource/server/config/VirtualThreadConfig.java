@@ -0,0 +1,28 @@
+package indi.haorui.resource.server.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 虚拟线程模式由 spring.threads.virtual.enabled 控制，需要 JDK 21，启用后 spring boot 把 tomcat 的请求线程、
+ * applicationTaskExecutor（@Async）和 taskScheduler 换成虚拟线程；feign 的同步调用在调用方线程上执行，随之运行在虚拟线程上
+ */
+@Configuration(proxyBeanMethods = false)
+public class VirtualThreadConfig {
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    @ConditionalOnProperty(prefix = "security.client.pinning-monitor", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            @Value("${security.client.pinning-monitor.threshold:20ms}") Duration threshold) {
+        return new VirtualThreadPinningMonitor(threshold);
+    }
+}
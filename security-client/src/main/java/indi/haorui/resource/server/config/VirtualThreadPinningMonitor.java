@@ -0,0 +1,120 @@
+package indi.haorui.resource.server.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 虚拟线程 pinning 诊断：通过 JFR 的 jdk.VirtualThreadPinned 事件找出在 synchronized 块或 native 帧中阻塞、
+ * 占住载体线程的代码，例如在 synchronized 块内发起 HTTP 请求；
+ * AccessTokenRenovator#register 在锁内请求 token，用的是 ReentrantLock，不会出现在这里
+ * <p>
+ * 每种调用栈第一次出现时输出完整的栈，之后只计数，{@link #pinned()} 返回各个调用栈的次数，
+ * 通过 GET /virtual-threads/pinning 查看
+ * <p>
+ * 只在 JDK 21 及以上、启用了 spring.threads.virtual.enabled 时创建，只记录持续时间超过 threshold 的 pinning
+ */
+@Slf4j
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int MAX_FRAMES = 16;
+
+    private final Duration threshold;
+
+    private final Map<String, LongAdder> pinned = new ConcurrentHashMap<>();
+
+    private volatile RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (Objects.nonNull(stream)) {
+            return;
+        }
+        RecordingStream recordingStream = new RecordingStream();
+        recordingStream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(EVENT, this::onPinned);
+        recordingStream.startAsync();
+        this.stream = recordingStream;
+        log.info("Virtual thread pinning monitor started, threshold {}", threshold);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (Objects.nonNull(stream)) {
+            stream.close();
+            stream = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return Objects.nonNull(stream);
+    }
+
+    /**
+     * @return 调用栈 -> 超过 threshold 的 pinning 次数
+     */
+    public Map<String, Long> pinned() {
+        return pinned.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum(), (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * @return 所有调用栈的 pinning 次数之和
+     */
+    public long total() {
+        return pinned.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String stackTrace = stackTrace(event.getStackTrace());
+        if (record(stackTrace)) {
+            RecordedThread thread = event.getThread();
+            log.warn("Virtual thread {} pinned for {} ms\n{}", Objects.isNull(thread) ? "" : thread.getJavaName(),
+                    event.getDuration().toMillis(), stackTrace);
+        }
+    }
+
+    /**
+     * @return 这个调用栈是否第一次出现
+     */
+    boolean record(String stackTrace) {
+        LongAdder count = pinned.computeIfAbsent(stackTrace, key -> new LongAdder());
+        count.increment();
+        return count.sum() == 1;
+    }
+
+    private static String stackTrace(RecordedStackTrace stackTrace) {
+        if (Objects.isNull(stackTrace)) {
+            return "<no stack trace>";
+        }
+        return stackTrace.getFrames().stream()
+                .limit(MAX_FRAMES)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return "\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
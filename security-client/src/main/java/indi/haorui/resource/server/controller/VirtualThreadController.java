@@ -0,0 +1,46 @@
+package indi.haorui.resource.server.controller;
+
+import indi.haorui.resource.server.config.VirtualThreadPinningMonitor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 虚拟线程 pinning 的统计，压测时对比各个调用栈的次数；和其他接口一样需要登录
+ */
+@RestController
+@RequestMapping("/virtual-threads")
+@RequiredArgsConstructor
+public class VirtualThreadController {
+
+    /*
+     * 未启用虚拟线程或者 security.client.pinning-monitor.enabled 为 false 时不存在
+     */
+    private final ObjectProvider<VirtualThreadPinningMonitor> pinningMonitor;
+
+    @GetMapping("/pinning")
+    public ResponseEntity<Pinning> pinning() {
+        VirtualThreadPinningMonitor monitor = pinningMonitor.getIfAvailable();
+        if (Objects.isNull(monitor)) {
+            return ResponseEntity.ok(new Pinning(false, 0, Collections.emptyMap()));
+        }
+        return ResponseEntity.ok(new Pinning(monitor.isRunning(), monitor.total(), monitor.pinned()));
+    }
+
+    /**
+     * @param monitoring 是否正在记录 pinning
+     * @param total      超过 threshold 的 pinning 总次数
+     * @param stacks     调用栈 -> 次数
+     */
+    public record Pinning(boolean monitoring, long total, Map<String, Long> stacks) {
+    }
+}
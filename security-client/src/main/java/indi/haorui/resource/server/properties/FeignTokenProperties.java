@@ -0,0 +1,60 @@
+package indi.haorui.resource.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * feign client 到 registration + scope 的映射，没有配置的 feign client 仍然用 name 作为 registrationId、不指定 scope
+ * <pre>
+ * security:
+ *   client:
+ *     feign:
+ *       clients:
+ *         UserRpcService:               # contextId，没有 contextId 时为 name
+ *           registration: messaging-client
+ *           scopes: user.read
+ *           methods:
+ *             "[UserRpcService#list()]": # 方法的 configKey 或方法名
+ *               scopes: user.read,user.list
+ * </pre>
+ */
+@Data
+@ConfigurationProperties(prefix = "security.client.feign")
+public class FeignTokenProperties {
+
+    private Map<String, Client> clients = new LinkedHashMap<>();
+
+    @Data
+    public static class Client {
+
+        private String registration;
+
+        /**
+         * 为空时按 registration 配置的 scope 申请
+         */
+        private Set<String> scopes = new LinkedHashSet<>();
+
+        /**
+         * 方法的 configKey（如 UserRpcService#list()）或方法名 -> 该方法使用的 registration 和 scope
+         */
+        private Map<String, Method> methods = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Method {
+
+        /**
+         * 为空时使用 client 的 registration
+         */
+        private String registration;
+
+        private Set<String> scopes = new LinkedHashSet<>();
+    }
+}
@@ -0,0 +1,42 @@
+package indi.haorui.resource.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * AccessTokenRenovator 的刷新策略
+ * <p>
+ * 正常刷新时间为 有效时长 * earlyRefreshRatio，再随机提前 [0, 有效时长 * jitterRatio)，
+ * 同时启动的实例不会在同一时刻集中刷新；刷新失败时按 initialBackoff 指数退避重试，最长 maxBackoff，
+ * 重试期间继续使用未过期的旧 token
+ */
+@Data
+@ConfigurationProperties(prefix = "security.client.token-refresh")
+public class TokenRefreshProperties {
+
+    private double earlyRefreshRatio = 0.75;
+
+    private double jitterRatio = 0.1;
+
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    private Duration maxBackoff = Duration.ofMinutes(1);
+
+    /**
+     * 没有可用 token 时，OAuth2AccessTokenManager#authorize 等待获取 token 的最长时间，超时返回 null
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+
+    public void validate() {
+        Assert.isTrue(earlyRefreshRatio > 0 && earlyRefreshRatio <= 1, "earlyRefreshRatio must be in (0, 1]");
+        Assert.isTrue(jitterRatio >= 0 && jitterRatio < earlyRefreshRatio, "jitterRatio must be in [0, earlyRefreshRatio)");
+        Assert.isTrue(initialBackoff.toMillis() > 0, "initialBackoff must be positive");
+        Assert.isTrue(maxBackoff.compareTo(initialBackoff) >= 0, "maxBackoff must not be less than initialBackoff");
+        Assert.isTrue(acquireTimeout.toMillis() > 0, "acquireTimeout must be positive");
+    }
+}
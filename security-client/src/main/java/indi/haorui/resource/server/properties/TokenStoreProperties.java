@@ -0,0 +1,42 @@
+package indi.haorui.resource.server.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * 本地持久化 token 存储，启用后 AccessTokenRenovator 在重启后先使用文件中仍然有效的 token，
+ * 滚动发布时不会所有实例同时向授权服务器请求 token
+ * <p>
+ * 文件用 AES-GCM 加密，key 为 base64 编码的 16、24 或 32 字节，同一个文件的所有实例使用同一个 key；
+ * 更换 key 或者修改 registration 的 client-id 后旧文件会被忽略或者需要删除
+ */
+@Data
+@ConfigurationProperties(prefix = "security.client.token-store")
+public class TokenStoreProperties {
+
+    private boolean enabled = false;
+
+    private String path = "./data/security-client-tokens";
+
+    private String key;
+
+    /**
+     * 剩余有效时间不足 minTimeToLive 的 token 不再使用，重新请求
+     */
+    private Duration minTimeToLive = Duration.ofSeconds(30);
+
+    public void validate() {
+        Assert.hasText(path, "path is required");
+        Assert.isTrue(StringUtils.hasText(key), "key is required when the token store is enabled");
+        int length = Base64.getDecoder().decode(key).length;
+        Assert.isTrue(length == 16 || length == 24 || length == 32, "key must be 16, 24 or 32 bytes encoded in base64");
+        Assert.isTrue(!minTimeToLive.isNegative(), "minTimeToLive must not be negative");
+    }
+}
@@ -1,9 +1,12 @@
 package indi.haorui.resource.server.config;
 
+import indi.haorui.resource.server.properties.TokenRefreshProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.HashSet;
 import java.util.Objects;
@@ -133,5 +136,68 @@ class AccessTokenRenovatorTest {
         log.info("token size:{}",token.size()); //1个
     }
 
+    // 所有 registration 共用一个刷新线程
+    @Test
+    public void single_scheduler_thread() {
+        for (int i = 0; i < 5; i++) {
+            AccessTokenRenovator.register("thread" + i,
+                    s -> new OAuth2AccessToken(
+                            OAuth2AccessToken.TokenType.BEARER,
+                            "token" + s,
+                            Instant.now(),
+                            Instant.now().plusSeconds(60)
+                    )
+            );
+        }
+        long threads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> "token-renovator".equals(thread.getName()))
+                .count();
+        log.info("token-renovator threads:{}", threads);
+        Assertions.assertEquals(1, threads);
+    }
+
+    // 默认策略：在有效时长的 65% ~ 75% 之间刷新，失败后的重试间隔翻倍，最长 1 分钟
+    @Test
+    public void refresh_policy() {
+        Instant now = Instant.now();
+        for (int i = 0; i < 100; i++) {
+            long delay = AccessTokenRenovator.refreshDelay(new OAuth2AccessToken(
+                    OAuth2AccessToken.TokenType.BEARER, "token", now, now.plusSeconds(100)));
+            Assertions.assertTrue(delay > 64_000 && delay <= 75_000, "delay " + delay);
+        }
+        for (int i = 0; i < 100; i++) {
+            long first = AccessTokenRenovator.backoff(1);
+            Assertions.assertTrue(first >= 500 && first <= 1_000, "backoff " + first);
+            long third = AccessTokenRenovator.backoff(3);
+            Assertions.assertTrue(third >= 2_000 && third <= 4_000, "backoff " + third);
+            long capped = AccessTokenRenovator.backoff(40);
+            Assertions.assertTrue(capped >= 30_000 && capped <= 60_000, "backoff " + capped);
+        }
+    }
+
+    // 刷新拿到的还是当前 token 时按失败退避，不会每秒重复刷新：
+    // token 的刷新时间已过，第一次刷新在 1 秒后，之后的重试间隔在 1.5 ~ 3 秒之间
+    @Test
+    public void unchanged_token_backs_off() throws InterruptedException {
+        TokenRefreshProperties properties = new TokenRefreshProperties();
+        properties.setInitialBackoff(Duration.ofSeconds(3));
+        properties.setMaxBackoff(Duration.ofSeconds(3));
+        AccessTokenRenovator.setRefreshProperties(properties);
+        try {
+            AtomicInteger calls = new AtomicInteger();
+            OAuth2AccessToken accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "unchanged",
+                    Instant.now().minusSeconds(60), Instant.now().plusSeconds(10));
+            AccessTokenRenovator.register("unchanged", s -> {
+                calls.incrementAndGet();
+                return accessToken;
+            });
+            Thread.sleep(2_300);
+            log.info("unchanged_token_backs_off calls:{}", calls.get());
+            Assertions.assertEquals(2, calls.get());
+            Assertions.assertEquals("unchanged", Objects.requireNonNull(AccessTokenRenovator.get("unchanged")).getTokenValue());
+        } finally {
+            AccessTokenRenovator.setRefreshProperties(new TokenRefreshProperties());
+        }
+    }
 
-}
\ No newline at end of file
+}
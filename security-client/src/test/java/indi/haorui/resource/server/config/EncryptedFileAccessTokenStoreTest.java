@@ -0,0 +1,87 @@
+package indi.haorui.resource.server.config;
+
+import indi.haorui.resource.server.properties.TokenStoreProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class EncryptedFileAccessTokenStoreTest {
+
+    private static final String KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    @TempDir
+    Path directory;
+
+    private TokenStoreProperties properties(String key) {
+        TokenStoreProperties properties = new TokenStoreProperties();
+        properties.setEnabled(true);
+        properties.setPath(directory.resolve("tokens").toString());
+        properties.setKey(key);
+        return properties;
+    }
+
+    private static OAuth2AccessToken token(String value, long expiresInSeconds) {
+        Instant now = Instant.now();
+        return new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, value, now, now.plusSeconds(expiresInSeconds), Set.of("user.read"));
+    }
+
+    // 重启后读到同一个 token，文件中没有明文
+    @Test
+    public void restore_after_restart() throws Exception {
+        new EncryptedFileAccessTokenStore(properties(KEY)).save("messaging-client#user.read", token("secret-token", 300));
+        Assertions.assertFalse(new String(Files.readAllBytes(directory.resolve("tokens")), StandardCharsets.ISO_8859_1).contains("secret-token"));
+
+        OAuth2AccessToken restored = new EncryptedFileAccessTokenStore(properties(KEY)).load("messaging-client#user.read");
+        Assertions.assertNotNull(restored);
+        Assertions.assertEquals("secret-token", restored.getTokenValue());
+        Assertions.assertEquals(Set.of("user.read"), restored.getScopes());
+    }
+
+    // key 不匹配、文件损坏或者剩余有效时间不足时不使用
+    @Test
+    public void ignore_unusable() throws Exception {
+        EncryptedFileAccessTokenStore store = new EncryptedFileAccessTokenStore(properties(KEY));
+        store.save("expiring", token("expiring-token", 10));
+        store.save("valid", token("valid-token", 300));
+        Assertions.assertNull(store.load("expiring"));
+
+        String otherKey = Base64.getEncoder().encodeToString("0123456789abcdef".getBytes(StandardCharsets.US_ASCII));
+        Assertions.assertNull(new EncryptedFileAccessTokenStore(properties(otherKey)).load("valid"));
+
+        byte[] content = Files.readAllBytes(directory.resolve("tokens"));
+        content[content.length - 1] ^= 1;
+        Files.write(directory.resolve("tokens"), content);
+        Assertions.assertNull(new EncryptedFileAccessTokenStore(properties(KEY)).load("valid"));
+    }
+
+    // 有保存的 token 时 register 不请求授权服务器
+    @Test
+    public void renovator_warm_start() {
+        new EncryptedFileAccessTokenStore(properties(KEY)).save("warm", token("persisted", 300));
+        AtomicInteger requests = new AtomicInteger();
+        AccessTokenRenovator.setTokenStore(new EncryptedFileAccessTokenStore(properties(KEY)));
+        try {
+            OAuth2AccessToken accessToken = AccessTokenRenovator.register("warm", registrationId -> {
+                requests.incrementAndGet();
+                return token("fetched", 300);
+            });
+            Assertions.assertEquals("persisted", Objects.requireNonNull(accessToken).getTokenValue());
+            Assertions.assertEquals(0, requests.get());
+        } finally {
+            AccessTokenRenovator.setTokenStore(null);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package indi.haorui.resource.server.config;
+
+import feign.Contract;
+import feign.MethodMetadata;
+import feign.RequestLine;
+import indi.haorui.resource.server.properties.FeignTokenProperties;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class FeignTokenMappingTest {
+
+    interface OrderRpcService {
+
+        @RequestLine("GET /orders")
+        String list();
+
+        @RequestLine("DELETE /orders")
+        String delete();
+    }
+
+    private static final ClientRegistrationRepository REPOSITORY = new InMemoryClientRegistrationRepository(
+            ClientRegistration.withRegistrationId("messaging-client")
+                    .clientId("client")
+                    .clientSecret("secret")
+                    .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                    .scope("order.read", "order.write")
+                    .tokenUri("http://localhost:9000/oauth2/v1/token")
+                    .build());
+
+    private static FeignTokenProperties.Client client(String registration, String... scopes) {
+        FeignTokenProperties.Client client = new FeignTokenProperties.Client();
+        client.setRegistration(registration);
+        client.getScopes().addAll(List.of(scopes));
+        return client;
+    }
+
+    private static MethodMetadata metadata(String method) {
+        return new Contract.Default().parseAndValidateMetadata(OrderRpcService.class).stream()
+                .filter(metadata -> metadata.method().getName().equals(method))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    // contextId 优先于 name，方法配置优先于 client 配置，没有配置时用 name 作为 registrationId
+    @Test
+    public void resolve() {
+        FeignTokenProperties properties = new FeignTokenProperties();
+        FeignTokenProperties.Client client = client("messaging-client", "order.read");
+        FeignTokenProperties.Method delete = new FeignTokenProperties.Method();
+        delete.getScopes().add("order.write");
+        client.getMethods().put("OrderRpcService#delete()", delete);
+        properties.getClients().put("OrderRpcService", client);
+        FeignTokenMapping mapping = new FeignTokenMapping(properties, REPOSITORY);
+
+        TokenKey list = mapping.resolve("OrderRpcService", "order-service", metadata("list"));
+        Assertions.assertEquals("messaging-client", list.registrationId());
+        Assertions.assertEquals(Set.of("order.read"), list.scopes());
+        TokenKey remove = mapping.resolve("OrderRpcService", "order-service", metadata("delete"));
+        Assertions.assertEquals(Set.of("order.write"), remove.scopes());
+        Assertions.assertNotEquals(list.cacheKey(), remove.cacheKey());
+        Assertions.assertEquals(TokenKey.of("order-service"), mapping.resolve("OtherRpcService", "order-service", metadata("list")));
+    }
+
+    // registration 不存在或者 scope 超出 registration 的配置时启动失败
+    @Test
+    public void validate() {
+        FeignTokenProperties missing = new FeignTokenProperties();
+        missing.getClients().put("OrderRpcService", client("order-service"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FeignTokenMapping(missing, REPOSITORY));
+
+        FeignTokenProperties exceed = new FeignTokenProperties();
+        exceed.getClients().put("OrderRpcService", client("messaging-client", "user.read"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FeignTokenMapping(exceed, REPOSITORY));
+    }
+}
@@ -0,0 +1,173 @@
+package indi.haorui.resource.server.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.InMemoryOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
+import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
+import org.springframework.security.oauth2.client.endpoint.OAuth2ClientCredentialsGrantRequest;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.endpoint.OAuth2AccessTokenResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+@Slf4j
+class OAuth2AccessTokenManagerTest {
+
+    private static ClientRegistration registration(String registrationId) {
+        return ClientRegistration.withRegistrationId(registrationId)
+                .clientId("client")
+                .clientSecret("secret")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenUri("http://localhost:9001/oauth2/token")
+                .build();
+    }
+
+    private static OAuth2AccessTokenManager manager(ClientRegistration registration, AtomicInteger requests, Duration acquireTimeout) {
+        return new OAuth2AccessTokenManager(registrationId -> registration, authorizeRequest -> null, grantRequest -> {
+            requests.incrementAndGet();
+            try {
+                // 模拟授权服务器的响应时间
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return OAuth2AccessTokenResponse.withToken("token" + requests.get())
+                    .tokenType(OAuth2AccessToken.TokenType.BEARER)
+                    .expiresIn(60)
+                    .build();
+        }, acquireTimeout);
+    }
+
+    // 冷启动时 2000 个并发请求只触发一次 token 请求
+    @Test
+    public void single_flight() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        OAuth2AccessTokenManager manager = manager(registration("single-flight"), requests, Duration.ofSeconds(5));
+        ExecutorService executors = Executors.newFixedThreadPool(200);
+        CountDownLatch countDownLatch = new CountDownLatch(1);
+        List<Future<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            tokens.add(executors.submit(() -> {
+                countDownLatch.await();
+                return manager.authorize("single-flight");
+            }));
+        }
+        countDownLatch.countDown();
+        for (Future<String> token : tokens) {
+            Assertions.assertEquals("token1", token.get());
+        }
+        executors.shutdown();
+        log.info("token requests:{}", requests.get());
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    // 等待超时返回 null，获取完成后 async 变体拿到同一个 token
+    @Test
+    public void bounded_wait() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        OAuth2AccessTokenManager manager = manager(registration("bounded-wait"), requests, Duration.ofMillis(50));
+        Assertions.assertNull(manager.authorize("bounded-wait"));
+        Assertions.assertEquals("token1", manager.authorizeAsync("bounded-wait").get());
+        Assertions.assertEquals(1, requests.get());
+    }
+
+    // 同一组 scope 不论顺序共用一个 token，不同的 scope 集合各自申请，申请时只带上需要的 scope
+    @Test
+    public void scoped_tokens() {
+        ClientRegistration registration = ClientRegistration.withClientRegistration(registration("scoped"))
+                .scope("user.read", "user.write", "order.read")
+                .build();
+        List<Set<String>> requested = new ArrayList<>();
+        OAuth2AccessTokenManager manager = new OAuth2AccessTokenManager(registrationId -> registration, authorizeRequest -> null,
+                grantRequest -> {
+                    requested.add(grantRequest.getClientRegistration().getScopes());
+                    return OAuth2AccessTokenResponse.withToken("token" + requested.size())
+                            .tokenType(OAuth2AccessToken.TokenType.BEARER)
+                            .expiresIn(60)
+                            .build();
+                }, Duration.ofSeconds(5));
+
+        String userToken = manager.authorize(TokenKey.of("scoped", List.of("user.read", "user.write")));
+        Assertions.assertEquals(userToken, manager.authorize(TokenKey.of("scoped", List.of("user.write", "user.read"))));
+        String orderToken = manager.authorize(TokenKey.of("scoped", List.of("order.read")));
+        Assertions.assertNotEquals(userToken, orderToken);
+        Assertions.assertEquals("Bearer " + orderToken, manager.authorizationHeader(TokenKey.of("scoped", Set.of("order.read"))));
+        Assertions.assertEquals(List.of(Set.of("user.read", "user.write"), Set.of("order.read")), requested);
+    }
+
+    // 提前刷新不经过 authorizedClientManager 的缓存：clockSkew 为 0 时缓存在 token 过期前一直返回同一个 token，
+    // 与真实环境中有效期远大于 60 秒的 token 相同；4 秒的 token 在 2.6 ~ 3 秒之间刷新，应该拿到新 token
+    @Test
+    public void proactive_refresh_bypasses_authorized_client_cache() throws Exception {
+        ClientRegistration registration = registration("bypass-cache");
+        InMemoryClientRegistrationRepository clientRegistrationRepository = new InMemoryClientRegistrationRepository(registration);
+        AtomicInteger requests = new AtomicInteger();
+        OAuth2AccessTokenResponseClient<OAuth2ClientCredentialsGrantRequest> tokenResponseClient = grantRequest ->
+                OAuth2AccessTokenResponse.withToken("token" + requests.incrementAndGet())
+                        .tokenType(OAuth2AccessToken.TokenType.BEARER)
+                        .expiresIn(4)
+                        .build();
+        AuthorizedClientServiceOAuth2AuthorizedClientManager authorizedClientManager = new AuthorizedClientServiceOAuth2AuthorizedClientManager(
+                clientRegistrationRepository, new InMemoryOAuth2AuthorizedClientService(clientRegistrationRepository));
+        authorizedClientManager.setAuthorizedClientProvider(OAuth2AuthorizedClientProviderBuilder.builder()
+                .clientCredentials(builder -> builder.clockSkew(Duration.ZERO).accessTokenResponseClient(tokenResponseClient))
+                .build());
+        OAuth2AccessTokenManager manager = new OAuth2AccessTokenManager(clientRegistrationRepository, authorizedClientManager,
+                tokenResponseClient, Duration.ofSeconds(5));
+
+        Assertions.assertEquals("token1", manager.authorize("bypass-cache"));
+        Thread.sleep(3_500);
+        Assertions.assertEquals("token2", manager.authorize("bypass-cache"));
+        Assertions.assertEquals(2, requests.get());
+    }
+
+    // 默认线程池有上限，空闲线程会被回收
+    @Test
+    public void bounded_executor() {
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) OAuth2AccessTokenManager.defaultExecutor();
+        Assertions.assertEquals(4, executor.getMaximumPoolSize());
+        Assertions.assertTrue(executor.allowsCoreThreadTimeOut());
+        executor.shutdown();
+    }
+
+    // close 关闭线程池，之后的获取直接失败，不再创建线程
+    @Test
+    public void close_shuts_down_executor() throws Exception {
+        ClientRegistration registration = registration("closed");
+        AtomicInteger requests = new AtomicInteger();
+        ExecutorService executor = OAuth2AccessTokenManager.defaultExecutor();
+        OAuth2AccessTokenManager manager = new OAuth2AccessTokenManager(registrationId -> registration, authorizeRequest -> null,
+                grantRequest -> {
+                    requests.incrementAndGet();
+                    return OAuth2AccessTokenResponse.withToken("token")
+                            .tokenType(OAuth2AccessToken.TokenType.BEARER)
+                            .expiresIn(60)
+                            .build();
+                }, Duration.ofSeconds(5), executor);
+
+        manager.close();
+        Assertions.assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        Assertions.assertNull(manager.authorize("closed"));
+        Assertions.assertTrue(manager.authorizeAsync("closed").isCompletedExceptionally());
+        Assertions.assertEquals(0, requests.get());
+    }
+}
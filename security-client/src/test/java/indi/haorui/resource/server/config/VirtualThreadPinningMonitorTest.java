@@ -0,0 +1,28 @@
+package indi.haorui.resource.server.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ * <p>
+ * JFR 事件需要 JDK 21，这里只验证计数
+ */
+class VirtualThreadPinningMonitorTest {
+
+    // 同一个调用栈只在第一次出现时返回 true，之后只计数
+    @Test
+    public void count_by_stack_trace() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20));
+        Assertions.assertTrue(monitor.record("\tat a.B.c:1"));
+        Assertions.assertFalse(monitor.record("\tat a.B.c:1"));
+        Assertions.assertTrue(monitor.record("\tat d.E.f:2"));
+
+        Assertions.assertEquals(Map.of("\tat a.B.c:1", 2L, "\tat d.E.f:2", 1L), monitor.pinned());
+        Assertions.assertEquals(3, monitor.total());
+        Assertions.assertFalse(monitor.isRunning());
+    }
+}
@@ -0,0 +1,49 @@
+package indi.haorui.resource.server.controller;
+
+import indi.haorui.resource.server.config.VirtualThreadPinningMonitor;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Created by Yang Hao.rui on 2026/10/18
+ */
+class VirtualThreadControllerTest {
+
+    private static MockMvc mockMvc(StaticListableBeanFactory beanFactory) {
+        VirtualThreadController controller = new VirtualThreadController(beanFactory.getBeanProvider(VirtualThreadPinningMonitor.class));
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    // 未启用虚拟线程时没有 monitor
+    @Test
+    public void pinning_disabled() throws Exception {
+        mockMvc(new StaticListableBeanFactory()).perform(get("/virtual-threads/pinning"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.monitoring").value(false))
+                .andExpect(jsonPath("$.total").value(0));
+    }
+
+    @Test
+    public void pinning_counts() throws Exception {
+        VirtualThreadPinningMonitor monitor = Mockito.mock(VirtualThreadPinningMonitor.class);
+        Mockito.when(monitor.isRunning()).thenReturn(true);
+        Mockito.when(monitor.total()).thenReturn(3L);
+        Mockito.when(monitor.pinned()).thenReturn(Map.of("\tat a.B.c:1", 3L));
+
+        mockMvc(new StaticListableBeanFactory(Map.of("virtualThreadPinningMonitor", monitor)))
+                .perform(get("/virtual-threads/pinning"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.monitoring").value(true))
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.stacks['\tat a.B.c:1']").value(3));
+    }
+}